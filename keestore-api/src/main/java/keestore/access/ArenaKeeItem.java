@@ -0,0 +1,483 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>
+ * A {@code KeeItem} whose values are kept off-heap in a {@link ValueArena};
+ * the item only holds their handles. Only the identifier and the name stay
+ * on the heap. A value read from the item is a new string each time, so no
+ * copy of a secret outlives its use.
+ * </p>
+ * <p>
+ * {@link #close()} overwrites all values with zeros and releases their space
+ * right away; otherwise that happens once the item is garbage collected.
+ * {@link #toKee()} shares the values' blocks in the arena rather than copying
+ * them, and the copy must be closed as well: a shared value is overwritten
+ * once the last item holding it lets it go. Values are never changed in
+ * place, a new value gets a block of its own. An item is not meant to be
+ * serialized since its values never leave the arena other than through the
+ * {@code Kee} methods, or as bytes through {@link #toBytes()} (i.e. to
+ * encrypt them).
+ * </p>
+ *
+ * @author thinh ho
+ *
+ */
+public class ArenaKeeItem extends KeeItem implements AutoCloseable {
+    private static final long serialVersionUID = -2760460346651893114L;
+    // per value: the key's header and its slot in the two arrays
+    private static final long entryOverhead = 56;
+
+    private final Storage storage;
+    private final Runnable release;
+
+    /**
+     * The identifier and the name, plus the keys of all other values along
+     * with their handles in two arrays that are searched linearly (items
+     * hold only a few values, see {@code CompactKeeItem}). The storage's lock
+     * is taken before the arena's, never the other way around.
+     */
+    private static class Storage extends AbstractMap<String, String> {
+        private final ValueArena arena;
+        private String id;
+        private String name;
+        private String[] keys = new String[4];
+        private long[] handles = new long[4];
+        private int size;
+        private boolean closed;
+
+        private Storage(ValueArena arena) {
+            this.arena = arena;
+        }
+
+        @Override
+        public synchronized int size() {
+            return (id != null ? 1 : 0) + (name != null ? 1 : 0) + size;
+        }
+
+        @Override
+        public synchronized boolean containsKey(Object key) {
+            if (ITEMNAME_ID.equals(key)) {
+                return id != null;
+            }
+            if (ITEMNAME_KEY.equals(key)) {
+                return name != null;
+            }
+            return indexOf(key) >= 0;
+        }
+
+        @Override
+        public synchronized String get(Object key) {
+            if (ITEMNAME_ID.equals(key)) {
+                return id;
+            }
+            if (ITEMNAME_KEY.equals(key)) {
+                return name;
+            }
+            int i = indexOf(key);
+            return i >= 0 ? decode(handles[i]) : null;
+        }
+
+        @Override
+        public synchronized String put(String key, String value) {
+            if (key == null || value == null) {
+                throw new IllegalArgumentException("Key and value must be non-null");
+            }
+            String previous;
+            if (ITEMNAME_ID.equals(key)) {
+                previous = id;
+                id = value;
+                return previous;
+            }
+            if (ITEMNAME_KEY.equals(key)) {
+                previous = name;
+                name = value;
+                return previous;
+            }
+            if (closed) {
+                throw new IllegalStateException("Item is closed");
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            long handle = arena.allocate(bytes);
+            Arrays.fill(bytes, (byte) 0);
+            int i = indexOf(key);
+            if (i >= 0) {
+                previous = release(handles[i]);
+                handles[i] = handle;
+                return previous;
+            }
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                handles = Arrays.copyOf(handles, size * 2);
+            }
+            keys[size] = key;
+            handles[size] = handle;
+            size++;
+            return null;
+        }
+
+        @Override
+        public synchronized String remove(Object key) {
+            String previous;
+            if (ITEMNAME_ID.equals(key)) {
+                previous = id;
+                id = null;
+                return previous;
+            }
+            if (ITEMNAME_KEY.equals(key)) {
+                previous = name;
+                name = null;
+                return previous;
+            }
+            int i = indexOf(key);
+            if (i < 0) {
+                return null;
+            }
+            previous = release(handles[i]);
+            // move the last value into the gap, order is not kept
+            size--;
+            keys[i] = keys[size];
+            handles[i] = handles[size];
+            keys[size] = null;
+            return previous;
+        }
+
+        @Override
+        public synchronized void clear() {
+            id = null;
+            name = null;
+            freeAll();
+        }
+
+        /**
+         * The keys alone, without reading any value.
+         */
+        @Override
+        public synchronized Set<String> keySet() {
+            Set<String> copy = new HashSet<>(Arrays.asList(keys).subList(0, size));
+            if (id != null) {
+                copy.add(ITEMNAME_ID);
+            }
+            if (name != null) {
+                copy.add(ITEMNAME_KEY);
+            }
+            return Collections.unmodifiableSet(copy);
+        }
+
+        @Override
+        public Set<Map.Entry<String, String>> entrySet() {
+            List<Map.Entry<String, String>> entries;
+            synchronized (this) {
+                entries = new ArrayList<>(size());
+                if (id != null) {
+                    entries.add(new AbstractMap.SimpleImmutableEntry<>(ITEMNAME_ID, id));
+                }
+                if (name != null) {
+                    entries.add(new AbstractMap.SimpleImmutableEntry<>(ITEMNAME_KEY, name));
+                }
+                for (int i = 0; i < size; i++) {
+                    entries.add(new AbstractMap.SimpleImmutableEntry<>(keys[i], decode(handles[i])));
+                }
+            }
+            return new AbstractSet<Map.Entry<String, String>>() {
+                @Override
+                public Iterator<Map.Entry<String, String>> iterator() {
+                    Iterator<Map.Entry<String, String>> i = entries.iterator();
+                    return new Iterator<Map.Entry<String, String>>() {
+                        private Map.Entry<String, String> last;
+
+                        @Override
+                        public boolean hasNext() {
+                            return i.hasNext();
+                        }
+
+                        @Override
+                        public Map.Entry<String, String> next() {
+                            last = i.next();
+                            return last;
+                        }
+
+                        @Override
+                        public void remove() {
+                            if (last == null) {
+                                throw new IllegalStateException();
+                            }
+                            Storage.this.remove(last.getKey());
+                            last = null;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return entries.size();
+                }
+            };
+        }
+
+        /**
+         * Copy of all values, which shares their blocks in the arena.
+         */
+        private synchronized Storage copy() {
+            Storage copy = new Storage(arena);
+            copy.id = id;
+            copy.name = name;
+            copy.keys = Arrays.copyOf(keys, Math.max(size, 1));
+            copy.handles = new long[copy.keys.length];
+            for (int i = 0; i < size; i++) {
+                copy.handles[i] = arena.retain(handles[i]);
+            }
+            copy.size = size;
+            return copy;
+        }
+
+        /**
+         * The identifier, name and values in one array, each value copied
+         * straight from the arena.
+         */
+        private synchronized byte[] toBytes() {
+            byte[] idBytes = (id != null ? id : "").getBytes(StandardCharsets.UTF_8);
+            byte[] nameBytes = (name != null ? name : "").getBytes(StandardCharsets.UTF_8);
+            byte[][] keyBytes = new byte[size][];
+            int length = 3 * Integer.BYTES + idBytes.length + nameBytes.length;
+            for (int i = 0; i < size; i++) {
+                keyBytes[i] = keys[i].getBytes(StandardCharsets.UTF_8);
+                length += 2 * Integer.BYTES + keyBytes[i].length + arena.length(handles[i]);
+            }
+            byte[] bytes = new byte[length];
+            ByteBuffer out = ByteBuffer.wrap(bytes);
+            out.putInt(idBytes.length).put(idBytes);
+            out.putInt(nameBytes.length).put(nameBytes);
+            out.putInt(size);
+            for (int i = 0; i < size; i++) {
+                out.putInt(keyBytes[i].length).put(keyBytes[i]);
+                int valueLength = arena.length(handles[i]);
+                out.putInt(valueLength);
+                arena.read(handles[i], bytes, out.position());
+                out.position(out.position() + valueLength);
+            }
+            return bytes;
+        }
+
+        /**
+         * Storage read from {@link #toBytes()}, each value copied straight
+         * into the arena.
+         */
+        private static Storage of(ValueArena arena, byte[] bytes) {
+            Storage storage = new Storage(arena);
+            ByteBuffer in = ByteBuffer.wrap(bytes);
+            try {
+                // absent if empty, see KeeItem
+                storage.id = emptyToNull(string(in));
+                storage.name = emptyToNull(string(in));
+                int count = in.getInt();
+                if (count < 0) {
+                    throw new IllegalArgumentException("Invalid item bytes");
+                }
+                storage.keys = new String[Math.max(count, 1)];
+                storage.handles = new long[storage.keys.length];
+                for (int i = 0; i < count; i++) {
+                    String key = KeySymbols.intern(string(in));
+                    int length = in.getInt();
+                    storage.keys[i] = key;
+                    storage.handles[i] = arena.allocate(bytes, in.position(), length);
+                    storage.size++;
+                    in.position(in.position() + length);
+                }
+            } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+                storage.freeAll();
+                throw new IllegalArgumentException("Invalid item bytes", e);
+            } catch (RuntimeException e) {
+                storage.freeAll();
+                throw e;
+            }
+            return storage;
+        }
+
+        private static String emptyToNull(String value) {
+            return value.isEmpty() ? null : value;
+        }
+
+        private static String string(ByteBuffer in) {
+            byte[] bytes = new byte[in.getInt()];
+            in.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * The values in the arena, plus the keys and handles, without reading
+         * any value.
+         */
+        private synchronized long weigh() {
+            long bytes = 2L * ((id != null ? id.length() : 0) + (name != null ? name.length() : 0))
+                + entryOverhead;
+            for (int i = 0; i < size; i++) {
+                bytes += entryOverhead + 2L * keys[i].length() + arena.sizeOf(handles[i]);
+            }
+            return bytes;
+        }
+
+        /**
+         * Overwrite and release all values; no values can be added afterwards.
+         */
+        private synchronized void free() {
+            freeAll();
+            closed = true;
+        }
+
+        private void freeAll() {
+            for (int i = 0; i < size; i++) {
+                arena.free(handles[i]);
+                keys[i] = null;
+            }
+            size = 0;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < size; i++) {
+                if (keys[i].equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private String release(long handle) {
+            String value = decode(handle);
+            arena.free(handle);
+            return value;
+        }
+
+        private String decode(long handle) {
+            byte[] bytes = arena.read(handle);
+            String value = new String(bytes, StandardCharsets.UTF_8);
+            Arrays.fill(bytes, (byte) 0);
+            return value;
+        }
+    }
+
+    /**
+     * <p>
+     * Must set with an initial non-empty name value.
+     * </p>
+     *
+     * @param arena
+     * @param name
+     */
+    public ArenaKeeItem(ValueArena arena, String name) {
+        this(new Storage(arena), name);
+    }
+
+    @SuppressWarnings("rawtypes")
+    public ArenaKeeItem(ValueArena arena, final Map item) {
+        this(new Storage(arena), item);
+    }
+
+    /**
+     * <p>
+     * An item read from {@link #toBytes()}, i.e. after it was decrypted; each
+     * value is copied straight into the arena. The array is not changed,
+     * overwrite it once done.
+     * </p>
+     *
+     * @param arena
+     * @param bytes
+     */
+    public ArenaKeeItem(ValueArena arena, byte[] bytes) {
+        this(Storage.of(arena, bytes), 0);
+    }
+
+    private ArenaKeeItem(Storage storage, String name) {
+        super(storage, name);
+        this.storage = storage;
+        this.release = storage.arena.register(this, storage::free);
+    }
+
+    @SuppressWarnings("rawtypes")
+    private ArenaKeeItem(Storage storage, Map item) {
+        super(storage, item);
+        this.storage = storage;
+        this.release = storage.arena.register(this, storage::free);
+    }
+
+    private ArenaKeeItem(Storage storage, long version) {
+        super(storage, version);
+        this.storage = storage;
+        this.release = storage.arena.register(this, storage::free);
+    }
+
+    /**
+     * <p>
+     * A copy of this item, that also carries over the current version. The
+     * values are shared within the arena, neither copied nor passed through
+     * the heap.
+     * </p>
+     */
+    @Override
+    public Kee toKee() {
+        // read the version first, see KeeItem
+        long current = getVersion();
+        return new ArenaKeeItem(storage.copy(), current);
+    }
+
+    /**
+     * <p>
+     * The identifier, name and values of this item in a compact binary form,
+     * i.e. to encrypt it. Values are copied straight from the arena rather
+     * than passing through strings; overwrite the array once done.
+     * </p>
+     *
+     * @return
+     */
+    public byte[] toBytes() {
+        return storage.toBytes();
+    }
+
+    /**
+     * <p>
+     * An estimate of the bytes held by this item: its values in the arena,
+     * plus the keys and handles on the heap; a block shared with a snapshot
+     * is counted in full by both. No value is read.
+     * </p>
+     *
+     * @return
+     */
+    public long weigh() {
+        storage.arena.reclaim();
+        return storage.weigh();
+    }
+
+    @Override
+    protected KeeItem copyOf(Map<String, Object> data) {
+        return new ArenaKeeItem(storage.arena, data);
+    }
+
+    /**
+     * <p>
+     * Overwrite all values with zeros and release them. Only the identifier
+     * and the name remain; no other values can be added afterwards.
+     * </p>
+     */
+    @Override
+    public void close() {
+        release.run();
+    }
+}
@@ -0,0 +1,50 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import java.util.Map;
+
+/**
+ * <p>
+ * A {@code KeeItem} with a smaller footprint for items with only a few
+ * key-value pairs, which is most of them. Instead of a synchronized
+ * {@code HashMap} (a node per entry plus the table and the wrapper), the
+ * keys and values are kept in one flat array that is searched linearly; an
+ * item that grows past {@value CompactMap#threshold} entries switches to a
+ * hashed layout.
+ * </p>
+ * <p>
+ * Reads and writes are synchronized on the underlying storage, same as
+ * {@code KeeItem}.
+ * </p>
+ *
+ * @author thinh ho
+ *
+ */
+public class CompactKeeItem extends KeeItem {
+    private static final long serialVersionUID = -1495120470129813329L;
+
+    /**
+     * <p>
+     * Must set with an initial non-empty name value.
+     * </p>
+     *
+     * @param name
+     */
+    public CompactKeeItem(String name) {
+        super(new CompactMap(), name);
+    }
+
+    @SuppressWarnings("rawtypes")
+    public CompactKeeItem(final Map item) {
+        super(new CompactMap(), item);
+    }
+
+    @Override
+    protected KeeItem copyOf(Map<String, Object> data) {
+        return new CompactKeeItem(data);
+    }
+}
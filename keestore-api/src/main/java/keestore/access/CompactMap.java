@@ -0,0 +1,207 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * <p>
+ * A small map of strings kept in one array of interleaved keys and values
+ * that is searched linearly. Past {@link #threshold} entries, the entries are
+ * moved to a {@code HashMap}. All methods synchronize on the map itself, so
+ * iterating the views must be done while holding the map, same as with
+ * {@code Collections.synchronizedMap}.
+ * </p>
+ *
+ * @author thinh ho
+ *
+ */
+class CompactMap extends AbstractMap<String, String> implements Serializable {
+    private static final long serialVersionUID = 2958441046367510270L;
+
+    /**
+     * Number of entries kept in the array before moving to a hashed layout.
+     */
+    static final int threshold = 8;
+
+    private String[] entries = new String[4];
+    private int size;
+    private HashMap<String, String> hashed;
+    private transient int modifications;
+
+    @Override
+    public synchronized int size() {
+        return hashed != null ? hashed.size() : size;
+    }
+
+    @Override
+    public synchronized boolean containsKey(Object key) {
+        return hashed != null ? hashed.containsKey(key) : indexOf(key) >= 0;
+    }
+
+    @Override
+    public synchronized String get(Object key) {
+        if (hashed != null) {
+            return hashed.get(key);
+        }
+        int i = indexOf(key);
+        return i >= 0 ? entries[i + 1] : null;
+    }
+
+    @Override
+    public synchronized String put(String key, String value) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key must be non-null");
+        }
+        if (hashed != null) {
+            return hashed.put(key, value);
+        }
+        int i = indexOf(key);
+        if (i >= 0) {
+            String previous = entries[i + 1];
+            entries[i + 1] = value;
+            return previous;
+        }
+        if (size == threshold) {
+            hashed = new HashMap<>(threshold * 4);
+            for (int j = 0; j < size * 2; j += 2) {
+                hashed.put(entries[j], entries[j + 1]);
+            }
+            entries = null;
+            size = 0;
+            modifications++;
+            return hashed.put(key, value);
+        }
+        if (size * 2 == entries.length) {
+            entries = Arrays.copyOf(entries, Math.min(entries.length * 2, threshold * 2));
+        }
+        entries[size * 2] = key;
+        entries[size * 2 + 1] = value;
+        size++;
+        modifications++;
+        return null;
+    }
+
+    @Override
+    public synchronized String remove(Object key) {
+        if (hashed != null) {
+            return hashed.remove(key);
+        }
+        int i = indexOf(key);
+        if (i < 0) {
+            return null;
+        }
+        String previous = entries[i + 1];
+        removeAt(i);
+        return previous;
+    }
+
+    @Override
+    public synchronized void clear() {
+        hashed = null;
+        entries = new String[4];
+        size = 0;
+        modifications++;
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        return new AbstractSet<Map.Entry<String, String>>() {
+            @Override
+            public Iterator<Map.Entry<String, String>> iterator() {
+                synchronized (CompactMap.this) {
+                    return hashed != null ? hashed.entrySet().iterator() : new Entries();
+                }
+            }
+
+            @Override
+            public int size() {
+                return CompactMap.this.size();
+            }
+        };
+    }
+
+    private int indexOf(Object key) {
+        for (int i = 0; i < size * 2; i += 2) {
+            if (entries[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void removeAt(int i) {
+        int last = (size - 1) * 2;
+        // move the last entry into the gap, order is not kept
+        entries[i] = entries[last];
+        entries[i + 1] = entries[last + 1];
+        entries[last] = null;
+        entries[last + 1] = null;
+        size--;
+        modifications++;
+    }
+
+    private class Entries implements Iterator<Map.Entry<String, String>> {
+        private int next = 0;
+        private int current = -1;
+        private int expected = modifications;
+
+        @Override
+        public boolean hasNext() {
+            return next < size * 2;
+        }
+
+        @Override
+        public Map.Entry<String, String> next() {
+            if (expected != modifications) {
+                throw new ConcurrentModificationException();
+            }
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            current = next;
+            next += 2;
+            int i = current;
+            return new AbstractMap.SimpleEntry<String, String>(entries[i], entries[i + 1]) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                public String setValue(String value) {
+                    synchronized (CompactMap.this) {
+                        entries[i + 1] = value;
+                    }
+                    return super.setValue(value);
+                }
+            };
+        }
+
+        @Override
+        public void remove() {
+            if (current < 0) {
+                throw new IllegalStateException();
+            }
+            if (expected != modifications) {
+                throw new ConcurrentModificationException();
+            }
+            synchronized (CompactMap.this) {
+                removeAt(current);
+            }
+            // the last entry moved into the removed one, visit it next
+            next = current;
+            current = -1;
+            expected = modifications;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * A {@code KeeItem} for items shared between threads. The underlying storage
+ * is a concurrent map: reads never lock, writes to different keys do not
+ * contend, and nothing is copied under a lock.
+ * </p>
+ * <p>
+ * {@link #keys()} and {@link #values()} are read-only views rather than copies.
+ * Iterating them never throws {@code ConcurrentModificationException} and is
+ * weakly consistent: it reflects the contents at some point during the
+ * iteration and may or may not see concurrent changes. Likewise,
+ * {@link #toMap()} and {@link #toKee()} are copies taken without locking.
+ * Values cannot be null.
+ * </p>
+ *
+ * @author thinh ho
+ *
+ */
+public class ConcurrentKeeItem extends KeeItem {
+    private static final long serialVersionUID = -4212771063658046113L;
+
+    private final ConcurrentHashMap<String, String> storage;
+
+    /**
+     * <p>
+     * Must set with an initial non-empty name value.
+     * </p>
+     *
+     * @param name
+     */
+    public ConcurrentKeeItem(String name) {
+        this(new ConcurrentHashMap<>(), name);
+    }
+
+    @SuppressWarnings("rawtypes")
+    public ConcurrentKeeItem(final Map item) {
+        this(new ConcurrentHashMap<>(), item);
+    }
+
+    private ConcurrentKeeItem(ConcurrentHashMap<String, String> storage, String name) {
+        super(storage, name);
+        this.storage = storage;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private ConcurrentKeeItem(ConcurrentHashMap<String, String> storage, Map item) {
+        super(storage, item);
+        this.storage = storage;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the value is null.
+     */
+    @Override
+    public String put(String key, String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Value for key " + key + " must be non-null");
+        }
+        return super.put(key, value);
+    }
+
+    /**
+     * <p>
+     * A read-only view of all key(s) grouped with this item.
+     * </p>
+     *
+     * @return
+     */
+    @Override
+    public Set<String> keys() {
+        return Collections.unmodifiableSet(storage.keySet());
+    }
+
+    /**
+     * <p>
+     * A read-only view of all value(s) grouped with this item.
+     * </p>
+     *
+     * @return
+     */
+    @Override
+    public Collection<String> values() {
+        return Collections.unmodifiableCollection(storage.values());
+    }
+
+    @Override
+    public Map<String, Object> toMap() {
+        return new HashMap<>(storage);
+    }
+
+    @Override
+    protected KeeItem copyOf(Map<String, Object> data) {
+        return new ConcurrentKeeItem(data);
+    }
+}
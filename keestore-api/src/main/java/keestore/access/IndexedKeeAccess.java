@@ -0,0 +1,508 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * <p>
+ * An in-memory {@code KeeAccess} that keeps secondary indexes of its models:
+ * by name, by key, and by value. The name and key indexes are ordered so that
+ * prefix queries only visit the matching range, see {@link KeeQuery}. Values
+ * themselves are never kept in the
+ * index, only a fingerprint of each (a keyed hash, with a random key per
+ * instance); the few models found by fingerprint are then compared by value.
+ * </p>
+ * <p>
+ * The indexes reflect the content of a model when it was added. A model that
+ * is changed in place must be {@link #reindex(Kee) reindexed}, or deleted and
+ * added again. All methods are synchronized on this object.
+ * </p>
+ * <p>
+ * Every change is published as a {@code KeeEvent} to the listeners, which are
+ * called while the lock is held (so they see changes in order) and must not
+ * block. A batch of changes, see {@link #applyAll(List)}, is made entirely or
+ * not at all and published as one event.
+ * </p>
+ * <p>
+ * Every model that is added, replaced or reindexed gets the next version
+ * from a single sequence, so the version of a model only moves forward
+ * (even when it is deleted and added again).
+ * </p>
+ * 
+ * @author thinh ho
+ *
+ */
+public class IndexedKeeAccess implements KeeAccess, KeeIndex {
+    private final Map<KeeId, Kee> storage = new LinkedHashMap<>();
+    private final Map<KeeId, Indexed> indexed = new HashMap<>();
+    private final NavigableMap<String, Set<KeeId>> byName = new TreeMap<>();
+    private final NavigableMap<String, Set<KeeId>> byKey = new TreeMap<>();
+    private final Map<Long, Set<KeeId>> byValue = new HashMap<>();
+    private final Mac fingerprint;
+    private final KeeEventSupport events = new KeeEventSupport();
+    private long version;
+
+    /**
+     * What a model was indexed under, so that it can be removed from the
+     * indexes after it changed.
+     */
+    private static class Indexed {
+        private final String name;
+        private final long version;
+        // the version in this access, see getVersion()
+        private long revision;
+        private final Set<String> keys = new HashSet<>();
+        private final Set<Long> values = new HashSet<>();
+
+        private Indexed(String name, long version) {
+            this.name = name;
+            this.version = version;
+        }
+    }
+
+    public IndexedKeeAccess() {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        try {
+            fingerprint = Mac.getInstance("HmacSHA256");
+            fingerprint.init(new SecretKeySpec(key, "HmacSHA256"));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot create the value index", e);
+        }
+    }
+
+    @Override
+    public synchronized Kee getKee(String id) {
+        return storage.get(KeeId.valueOf(id));
+    }
+
+    @Override
+    public synchronized Kee getKee(KeeId id) {
+        return storage.get(id);
+    }
+
+    @Override
+    public synchronized void addKee(Kee item) {
+        check(item);
+        KeeId id = item.getKeeId();
+        if (storage.containsKey(id)) {
+            throw new IllegalArgumentException("Item with id " + id + " already exists");
+        }
+        events.publish(add(id, item));
+    }
+
+    @Override
+    public synchronized void deleteKee(Kee item) {
+        deleteKee(item.getKeeId());
+    }
+
+    @Override
+    public synchronized void deleteKee(String id) {
+        deleteKee(KeeId.valueOf(id));
+    }
+
+    @Override
+    public synchronized void deleteKee(KeeId id) {
+        Kee removed = remove(id);
+        if (removed != null) {
+            events.publish(KeeEvent.removed(this, removed));
+        }
+    }
+
+    /**
+     * <p>
+     * Reindex the specified model, or replace the model with the same
+     * identifier, keeping its position. A model that is not here yet is added.
+     * </p>
+     */
+    @Override
+    public synchronized void updateKee(Kee item) {
+        check(item);
+        events.publish(update(item.getKeeId(), item));
+    }
+
+    @Override
+    public synchronized long getVersion(KeeId id) {
+        Indexed entry = indexed.get(id);
+        return entry != null ? entry.revision : NO_VERSION;
+    }
+
+    @Override
+    public synchronized boolean replaceIfVersion(KeeId id, long expectedVersion, Kee item) {
+        checkReplacement(id, item);
+        if (getVersion(id) != expectedVersion) {
+            return false;
+        }
+        if (item == null) {
+            deleteKee(id);
+        } else {
+            updateKee(item);
+        }
+        return true;
+    }
+
+    /**
+     * <p>
+     * The function is called once, holding the lock of this access.
+     * </p>
+     */
+    @Override
+    public synchronized Kee computeIfPresent(KeeId id, BiFunction<KeeId, ? super Kee, ? extends Kee> remapping) {
+        Kee current = storage.get(id);
+        if (current == null) {
+            return null;
+        }
+        Kee next = remapping.apply(id, current);
+        checkReplacement(id, next);
+        if (next == null) {
+            deleteKee(id);
+        } else {
+            updateKee(next);
+        }
+        return next;
+    }
+
+    @Override
+    public synchronized void clear() {
+        events.publish(removeAll());
+    }
+
+    /**
+     * <p>
+     * Make the specified changes as one batch. All changes are checked first:
+     * if one cannot be made (i.e. a model is added twice) nothing is changed.
+     * </p>
+     */
+    @Override
+    public synchronized void applyAll(List<KeeEvent> changes) {
+        KeeBatches.check(changes, storage::containsKey, this::check);
+        List<KeeEvent> applied = new ArrayList<>(changes.size());
+        for (KeeEvent c : changes) {
+            KeeEvent done = null;
+            switch (c.getType()) {
+            case ADDED:
+                done = add(c.getId(), c.getKee());
+                break;
+            case REMOVED:
+                Kee removed = remove(c.getId());
+                done = removed != null ? KeeEvent.removed(this, removed) : null;
+                break;
+            case UPDATED:
+                done = update(c.getId(), c.getKee());
+                break;
+            case CLEARED:
+                done = removeAll();
+                break;
+            case BATCH:
+                throw new IllegalArgumentException("Batches cannot be nested");
+            }
+            if (done != null) {
+                applied.add(done);
+            }
+        }
+        if (!applied.isEmpty()) {
+            events.publish(KeeEvent.batch(this, applied));
+        }
+    }
+
+    @Override
+    public void addKeeListener(Consumer<KeeEvent> listener) {
+        events.addListener(listener);
+    }
+
+    @Override
+    public void removeKeeListener(Consumer<KeeEvent> listener) {
+        events.removeListener(listener);
+    }
+
+    /**
+     * <p>
+     * Update the indexes with the current content of the specified model,
+     * which was changed in place.
+     * </p>
+     * 
+     * @param item
+     */
+    public synchronized void reindex(Kee item) {
+        KeeId id = item.getKeeId();
+        if (storage.get(id) == item) {
+            replace(id, item);
+            events.publish(KeeEvent.updated(this, item, null));
+        }
+    }
+
+    /**
+     * <p>
+     * Make the content of this access the same as the specified models: models
+     * that are gone are deleted, new ones are added, and only those whose
+     * version moved are reindexed.
+     * </p>
+     * 
+     * @param all
+     */
+    public synchronized void sync(List<? extends Kee> all) {
+        Map<KeeId, Kee> current = new HashMap<>();
+        all.forEach(k -> current.put(k.getKeeId(), k));
+        List<KeeEvent> changes = new ArrayList<>();
+        storage.forEach((id, k) -> {
+            if (!current.containsKey(id)) {
+                changes.add(KeeEvent.removed(this, k));
+            }
+        });
+        current.forEach((id, k) -> {
+            Kee existing = storage.get(id);
+            if (existing == null) {
+                changes.add(KeeEvent.added(this, k));
+            } else if (existing != k || indexed.get(id).version != k.getVersion()) {
+                changes.add(KeeEvent.updated(this, k, existing));
+            }
+        });
+        if (!changes.isEmpty()) {
+            applyAll(changes);
+        }
+    }
+
+    @Override
+    public synchronized List<Kee> findByName(String name) {
+        return lookup(byName.get(name));
+    }
+
+    @Override
+    public synchronized List<Kee> findByKey(String key) {
+        return lookup(byKey.get(key));
+    }
+
+    @Override
+    public synchronized List<Kee> findByValue(String value) {
+        List<Kee> found = lookup(byValue.get(fingerprint(value)));
+        // a fingerprint may be shared by different values
+        found.removeIf(k -> !k.toMap().entrySet().stream().anyMatch(e -> isValue(k, e.getKey())
+            && value.equals(e.getValue())));
+        return found;
+    }
+
+    @Override
+    public synchronized List<Kee> find(KeeQuery query) {
+        List<Kee> found = new ArrayList<>();
+        if (query.getLimit() == 0) {
+            return found;
+        }
+        Set<KeeId> withKey = null;
+        if (query.getKeyPrefix() != null) {
+            withKey = new HashSet<>();
+            for (Set<KeeId> ids : range(byKey, query.getKeyPrefix()).values()) {
+                withKey.addAll(ids);
+            }
+        }
+        Predicate<Kee> filter = query.getFilter();
+        int skip = query.getOffset();
+        NavigableMap<String, Set<KeeId>> names;
+        if (query.getNamePrefix() != null) {
+            names = range(byName, query.getNamePrefix());
+        } else if (withKey != null) {
+            // only visit the names of the models with the key
+            names = new TreeMap<>();
+            for (KeeId id : withKey) {
+                String name = indexed.get(id).name;
+                if (name != null) {
+                    names.put(name, byName.get(name));
+                }
+            }
+        } else {
+            names = byName;
+        }
+        for (Set<KeeId> ids : names.values()) {
+            for (KeeId id : ids) {
+                if (withKey != null && !withKey.contains(id)) {
+                    continue;
+                }
+                Kee k = storage.get(id);
+                if (filter != null && !filter.test(k)) {
+                    continue;
+                }
+                if (skip > 0) {
+                    skip--;
+                    continue;
+                }
+                found.add(k);
+                if (found.size() == query.getLimit()) {
+                    return found;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Total models.
+     * 
+     * @return
+     */
+    public synchronized int size() {
+        return storage.size();
+    }
+
+    /**
+     * All models, in the order they were added.
+     * 
+     * @return
+     */
+    public synchronized List<Kee> getAll() {
+        return Collections.unmodifiableList(new ArrayList<>(storage.values()));
+    }
+
+    /**
+     * <p>
+     * Check that the specified model can be added or updated, throwing
+     * {@code IllegalArgumentException} if not.
+     * </p>
+     * 
+     * @param item
+     */
+    protected void check(Kee item) {
+        if (item == null) {
+            throw new IllegalArgumentException("Invalid item to add");
+        }
+    }
+
+    private void checkReplacement(KeeId id, Kee item) {
+        if (item != null) {
+            check(item);
+            if (!item.getKeeId().equals(id)) {
+                throw new IllegalArgumentException("Item " + item.getKeeId() + " cannot replace " + id);
+            }
+        }
+    }
+
+    private KeeEvent add(KeeId id, Kee item) {
+        storage.put(id, item);
+        index(id, item);
+        return KeeEvent.added(this, item);
+    }
+
+    /**
+     * Reindex or replace the model, keeping its position, or add it.
+     */
+    private KeeEvent update(KeeId id, Kee item) {
+        Kee existing = storage.get(id);
+        if (existing == null) {
+            return add(id, item);
+        }
+        replace(id, item);
+        return KeeEvent.updated(this, item, existing != item ? existing : null);
+    }
+
+    private KeeEvent removeAll() {
+        storage.clear();
+        indexed.clear();
+        byName.clear();
+        byKey.clear();
+        byValue.clear();
+        return KeeEvent.cleared(this);
+    }
+
+    private Kee remove(KeeId id) {
+        Kee removed = storage.remove(id);
+        if (removed != null) {
+            unindex(id);
+        }
+        return removed;
+    }
+
+    private void replace(KeeId id, Kee item) {
+        storage.put(id, item);
+        unindex(id);
+        index(id, item);
+    }
+
+    private void index(KeeId id, Kee item) {
+        Indexed entry = new Indexed(item.getName(), item.getVersion());
+        entry.revision = ++version;
+        add(byName, entry.name, id);
+        item.toMap().forEach((k, v) -> {
+            if (isValue(item, k)) {
+                entry.keys.add(k);
+                add(byKey, k, id);
+                if (v instanceof String) {
+                    long f = fingerprint((String) v);
+                    entry.values.add(f);
+                    add(byValue, f, id);
+                }
+            }
+        });
+        indexed.put(id, entry);
+    }
+
+    private void unindex(KeeId id) {
+        Indexed entry = indexed.remove(id);
+        if (entry != null) {
+            remove(byName, entry.name, id);
+            entry.keys.forEach(k -> remove(byKey, k, id));
+            entry.values.forEach(f -> remove(byValue, f, id));
+        }
+    }
+
+    private List<Kee> lookup(Set<KeeId> ids) {
+        List<Kee> found = new ArrayList<>();
+        if (ids != null) {
+            ids.forEach(id -> found.add(storage.get(id)));
+        }
+        return found;
+    }
+
+    private long fingerprint(String value) {
+        byte[] hash = fingerprint.doFinal(value.getBytes(StandardCharsets.UTF_8));
+        long f = 0;
+        for (int i = 0; i < 8; i++) {
+            f = f << 8 | (hash[i] & 0xff);
+        }
+        return f;
+    }
+
+    /**
+     * The entries whose key starts with the specified prefix.
+     */
+    private static NavigableMap<String, Set<KeeId>> range(NavigableMap<String, Set<KeeId>> index, String prefix) {
+        return index.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    private static boolean isValue(Kee item, String key) {
+        return !key.equals(item.idKey()) && !key.equals(item.nameKey());
+    }
+
+    private static <K> void add(Map<K, Set<KeeId>> index, K key, KeeId id) {
+        if (key != null) {
+            index.computeIfAbsent(key, k -> new LinkedHashSet<>(2)).add(id);
+        }
+    }
+
+    private static <K> void remove(Map<K, Set<KeeId>> index, K key, KeeId id) {
+        Set<KeeId> ids = index.get(key);
+        if (ids != null && ids.remove(id) && ids.isEmpty()) {
+            index.remove(key);
+        }
+    }
+}
@@ -49,6 +49,18 @@ public interface Kee extends Serializable {
     */
    Map<String, Object> toMap();
    Kee toKee();
+   /**
+    * <p>
+    * A consistent, point-in-time copy of this {@code Kee} (i.e. to save or
+    * display) that carries over the version. Implementations that share
+    * structure between versions return one without copying all values.
+    * </p>
+    * 
+    * @return
+    */
+   default Kee snapshot() {
+       return toKee();
+   }
    Kee toKee(Map<String, Object> data);
    /**
     * <p>
@@ -58,6 +70,17 @@ public interface Kee extends Serializable {
     * @return
     */
    String getId();
+   /**
+    * <p>
+    * The identifier as a {@code KeeId}, for hashing and comparing.
+    * </p>
+    * 
+    * @return
+    */
+   default KeeId getKeeId() {
+       String id = getId();
+       return id != null ? KeeId.valueOf(id) : null;
+   }
    void setId(String id);
    String idKey();
    /**
@@ -70,4 +93,13 @@ public interface Kee extends Serializable {
    String getName();
    void setName(String name);
    String nameKey();
+   /**
+    * <p>
+    * A counter that advances every time the content of this {@code Kee} is
+    * changed. Two reads returning the same version saw the same content.
+    * </p>
+    * 
+    * @return
+    */
+   long getVersion();
 }
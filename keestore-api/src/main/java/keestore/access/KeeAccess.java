@@ -5,6 +5,12 @@
  */
 package keestore.access;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
 /**
  * <p>
  * Data access specification for {@code Kee} models.
@@ -14,6 +20,12 @@ package keestore.access;
  *
  */
 public interface KeeAccess {
+    /**
+     * The version of a {@code Kee} that is not in the access, see
+     * {@link #getVersion(KeeId)}.
+     */
+    long NO_VERSION = -1;
+
     /**
      * <p>
      * Obtain a {@code Kee} model with the specified identifier.
@@ -24,6 +36,18 @@ public interface KeeAccess {
      */
     Kee getKee(String id);
 
+    /**
+     * <p>
+     * Obtain a {@code Kee} model with the specified identifier.
+     * </p>
+     * 
+     * @param id
+     * @return
+     */
+    default Kee getKee(KeeId id) {
+        return getKee(id.toString());
+    }
+
     /**
      * Add the specified {@code Kee}.
      * 
@@ -45,8 +69,183 @@ public interface KeeAccess {
      */
     void deleteKee(String id);
 
+    /**
+     * Delete the {@code Kee} with the specified identifier.
+     * 
+     * @param id
+     */
+    default void deleteKee(KeeId id) {
+        deleteKee(id.toString());
+    }
+
+    /**
+     * <p>
+     * The content of the specified {@code Kee} changed, or it replaces the
+     * {@code Kee} with the same identifier.
+     * </p>
+     * 
+     * @param item
+     */
+    default void updateKee(Kee item) {
+        deleteKee(item.getKeeId());
+        addKee(item);
+    }
+
+    /**
+     * <p>
+     * The version of the {@code Kee} with the specified identifier, or
+     * {@link #NO_VERSION} if there is none. The version only moves forward,
+     * whenever the {@code Kee} is changed or replaced through this access, so
+     * a writer can tell that its copy is stale, see
+     * {@link #replaceIfVersion(KeeId, long, Kee)}. By default, this is the
+     * version of the {@code Kee} itself.
+     * </p>
+     * 
+     * @param id
+     * @return
+     */
+    default long getVersion(KeeId id) {
+        Kee item = getKee(id);
+        return item != null ? item.getVersion() : NO_VERSION;
+    }
+
+    /**
+     * <p>
+     * Replace the {@code Kee} with the specified identifier, only if it is still
+     * at the expected version. The specified {@code Kee} must have the same
+     * identifier, or be null to delete it; a {@code Kee} is added if the
+     * expected version is {@link #NO_VERSION} and there is none.
+     * </p>
+     * <p>
+     * The default is atomic only with writers that also synchronize on this
+     * access.
+     * </p>
+     * 
+     * @param id
+     * @param expectedVersion
+     * @param item the replacement, or null.
+     * @return false if the version moved and nothing was changed.
+     */
+    default boolean replaceIfVersion(KeeId id, long expectedVersion, Kee item) {
+        if (item != null && !item.getKeeId().equals(id)) {
+            throw new IllegalArgumentException("Item " + item.getKeeId() + " cannot replace " + id);
+        }
+        synchronized (this) {
+            if (getVersion(id) != expectedVersion) {
+                return false;
+            }
+            if (item == null) {
+                deleteKee(id);
+            } else {
+                updateKee(item);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * <p>
+     * Replace the {@code Kee} with the specified identifier, if there is one,
+     * with the result of the function; a null result deletes it. The function
+     * may change the {@code Kee} in place and return it. As with
+     * {@code Map.computeIfPresent} the function must not change this access,
+     * and by default it is called again if another writer got there first.
+     * </p>
+     * 
+     * @param id
+     * @param remapping
+     * @return the new {@code Kee}, or null.
+     */
+    default Kee computeIfPresent(KeeId id, BiFunction<KeeId, ? super Kee, ? extends Kee> remapping) {
+        while (true) {
+            long version = getVersion(id);
+            Kee current = getKee(id);
+            if (version == NO_VERSION || current == null) {
+                return null;
+            }
+            Kee next = remapping.apply(id, current);
+            if (replaceIfVersion(id, version, next)) {
+                return next;
+            }
+        }
+    }
+
     /**
      * Clear the underlying data model.
      */
     void clear();
+
+    /**
+     * <p>
+     * Add all specified {@code Kee} as one batch, see
+     * {@link #applyAll(List)}.
+     * </p>
+     * 
+     * @param items
+     */
+    default void addAll(Collection<? extends Kee> items) {
+        List<KeeEvent> changes = new ArrayList<>(items.size());
+        items.forEach(k -> changes.add(KeeEvent.added(this, k)));
+        applyAll(changes);
+    }
+
+    /**
+     * <p>
+     * Delete all specified {@code Kee} as one batch, see
+     * {@link #applyAll(List)}.
+     * </p>
+     * 
+     * @param items
+     */
+    default void deleteAll(Collection<? extends Kee> items) {
+        List<KeeEvent> changes = new ArrayList<>(items.size());
+        items.forEach(k -> changes.add(KeeEvent.removed(this, k)));
+        applyAll(changes);
+    }
+
+    /**
+     * <p>
+     * Make the specified changes, in order. Implementations that publish
+     * changes make them as one batch: listeners are called once, with a
+     * {@link KeeEvent.Type#BATCH} of the changes that were made.
+     * </p>
+     * 
+     * @param changes
+     */
+    default void applyAll(List<KeeEvent> changes) {
+        changes.forEach(c -> c.applyTo(this));
+    }
+
+    /**
+     * <p>
+     * Start a transaction: changes are collected by the transaction and made
+     * as one batch on {@link KeeTransaction#commit()}.
+     * </p>
+     * 
+     * @return
+     */
+    default KeeTransaction begin() {
+        return new KeeTransaction(this);
+    }
+
+    /**
+     * <p>
+     * Call the specified listener with every change made to this access.
+     * </p>
+     * 
+     * @param listener
+     * @throws UnsupportedOperationException if this access does not publish
+     *         changes.
+     */
+    default void addKeeListener(Consumer<KeeEvent> listener) {
+        throw new UnsupportedOperationException("Changes are not published by " + getClass().getName());
+    }
+
+    /**
+     * Stop calling the specified listener.
+     * 
+     * @param listener
+     */
+    default void removeKeeListener(Consumer<KeeEvent> listener) {
+    }
 }
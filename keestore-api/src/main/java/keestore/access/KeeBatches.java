@@ -0,0 +1,72 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * <p>
+ * Checks shared by the {@code KeeAccess} implementations that make a batch of
+ * changes entirely or not at all.
+ * </p>
+ * 
+ * @author thinh ho
+ *
+ */
+public final class KeeBatches {
+    private KeeBatches() {
+    }
+
+    /**
+     * <p>
+     * Check that the specified changes can be made in order, before any of them
+     * is, throwing {@code IllegalArgumentException} if not.
+     * </p>
+     * 
+     * @param changes
+     * @param exists whether a model is in the access before the batch.
+     * @param check checks a model that is added or updated.
+     */
+    public static void check(List<KeeEvent> changes, Predicate<KeeId> exists, Consumer<Kee> check) {
+        // the identifiers added or removed by the batch so far
+        Set<KeeId> added = new HashSet<>();
+        Set<KeeId> removed = new HashSet<>();
+        boolean cleared = false;
+        for (KeeEvent c : changes) {
+            KeeId id = c.getId();
+            switch (c.getType()) {
+            case ADDED:
+                check.accept(c.getKee());
+                if (added.contains(id) || !cleared && !removed.contains(id) && exists.test(id)) {
+                    throw new IllegalArgumentException("Item with id " + id + " already exists");
+                }
+                added.add(id);
+                removed.remove(id);
+                break;
+            case UPDATED:
+                check.accept(c.getKee());
+                added.add(id);
+                removed.remove(id);
+                break;
+            case REMOVED:
+                added.remove(id);
+                removed.add(id);
+                break;
+            case CLEARED:
+                cleared = true;
+                added.clear();
+                removed.clear();
+                break;
+            case BATCH:
+                throw new IllegalArgumentException("Batches cannot be nested");
+            }
+        }
+    }
+}
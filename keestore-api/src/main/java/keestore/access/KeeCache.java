@@ -0,0 +1,429 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * <p>
+ * A cache of {@code Kee} models, by identifier, that holds models up to a
+ * budget of (estimated) bytes. Once over budget, the least recently used
+ * models are evicted and handed to the eviction listener (i.e. to spill them);
+ * a model that is not cached is loaded on access by the loader and cached
+ * again. The most recently used model is always kept, even if it alone is over
+ * budget.
+ * </p>
+ * <p>
+ * Models are loaded outside of the lock, so a slow load (i.e. decrypt) does
+ * not block hits; if two threads load the same model at once, the first one
+ * cached is kept. The eviction listener is called holding the lock, so that a
+ * model is never loaded again before it was handed over (i.e. spilled); it
+ * must not use the cache.
+ * </p>
+ *
+ * @author thinh ho
+ *
+ */
+public class KeeCache {
+    // per entry: the hash map entry, its links and the strings' headers
+    private static final long entryOverhead = 96;
+
+    private final long budget;
+    private final ToLongFunction<? super Kee> weigher;
+    private final Function<KeeId, ? extends Kee> loader;
+    // in access order, least recently used first
+    private final LinkedHashMap<KeeId, Cached> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private Consumer<? super Kee> evictionListener = k -> {};
+    private Consumer<? super Kee> discardListener = k -> {};
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long loadNanos;
+    // the number of loads by latency, in powers of two nanoseconds
+    private final long[] loadLatencies = new long[Long.SIZE];
+    // puts and invalidations, so that a load that raced one is not cached
+    private long changes;
+
+    private static class Cached {
+        private final Kee kee;
+        private final long weight;
+
+        private Cached(Kee kee, long weight) {
+            this.kee = kee;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * <p>
+     * The hits, misses and evictions of a cache at one point in time.
+     * </p>
+     */
+    public static class Stats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long loadNanos;
+        private final long[] loadLatencies;
+        private final int size;
+        private final long weight;
+
+        private Stats(long hits, long misses, long evictions, long loadNanos, long[] loadLatencies, int size,
+            long weight) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.loadNanos = loadNanos;
+            this.loadLatencies = loadLatencies;
+            this.size = size;
+            this.weight = weight;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        /**
+         * The total time spent loading models that were missed.
+         *
+         * @return
+         */
+        public long getLoadNanos() {
+            return loadNanos;
+        }
+
+        /**
+         * <p>
+         * The time within which the specified share of loads completed, i.e.
+         * 0.99 for the 99th percentile, rounded up to a power of two.
+         * </p>
+         *
+         * @param percentile from 0 to 1.
+         * @return 0 if nothing was loaded.
+         */
+        public long getLoadNanos(double percentile) {
+            long loads = 0;
+            for (long n : loadLatencies) {
+                loads += n;
+            }
+            long rank = (long) Math.ceil(percentile * loads);
+            long seen = 0;
+            for (int i = 0; i < loadLatencies.length; i++) {
+                seen += loadLatencies[i];
+                if (seen > 0 && seen >= rank) {
+                    return i < Long.SIZE - 1 ? 1L << i : Long.MAX_VALUE;
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * The number of models cached.
+         *
+         * @return
+         */
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * The estimated bytes of the models cached.
+         *
+         * @return
+         */
+        public long getWeight() {
+            return weight;
+        }
+
+        /**
+         * The share of accesses that were hits, 0 if none.
+         *
+         * @return
+         */
+        public double getHitRate() {
+            long total = hits + misses;
+            return total > 0 ? (double) hits / total : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                "hits=%d misses=%d (%.1f%% hits) evictions=%d load=%dms (p50<%dus p99<%dus) size=%d weight=%d",
+                hits, misses, 100 * getHitRate(), evictions, loadNanos / 1000000, getLoadNanos(0.5) / 1000,
+                getLoadNanos(0.99) / 1000, size, weight);
+        }
+    }
+
+    /**
+     * Models are weighed by {@link #weigh(Kee)}.
+     *
+     * @param budget the estimated bytes of all models cached.
+     * @param loader loads a model that is not cached, or returns null if there
+     *        is none.
+     */
+    public KeeCache(long budget, Function<KeeId, ? extends Kee> loader) {
+        this(budget, KeeCache::weigh, loader);
+    }
+
+    /**
+     * @param budget the bytes of all models cached, as weighed by the weigher.
+     * @param weigher the bytes of a model.
+     * @param loader loads a model that is not cached, or returns null if there
+     *        is none.
+     */
+    public KeeCache(long budget, ToLongFunction<? super Kee> weigher, Function<KeeId, ? extends Kee> loader) {
+        if (budget <= 0) {
+            throw new IllegalArgumentException("Budget must be positive");
+        }
+        this.budget = budget;
+        this.weigher = weigher;
+        this.loader = loader;
+    }
+
+    /**
+     * <p>
+     * An estimate of the heap bytes held by the keys and values of the model.
+     * </p>
+     *
+     * @param kee
+     * @return
+     */
+    public static long weigh(Kee kee) {
+        long bytes = entryOverhead;
+        for (Map.Entry<String, Object> e : kee.toMap().entrySet()) {
+            bytes += entryOverhead + 2L * e.getKey().length();
+            if (e.getValue() != null) {
+                bytes += 2L * e.getValue().toString().length();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * <p>
+     * Receive every model that is evicted, before it is no longer cached; it
+     * was not changed. If the listener throws (i.e. the model cannot be
+     * spilled) the model stays cached, over budget, and the exception is
+     * thrown to the caller that cached the model that did not fit.
+     * </p>
+     *
+     * @param evictionListener
+     */
+    public synchronized void setEvictionListener(Consumer<? super Kee> evictionListener) {
+        this.evictionListener = evictionListener;
+    }
+
+    /**
+     * <p>
+     * Receive every model dropped without being evicted: a model replaced by
+     * {@link #put(Kee) put}, or a load that is not cached because another
+     * thread cached the model first or it raced a change. It is called
+     * outside of the lock.
+     * </p>
+     *
+     * @param discardListener
+     */
+    public synchronized void setDiscardListener(Consumer<? super Kee> discardListener) {
+        this.discardListener = discardListener;
+    }
+
+    /**
+     * <p>
+     * The model with the specified identifier, loaded if it is not cached.
+     * </p>
+     *
+     * @param id
+     * @return null if there is no such model.
+     */
+    public Kee get(KeeId id) {
+        while (true) {
+            long seen;
+            synchronized (this) {
+                Cached cached = entries.get(id);
+                if (cached != null) {
+                    hits++;
+                    return cached.kee;
+                }
+                misses++;
+                seen = changes;
+            }
+            long start = System.nanoTime();
+            Kee loaded = loader.apply(id);
+            long elapsed = System.nanoTime() - start;
+            long w = loaded != null ? weigher.applyAsLong(loaded) : 0;
+            Kee found;
+            Consumer<? super Kee> discard;
+            synchronized (this) {
+                loadNanos += elapsed;
+                loadLatencies[Long.SIZE - Long.numberOfLeadingZeros(elapsed)]++;
+                if (loaded == null) {
+                    if (changes != seen) {
+                        continue;
+                    }
+                    return null;
+                }
+                Cached current = entries.get(id);
+                if (changes == seen && current == null) {
+                    cache(id, loaded, w);
+                    return loaded;
+                }
+                // changed while loading (the loaded model may be stale), or
+                // loaded by another thread meanwhile
+                found = changes == seen ? current.kee : null;
+                discard = discardListener;
+            }
+            discard.accept(loaded);
+            if (found != null) {
+                return found;
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Read the model with the specified identifier, loaded if it is not
+     * cached, holding the lock: the model cannot be evicted (i.e. wiped by the
+     * eviction listener) while it is read. The reader must be quick and must
+     * not use the cache.
+     * </p>
+     *
+     * @param id
+     * @param reader
+     * @return null if there is no such model.
+     */
+    public <R> R get(KeeId id, Function<? super Kee, ? extends R> reader) {
+        while (get(id) != null) {
+            synchronized (this) {
+                Cached cached = entries.get(id);
+                if (cached != null) {
+                    return reader.apply(cached.kee);
+                }
+            }
+            // evicted right after it was loaded, load it again
+        }
+        return null;
+    }
+
+    /**
+     * <p>
+     * Whether the model with the specified identifier is cached; not counted
+     * as an access.
+     * </p>
+     *
+     * @param id
+     * @return
+     */
+    public synchronized boolean contains(KeeId id) {
+        return entries.containsKey(id);
+    }
+
+    /**
+     * <p>
+     * Cache the specified model, replacing the one with the same identifier.
+     * </p>
+     *
+     * @param kee
+     */
+    public void put(Kee kee) {
+        long w = weigher.applyAsLong(kee);
+        Kee replaced;
+        Consumer<? super Kee> discard;
+        synchronized (this) {
+            changes++;
+            replaced = cache(kee.getKeeId(), kee, w);
+            discard = discardListener;
+        }
+        if (replaced != null && replaced != kee) {
+            discard.accept(replaced);
+        }
+    }
+
+    /**
+     * <p>
+     * Forget the model with the specified identifier, without calling the
+     * eviction listener.
+     * </p>
+     *
+     * @param id
+     * @return the model if it was cached.
+     */
+    public synchronized Kee invalidate(KeeId id) {
+        changes++;
+        Cached removed = entries.remove(id);
+        if (removed == null) {
+            return null;
+        }
+        weight -= removed.weight;
+        return removed.kee;
+    }
+
+    /**
+     * <p>
+     * Forget all models, without calling the eviction listener.
+     * </p>
+     *
+     * @return the models that were cached.
+     */
+    public synchronized List<Kee> clear() {
+        changes++;
+        List<Kee> cleared = new ArrayList<>(entries.size());
+        entries.values().forEach(c -> cleared.add(c.kee));
+        entries.clear();
+        weight = 0;
+        return cleared;
+    }
+
+    /**
+     * The number of models cached.
+     *
+     * @return
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(hits, misses, evictions, loadNanos, loadLatencies.clone(), entries.size(), weight);
+    }
+
+    /**
+     * Cache the model, then evict until within budget; holding the lock.
+     *
+     * @return the model replaced, if any.
+     */
+    private Kee cache(KeeId id, Kee kee, long w) {
+        Cached current = entries.put(id, new Cached(kee, w));
+        weight += w - (current != null ? current.weight : 0);
+        while (weight > budget && entries.size() > 1) {
+            Map.Entry<KeeId, Cached> eldest = entries.entrySet().iterator().next();
+            // handed over before it is unlinked: if that fails, it is kept
+            evictionListener.accept(eldest.getValue().kee);
+            entries.remove(eldest.getKey());
+            weight -= eldest.getValue().weight;
+            evictions++;
+        }
+        return current != null ? current.kee : null;
+    }
+}
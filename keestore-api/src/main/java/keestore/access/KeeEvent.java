@@ -0,0 +1,159 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ * A change to the {@code Kee} models of a {@code KeeAccess}, published to
+ * the listeners of the access so that they can mirror the change rather than
+ * reloading all models.
+ * </p>
+ * 
+ * @author thinh ho
+ *
+ */
+public class KeeEvent {
+    public enum Type {
+        /** {@link #getKee()} was added. */
+        ADDED,
+        /** {@link #getPrevious()} was removed. */
+        REMOVED,
+        /**
+         * The content of {@link #getKee()} changed; {@link #getPrevious()} is
+         * the model it replaced, if it was replaced by another instance.
+         */
+        UPDATED,
+        /** All models were removed. */
+        CLEARED,
+        /** The {@link #getChanges() changes} were made at once. */
+        BATCH
+    }
+
+    private final Object source;
+    private final Type type;
+    private final KeeId id;
+    private final Kee kee;
+    private final Kee previous;
+    private final List<KeeEvent> changes;
+
+    private KeeEvent(Object source, Type type, KeeId id, Kee kee, Kee previous, List<KeeEvent> changes) {
+        this.source = source;
+        this.type = type;
+        this.id = id;
+        this.kee = kee;
+        this.previous = previous;
+        this.changes = changes;
+    }
+
+    private KeeEvent(Object source, Type type, KeeId id, Kee kee, Kee previous) {
+        this(source, type, id, kee, previous, Collections.emptyList());
+    }
+
+    public static KeeEvent added(Object source, Kee kee) {
+        return new KeeEvent(source, Type.ADDED, idOf(kee), kee, null);
+    }
+
+    public static KeeEvent removed(Object source, Kee previous) {
+        return new KeeEvent(source, Type.REMOVED, idOf(previous), null, previous);
+    }
+
+    public static KeeEvent updated(Object source, Kee kee, Kee previous) {
+        return new KeeEvent(source, Type.UPDATED, idOf(kee), kee, previous);
+    }
+
+    public static KeeEvent cleared(Object source) {
+        return new KeeEvent(source, Type.CLEARED, null, null, null);
+    }
+
+    public static KeeEvent batch(Object source, List<KeeEvent> changes) {
+        return new KeeEvent(source, Type.BATCH, null, null, null,
+            Collections.unmodifiableList(changes));
+    }
+
+    public Object getSource() {
+        return source;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * The identifier of the changed model, null when {@link Type#CLEARED} or
+     * {@link Type#BATCH}.
+     * 
+     * @return
+     */
+    public KeeId getId() {
+        return id;
+    }
+
+    /**
+     * The model as it is now, null when it was removed.
+     * 
+     * @return
+     */
+    public Kee getKee() {
+        return kee;
+    }
+
+    /**
+     * The model that was removed or replaced, if any.
+     * 
+     * @return
+     */
+    public Kee getPrevious() {
+        return previous;
+    }
+
+    /**
+     * The changes of a {@link Type#BATCH}, in order, or an empty list.
+     * 
+     * @return
+     */
+    public List<KeeEvent> getChanges() {
+        return changes;
+    }
+
+    /**
+     * <p>
+     * Make the same change to the specified access.
+     * </p>
+     * 
+     * @param target
+     */
+    public void applyTo(KeeAccess target) {
+        switch (type) {
+        case ADDED:
+            target.addKee(kee);
+            break;
+        case REMOVED:
+            target.deleteKee(id);
+            break;
+        case UPDATED:
+            target.updateKee(kee);
+            break;
+        case CLEARED:
+            target.clear();
+            break;
+        case BATCH:
+            target.applyAll(changes);
+            break;
+        }
+    }
+
+    private static KeeId idOf(Kee kee) {
+        return kee != null ? kee.getKeeId() : null;
+    }
+
+    @Override
+    public String toString() {
+        return type + (id != null ? " " + id : type == Type.BATCH ? " " + changes.size() : "");
+    }
+}
@@ -0,0 +1,47 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * The listeners of a {@code KeeAccess}; listeners can be added or removed
+ * while events are published.
+ * </p>
+ * 
+ * @author thinh ho
+ *
+ */
+public class KeeEventSupport {
+    private final List<Consumer<KeeEvent>> listeners = new CopyOnWriteArrayList<>();
+
+    public void addListener(Consumer<KeeEvent> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<KeeEvent> listener) {
+        listeners.remove(listener);
+    }
+
+    public boolean hasListeners() {
+        return !listeners.isEmpty();
+    }
+
+    /**
+     * <p>
+     * Call all listeners with the specified event, in the order they were
+     * added.
+     * </p>
+     * 
+     * @param event
+     */
+    public void publish(KeeEvent event) {
+        listeners.forEach(l -> l.accept(event));
+    }
+}
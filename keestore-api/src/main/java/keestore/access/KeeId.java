@@ -0,0 +1,172 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import java.io.Serializable;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * <p>
+ * The identifier of a {@code Kee} as two longs. Identifiers in the usual
+ * (lower-case) UUID form are hashed and compared by their 128 bits alone;
+ * any other identifier (i.e. set by hand) keeps its text and is compared by
+ * it, so two identifiers are equal exactly when their strings are. The string
+ * form is only needed at the JSON boundary, see {@link #toString()}.
+ * </p>
+ *
+ * @author thinh ho
+ *
+ */
+public final class KeeId implements Serializable, Comparable<KeeId> {
+    private static final long serialVersionUID = 3590313120706014331L;
+    private static final char[] digits = "0123456789abcdef".toCharArray();
+
+    private final long high;
+    private final long low;
+    private final String text;
+    private final boolean uuid;
+
+    private KeeId(long high, long low, String text, boolean uuid) {
+        this.high = high;
+        this.low = low;
+        this.text = text;
+        this.uuid = uuid;
+    }
+
+    /**
+     * <p>
+     * A new random (version 4) identifier. Unlike {@code UUID.randomUUID()}
+     * the bits do not come from a shared {@code SecureRandom}, so identifiers
+     * are cheap to create but must not be used as secrets.
+     * </p>
+     *
+     * @return
+     */
+    public static KeeId random() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long high = (random.nextLong() & ~0xf000L) | 0x4000L;
+        long low = (random.nextLong() & ~(0xcL << 60)) | (0x8L << 60);
+        return new KeeId(high, low, format(high, low), true);
+    }
+
+    /**
+     * <p>
+     * The identifier for the specified string.
+     * </p>
+     *
+     * @param id
+     * @return
+     */
+    public static KeeId valueOf(String id) {
+        if (id == null) {
+            throw new IllegalArgumentException("Identifier must be non-null");
+        }
+        if (id.length() != 36) {
+            return new KeeId(id.hashCode(), 0, id, false);
+        }
+        long high = 0;
+        long low = 0;
+        for (int i = 0; i < 36; i++) {
+            char c = id.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return new KeeId(id.hashCode(), 0, id, false);
+                }
+                continue;
+            }
+            int digit = c >= '0' && c <= '9' ? c - '0' : c >= 'a' && c <= 'f' ? c - 'a' + 10 : -1;
+            if (digit < 0) {
+                return new KeeId(id.hashCode(), 0, id, false);
+            }
+            if (i < 18) {
+                high = high << 4 | digit;
+            } else {
+                low = low << 4 | digit;
+            }
+        }
+        return new KeeId(high, low, id, true);
+    }
+
+    /**
+     * <p>
+     * The identifier of the specified {@code Kee}.
+     * </p>
+     *
+     * @param kee
+     * @return
+     */
+    public static KeeId of(Kee kee) {
+        return kee.getKeeId();
+    }
+
+    /**
+     * The string this identifier was created from or, for a random one, its
+     * UUID form.
+     */
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    @Override
+    public int hashCode() {
+        long h = high ^ low;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof KeeId)) {
+            return false;
+        }
+        KeeId other = (KeeId) obj;
+        if (high != other.high || low != other.low || uuid != other.uuid) {
+            return false;
+        }
+        return uuid || text.equals(other.text);
+    }
+
+    @Override
+    public int compareTo(KeeId other) {
+        if (uuid && other.uuid) {
+            int c = Long.compareUnsigned(high, other.high);
+            return c != 0 ? c : Long.compareUnsigned(low, other.low);
+        }
+        return text.compareTo(other.text);
+    }
+
+    /**
+     * Whether this identifier was created from the specified string instance,
+     * (i.e. to cache the identifier of a {@code Kee}).
+     */
+    boolean isFrom(String id) {
+        return text == id;
+    }
+
+    private static String format(long high, long low) {
+        char[] chars = new char[36];
+        hex(high >>> 32, chars, 0, 8);
+        chars[8] = '-';
+        hex(high >>> 16, chars, 9, 4);
+        chars[13] = '-';
+        hex(high, chars, 14, 4);
+        chars[18] = '-';
+        hex(low >>> 48, chars, 19, 4);
+        chars[23] = '-';
+        hex(low, chars, 24, 12);
+        return new String(chars);
+    }
+
+    private static void hex(long value, char[] chars, int offset, int length) {
+        for (int i = offset + length - 1; i >= offset; i--) {
+            chars[i] = digits[(int) value & 0xf];
+            value >>>= 4;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import java.util.List;
+
+/**
+ * <p>
+ * Lookups of {@code Kee} models by their content rather than their
+ * identifier, answered from indexes instead of scanning all models.
+ * </p>
+ * 
+ * @author thinh ho
+ *
+ */
+public interface KeeIndex {
+    /**
+     * <p>
+     * All {@code Kee} models with the specified name (names may repeat).
+     * </p>
+     * 
+     * @param name
+     * @return
+     */
+    List<Kee> findByName(String name);
+
+    /**
+     * <p>
+     * All {@code Kee} models that contain the specified key.
+     * </p>
+     * 
+     * @param key
+     * @return
+     */
+    List<Kee> findByKey(String key);
+
+    /**
+     * <p>
+     * All {@code Kee} models that contain the specified value under any key.
+     * </p>
+     * 
+     * @param value
+     * @return
+     */
+    List<Kee> findByValue(String value);
+
+    /**
+     * <p>
+     * One page of the {@code Kee} models that match the specified query.
+     * </p>
+     * 
+     * @param query
+     * @return
+     */
+    List<Kee> find(KeeQuery query);
+}
@@ -13,7 +13,8 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.UUID;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import org.json.simple.JSONAware;
@@ -37,6 +38,8 @@ public class KeeItem implements Kee, JSONAware, JSONStreamAware {
     public static final String ITEMNAME_ID = "itemId";
 
     private final Map<String, String> storage;
+    private final AtomicLong version = new AtomicLong();
+    private transient volatile KeeId keeId;
 
     @SuppressWarnings("rawtypes")
     public static KeeItem toKeeItem(String json) {
@@ -47,11 +50,6 @@ public class KeeItem implements Kee, JSONAware, JSONStreamAware {
         return new KeeItem((Map) converted);
     }
 
-    private KeeItem() {
-        storage = Collections.synchronizedMap(new HashMap<>());
-        storage.put(ITEMNAME_ID, UUID.randomUUID().toString());
-    }
-
     /**
      * <p>
      * Must set with an initial non-empty name value.
@@ -60,16 +58,59 @@ public class KeeItem implements Kee, JSONAware, JSONStreamAware {
      * @param name
      */
     public KeeItem(String name) {
-        this();
+        this(Collections.synchronizedMap(new HashMap<>()), name);
+    }
+
+    @SuppressWarnings("rawtypes")
+    public KeeItem(final Map item) {
+        this(Collections.synchronizedMap(new HashMap<>()), item);
+    }
+
+    /**
+     * <p>
+     * Subclasses provide the (empty) underlying storage.
+     * </p>
+     * 
+     * @param storage
+     * @param name
+     */
+    protected KeeItem(Map<String, String> storage, String name) {
+        this.storage = storage;
+        this.keeId = KeeId.random();
+        storage.put(ITEMNAME_ID, keeId.toString());
         if (name == null || name.length() == 0) {
             throw new IllegalArgumentException("Item name must be non-null and non-empty");
         }
         storage.put(ITEMNAME_KEY, name);
     }
 
+    /**
+     * <p>
+     * Subclasses provide the underlying storage, which already holds all
+     * values of an item (i.e. a copy of another item).
+     * </p>
+     * 
+     * @param storage
+     * @param version the version of the copied item.
+     */
+    protected KeeItem(Map<String, String> storage, long version) {
+        this.storage = storage;
+        this.version.set(version);
+    }
+
+    /**
+     * <p>
+     * Subclasses provide the (empty) underlying storage.
+     * </p>
+     * 
+     * @param storage
+     * @param item
+     */
     @SuppressWarnings({ "rawtypes", "unchecked" })
-    public KeeItem(final Map item) {
-        this();
+    protected KeeItem(Map<String, String> storage, final Map item) {
+        this.storage = storage;
+        this.keeId = KeeId.random();
+        storage.put(ITEMNAME_ID, keeId.toString());
         if (item != null) {
             if (!item.containsKey(ITEMNAME_KEY)) {
                 throw new IllegalArgumentException("Item missing required field: " + ITEMNAME_KEY);
@@ -88,7 +129,7 @@ public class KeeItem implements Kee, JSONAware, JSONStreamAware {
                 }
             });
 
-            storage.putAll(item);
+            item.forEach((k, v) -> storage.put(KeySymbols.intern((String) k), (String) v));
         } else {
             throw new IllegalArgumentException("Cannot create a KeeItem from a null map");
         }
@@ -104,6 +145,23 @@ public class KeeItem implements Kee, JSONAware, JSONStreamAware {
         return storage.get(ITEMNAME_ID);
     }
 
+    /**
+     * <p>
+     * The identifier is parsed once and kept for as long as the identifier
+     * is not changed.
+     * </p>
+     */
+    @Override
+    public KeeId getKeeId() {
+        String id = getId();
+        KeeId current = keeId;
+        if (current == null || !current.isFrom(id)) {
+            current = id != null ? KeeId.valueOf(id) : null;
+            keeId = current;
+        }
+        return current;
+    }
+
     /**
      * <p>
      * The value mapped to the specified key.
@@ -118,7 +176,11 @@ public class KeeItem implements Kee, JSONAware, JSONStreamAware {
 
     @Override
     public String put(String key, String value) {
-        return storage.put(key, value);
+        String previous = storage.put(KeySymbols.intern(key), value);
+        if(!Objects.equals(previous, value)) {
+            version.incrementAndGet();
+        }
+        return previous;
     }
 
     /**
@@ -167,7 +229,11 @@ public class KeeItem implements Kee, JSONAware, JSONStreamAware {
         if(ITEMNAME_KEY.equals(key)) {
             throw new IllegalArgumentException("Cannot remove the identifier key");
         }
-        return storage.remove(key);
+        String removed = storage.remove(key);
+        if(removed != null) {
+            version.incrementAndGet();
+        }
+        return removed;
     }
 
     /**
@@ -202,9 +268,31 @@ public class KeeItem implements Kee, JSONAware, JSONStreamAware {
         return storage.toString();
     }
 
+    /**
+     * <p>
+     * A copy of this item that also carries over the current version.
+     * </p>
+     */
     @Override
     public Kee toKee() {
-        return toKee(toMap());
+        // read the version first: a concurrent change made while copying then
+        // shows up as a version change later rather than being missed
+        long current = version.get();
+        KeeItem copy = copyOf(toMap());
+        copy.version.set(current);
+        return copy;
+    }
+
+    /**
+     * <p>
+     * A new item of the same type with the specified data, see {@link #toKee()}.
+     * </p>
+     * 
+     * @param data
+     * @return
+     */
+    protected KeeItem copyOf(Map<String, Object> data) {
+        return new KeeItem(data);
     }
 
     @Override
@@ -216,7 +304,7 @@ public class KeeItem implements Kee, JSONAware, JSONStreamAware {
     public Object addItem(Kee item) {
         item.toMap().entrySet().forEach(e -> {
             if(e.getValue() instanceof String) {
-                storage.put(e.getKey(), (String)e.getValue());
+                put(e.getKey(), (String)e.getValue());
             } else {
                 throw new IllegalArgumentException("Only string values are accepted but received " + e.getValue().getClass().getName());
             }
@@ -226,12 +314,12 @@ public class KeeItem implements Kee, JSONAware, JSONStreamAware {
 
     @Override
     public void setId(String id) {
-        storage.put(ITEMNAME_ID, id);
+        put(ITEMNAME_ID, id);
     }
 
     @Override
     public void setName(String name) {
-        storage.put(ITEMNAME_KEY, name);
+        put(ITEMNAME_KEY, name);
     }
 
     @Override
@@ -251,7 +339,16 @@ public class KeeItem implements Kee, JSONAware, JSONStreamAware {
             keys.addAll(storage.keySet().stream()
                 .filter(k -> !k.equals(idKey())).collect(Collectors.toSet()));
         }
-        keys.forEach(k -> storage.remove(k));
+        keys.forEach(k -> {
+            if(storage.remove(k) != null) {
+                version.incrementAndGet();
+            }
+        });
+    }
+
+    @Override
+    public long getVersion() {
+        return version.get();
     }
 
 }
@@ -0,0 +1,275 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * <p>
+ * Rows of {@code Kee} models loaded a page at a time, i.e. for a table that
+ * shows a store too large to hold. The row count and the identifier of each
+ * row come from an index of identifiers only; a row is loaded (by the loader,
+ * with the executor) along with its page the first time it is read, and the
+ * next page in the direction of reading is loaded ahead.
+ * </p>
+ * <p>
+ * At most a number of pages is kept: the pages farthest from the page read
+ * last are evicted first, and loaded again when read. A row that is not
+ * loaded yet reads as null; the load listener is told once its page is
+ * loaded, i.e. to repaint it.
+ * </p>
+ *
+ * @author thinh ho
+ *
+ * @param <R> a loaded row, i.e. the values shown for a model.
+ */
+public class KeePager<R> {
+    private final int pageSize;
+    private final int maxPages;
+    private final Function<KeeId, ? extends R> loader;
+    private final Executor executor;
+    private List<KeeId> ids;
+    private final Map<Integer, List<R>> pages = new HashMap<>();
+    private final Set<Integer> loading = new HashSet<>();
+    // pages being loaded that were invalidated, loaded again once done
+    private final Set<Integer> stale = new HashSet<>();
+    private BiConsumer<Integer, Integer> loadListener = (from, to) -> {};
+    // the page read last, pages far from it are evicted first
+    private int current;
+    // refreshes, so that a page loaded from the previous index is dropped
+    private long generation;
+
+    /**
+     * @param ids the identifier of each row, in row order.
+     * @param pageSize rows per page.
+     * @param maxPages pages kept, at least 3: the page read, and those around
+     *        it.
+     * @param loader loads the row of a model, or returns null if there is no
+     *        such model.
+     * @param executor runs the loads, i.e. off the Event Queue thread.
+     */
+    public KeePager(List<KeeId> ids, int pageSize, int maxPages, Function<KeeId, ? extends R> loader,
+        Executor executor) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        if (maxPages < 3) {
+            throw new IllegalArgumentException("At least 3 pages must be kept");
+        }
+        this.ids = new ArrayList<>(ids);
+        this.pageSize = pageSize;
+        this.maxPages = maxPages;
+        this.loader = loader;
+        this.executor = executor;
+    }
+
+    /**
+     * <p>
+     * Receive the first and last row of every page loaded.
+     * </p>
+     *
+     * @param loadListener
+     */
+    public synchronized void setLoadListener(BiConsumer<Integer, Integer> loadListener) {
+        this.loadListener = loadListener;
+    }
+
+    /**
+     * The number of rows, from the index.
+     *
+     * @return
+     */
+    public synchronized int size() {
+        return ids.size();
+    }
+
+    /**
+     * The identifier of the model at the specified row, from the index.
+     *
+     * @param row
+     * @return
+     */
+    public synchronized KeeId getKeeId(int row) {
+        return ids.get(row);
+    }
+
+    /**
+     * <p>
+     * The specified row if its page is loaded; otherwise its page is loaded,
+     * as is the next page in the direction of reading.
+     * </p>
+     *
+     * @param row
+     * @return null if the row is not loaded yet, or there is no such model.
+     */
+    public R get(int row) {
+        int page = row / pageSize;
+        int ahead;
+        R value = null;
+        synchronized (this) {
+            if (row < 0 || row >= ids.size()) {
+                throw new IndexOutOfBoundsException("Row " + row + " of " + ids.size());
+            }
+            ahead = page >= current ? page + 1 : page - 1;
+            current = page;
+            List<R> loaded = pages.get(page);
+            if (loaded != null) {
+                value = loaded.get(row - page * pageSize);
+            }
+        }
+        request(page, false);
+        request(ahead, false);
+        return value;
+    }
+
+    /**
+     * Whether the page of the specified row is loaded.
+     *
+     * @param row
+     * @return
+     */
+    public synchronized boolean isLoaded(int row) {
+        return pages.containsKey(row / pageSize);
+    }
+
+    /**
+     * The number of pages loaded.
+     *
+     * @return
+     */
+    public synchronized int getPageCount() {
+        return pages.size();
+    }
+
+    /**
+     * <p>
+     * Replace the index, i.e. after models were added or removed; all pages
+     * are loaded again when read.
+     * </p>
+     *
+     * @param ids
+     */
+    public synchronized void refresh(List<KeeId> ids) {
+        this.ids = new ArrayList<>(ids);
+        pages.clear();
+        loading.clear();
+        stale.clear();
+        generation++;
+    }
+
+    /**
+     * <p>
+     * Load the page that holds the model with the specified identifier
+     * again, i.e. after it was changed in place. The page keeps its rows
+     * until then; if it is being loaded, it is loaded once more.
+     * </p>
+     *
+     * @param id
+     */
+    public void invalidate(KeeId id) {
+        List<Integer> reload = new ArrayList<>();
+        synchronized (this) {
+            for (int page : loading) {
+                if (holds(page, id)) {
+                    stale.add(page);
+                }
+            }
+            for (int page : pages.keySet()) {
+                if (holds(page, id)) {
+                    reload.add(page);
+                }
+            }
+        }
+        for (int page : reload) {
+            request(page, true);
+        }
+    }
+
+    /**
+     * Load the page unless it is loaded (or reload), being loaded, or out of
+     * range.
+     */
+    private void request(int page, boolean reload) {
+        List<KeeId> from;
+        long seen;
+        synchronized (this) {
+            if (page < 0 || page * pageSize >= ids.size() || (pages.containsKey(page) && !reload)
+                || !loading.add(page)) {
+                return;
+            }
+            from = new ArrayList<>(ids.subList(page * pageSize, end(page)));
+            seen = generation;
+        }
+        executor.execute(() -> load(page, from, seen));
+    }
+
+    private void load(int page, List<KeeId> from, long seen) {
+        List<R> rows = new ArrayList<>(from.size());
+        try {
+            for (KeeId id : from) {
+                rows.add(loader.apply(id));
+            }
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                if (generation == seen) {
+                    loading.remove(page);
+                    stale.remove(page);
+                }
+            }
+            throw e;
+        }
+        BiConsumer<Integer, Integer> listener;
+        synchronized (this) {
+            if (generation != seen) {
+                // the index was refreshed meanwhile, the rows may have moved
+                return;
+            }
+            loading.remove(page);
+            listener = stale.remove(page) ? null : loadListener;
+            if (listener != null) {
+                pages.put(page, rows);
+                evict();
+            }
+        }
+        if (listener == null) {
+            // a model of the page changed while it was loaded
+            request(page, true);
+            return;
+        }
+        listener.accept(page * pageSize, page * pageSize + rows.size() - 1);
+    }
+
+    /**
+     * Evict the pages farthest from the current page, holding the lock.
+     */
+    private void evict() {
+        while (pages.size() > maxPages) {
+            int farthest = current;
+            for (int page : pages.keySet()) {
+                if (Math.abs(page - current) > Math.abs(farthest - current)) {
+                    farthest = page;
+                }
+            }
+            pages.remove(farthest);
+        }
+    }
+
+    private boolean holds(int page, KeeId id) {
+        return page * pageSize < ids.size() && ids.subList(page * pageSize, end(page)).contains(id);
+    }
+
+    private int end(int page) {
+        return Math.min(ids.size(), (page + 1) * pageSize);
+    }
+}
@@ -0,0 +1,125 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import java.util.function.Predicate;
+
+/**
+ * <p>
+ * A query for {@link KeeIndex#find(KeeQuery)}: {@code Kee} models whose name
+ * and/or one of whose keys start with a prefix, that match a filter, one page
+ * at a time. Prefixes are answered from the ordered indexes; a filter is only
+ * tested on the models that match the prefixes, so a filter without any
+ * prefix tests every model.
+ * </p>
+ * <p>
+ * Results are ordered by name.
+ * </p>
+ * 
+ * @author thinh ho
+ *
+ */
+public class KeeQuery {
+    private String namePrefix;
+    private String keyPrefix;
+    private Predicate<Kee> filter;
+    private int offset;
+    private int limit = Integer.MAX_VALUE;
+
+    /**
+     * A query for all models, to be narrowed down.
+     * 
+     * @return
+     */
+    public static KeeQuery all() {
+        return new KeeQuery();
+    }
+
+    public KeeQuery namePrefix(String prefix) {
+        this.namePrefix = prefix;
+        return this;
+    }
+
+    public KeeQuery keyPrefix(String prefix) {
+        this.keyPrefix = prefix;
+        return this;
+    }
+
+    /**
+     * Only models that match the specified filter, in addition to any
+     * filter already set.
+     * 
+     * @param filter
+     * @return
+     */
+    public KeeQuery filter(Predicate<Kee> filter) {
+        this.filter = this.filter == null ? filter : this.filter.and(filter);
+        return this;
+    }
+
+    /**
+     * Skip the specified number of matches.
+     * 
+     * @param offset
+     * @return
+     */
+    public KeeQuery offset(int offset) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset must be non-negative");
+        }
+        this.offset = offset;
+        return this;
+    }
+
+    /**
+     * Return at most the specified number of matches.
+     * 
+     * @param limit
+     * @return
+     */
+    public KeeQuery limit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must be non-negative");
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * The query for the page after the one of this query.
+     * 
+     * @return
+     */
+    public KeeQuery next() {
+        KeeQuery next = new KeeQuery();
+        next.namePrefix = namePrefix;
+        next.keyPrefix = keyPrefix;
+        next.filter = filter;
+        next.limit = limit;
+        next.offset = (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+        return next;
+    }
+
+    public String getNamePrefix() {
+        return namePrefix;
+    }
+
+    public String getKeyPrefix() {
+        return keyPrefix;
+    }
+
+    public Predicate<Kee> getFilter() {
+        return filter;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+}
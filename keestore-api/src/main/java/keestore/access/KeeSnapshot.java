@@ -0,0 +1,48 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import java.util.List;
+
+/**
+ * <p>
+ * The {@code Kee} models of an access as they were at one point in time. A
+ * snapshot keeps the versions it reads from being reclaimed, so it must be
+ * closed once done; the models read from it must not be used afterwards.
+ * </p>
+ * 
+ * @author thinh ho
+ *
+ */
+public interface KeeSnapshot extends AutoCloseable {
+    /**
+     * The number of changes made to the access up to this snapshot.
+     * 
+     * @return
+     */
+    long getSequence();
+
+    /**
+     * The model with the specified identifier, or null if there was none.
+     * 
+     * @param id
+     * @return
+     */
+    Kee getKee(KeeId id);
+
+    /**
+     * All models, in no particular order.
+     * 
+     * @return
+     */
+    List<Kee> getAll();
+
+    /**
+     * Release this snapshot.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,124 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * <p>
+ * Changes to a {@code KeeAccess} that are made together on {@link #commit()},
+ * or not at all on {@link #rollback()}. Nothing is changed until then, so
+ * reads from the access do not see the changes of the transaction. Closing a
+ * transaction that was not committed rolls it back:
+ * </p>
+ * 
+ * <pre>
+ * try (KeeTransaction tx = access.begin()) {
+ *     tx.delete(old);
+ *     tx.add(kee);
+ *     tx.commit();
+ * }
+ * </pre>
+ * <p>
+ * A transaction is not thread-safe.
+ * </p>
+ * 
+ * @author thinh ho
+ *
+ */
+public class KeeTransaction implements AutoCloseable {
+    private final KeeAccess access;
+    private final List<KeeEvent> changes = new ArrayList<>();
+    private boolean done;
+
+    public KeeTransaction(KeeAccess access) {
+        this.access = access;
+    }
+
+    public KeeTransaction add(Kee item) {
+        return change(KeeEvent.added(this, item));
+    }
+
+    public KeeTransaction addAll(Collection<? extends Kee> items) {
+        items.forEach(this::add);
+        return this;
+    }
+
+    public KeeTransaction update(Kee item) {
+        return change(KeeEvent.updated(this, item, null));
+    }
+
+    public KeeTransaction delete(Kee item) {
+        return change(KeeEvent.removed(this, item));
+    }
+
+    public KeeTransaction deleteAll(Collection<? extends Kee> items) {
+        items.forEach(this::delete);
+        return this;
+    }
+
+    public KeeTransaction clear() {
+        return change(KeeEvent.cleared(this));
+    }
+
+    /**
+     * The changes collected so far, in order.
+     * 
+     * @return
+     */
+    public List<KeeEvent> getChanges() {
+        return new ArrayList<>(changes);
+    }
+
+    /**
+     * <p>
+     * Make all changes as one batch, see {@link KeeAccess#applyAll(List)}.
+     * </p>
+     */
+    public void commit() {
+        checkActive();
+        done = true;
+        if (!changes.isEmpty()) {
+            access.applyAll(new ArrayList<>(changes));
+        }
+    }
+
+    /**
+     * <p>
+     * Discard all changes.
+     * </p>
+     */
+    public void rollback() {
+        checkActive();
+        done = true;
+        changes.clear();
+    }
+
+    public boolean isActive() {
+        return !done;
+    }
+
+    @Override
+    public void close() {
+        if (!done) {
+            rollback();
+        }
+    }
+
+    private KeeTransaction change(KeeEvent change) {
+        checkActive();
+        changes.add(change);
+        return this;
+    }
+
+    private void checkActive() {
+        if (done) {
+            throw new IllegalStateException("Transaction already committed or rolled back");
+        }
+    }
+}
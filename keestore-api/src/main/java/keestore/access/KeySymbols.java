@@ -0,0 +1,61 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>
+ * A table of the key names used by all {@code Kee} models, so that each name
+ * (i.e. "username", "password") is kept as one shared instance rather than a
+ * copy per item. Keys are compared with {@code String.equals}, which checks
+ * for the same instance first, so shared keys also compare faster.
+ * </p>
+ * <p>
+ * Only key names are kept, never values, and entries are never removed; the
+ * number of distinct key names is expected to be small.
+ * </p>
+ *
+ * @author thinh ho
+ *
+ */
+public final class KeySymbols {
+    private static final ConcurrentMap<String, String> symbols = new ConcurrentHashMap<>();
+
+    static {
+        intern(KeeItem.ITEMNAME_ID);
+        intern(KeeItem.ITEMNAME_KEY);
+    }
+
+    private KeySymbols() {
+    }
+
+    /**
+     * <p>
+     * The shared instance of the specified key name.
+     * </p>
+     *
+     * @param key
+     * @return
+     */
+    public static String intern(String key) {
+        if (key == null) {
+            return null;
+        }
+        String symbol = symbols.putIfAbsent(key, key);
+        return symbol != null ? symbol : key;
+    }
+
+    /**
+     * Total distinct key names.
+     *
+     * @return
+     */
+    public static int size() {
+        return symbols.size();
+    }
+}
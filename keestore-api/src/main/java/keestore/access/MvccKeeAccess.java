@@ -0,0 +1,519 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * A {@code KeeAccess} that keeps the versions of its models, so that a
+ * {@link #openSnapshot() snapshot} reads all models as they were when it was
+ * opened while writers go on. Models are copied when written (see
+ * {@link Kee#snapshot()}) and reads return the copies, so a model that is
+ * changed in place after it is written does not change any version.
+ * </p>
+ * <p>
+ * Every write (or batch) gets the next number of a sequence and adds a new
+ * version to each model it changes; a snapshot sees the newest version of each
+ * model that is not newer than the sequence when it was opened. A version is
+ * dropped as soon as no open snapshot sees it; a copy that holds resources
+ * (i.e. {@code ArenaKeeItem}, whose copies share the values' blocks) is
+ * closed then, so superseded values are wiped right away rather than when the
+ * garbage collector finds them. A model read outside of a snapshot, or
+ * carried by an event, must not be used once it was superseded.
+ * </p>
+ * <p>
+ * Writers are serialized by a lock. Readers take no lock, apart from a short
+ * one to open and close a snapshot, and never wait for writers.
+ * </p>
+ *
+ * @author thinh ho
+ *
+ */
+public class MvccKeeAccess implements KeeAccess {
+    private final Map<KeeId, Chain> chains = new ConcurrentHashMap<>();
+    // models with versions that may be dropped, see prune()
+    private final Set<KeeId> history = ConcurrentHashMap.newKeySet();
+    // the sequence of each open snapshot, and how many are open at it
+    private final TreeMap<Long, Integer> pins = new TreeMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final KeeEventSupport events = new KeeEventSupport();
+    private volatile long sequence;
+    private volatile int size;
+    private volatile boolean sweep;
+    // copies made by this access that were dropped, see release()
+    private final List<Kee> dropped = new ArrayList<>();
+
+    /**
+     * A version of a model, null once it was deleted.
+     */
+    private static class Version {
+        private final long sequence;
+        private final Kee kee;
+        // whether the model is a copy made by this access
+        private final boolean owned;
+        private volatile Version older;
+
+        private Version(long sequence, Kee kee, boolean owned, Version older) {
+            this.sequence = sequence;
+            this.kee = kee;
+            this.owned = owned;
+            this.older = older;
+        }
+    }
+
+    /**
+     * The versions of a model, newest first.
+     */
+    private static class Chain {
+        private volatile Version head;
+
+        private Kee at(long sequence) {
+            for (Version v = head; v != null; v = v.older) {
+                if (v.sequence <= sequence) {
+                    return v.kee;
+                }
+            }
+            return null;
+        }
+    }
+
+    private class Snapshot implements KeeSnapshot {
+        private final long sequence;
+        private boolean closed;
+
+        private Snapshot(long sequence) {
+            this.sequence = sequence;
+        }
+
+        @Override
+        public long getSequence() {
+            return sequence;
+        }
+
+        @Override
+        public Kee getKee(KeeId id) {
+            checkOpen();
+            Chain chain = chains.get(id);
+            return chain != null ? chain.at(sequence) : null;
+        }
+
+        @Override
+        public List<Kee> getAll() {
+            checkOpen();
+            List<Kee> all = new ArrayList<>();
+            // models added later have only newer versions and are skipped
+            chains.values().forEach(c -> {
+                Kee kee = c.at(sequence);
+                if (kee != null) {
+                    all.add(kee);
+                }
+            });
+            return Collections.unmodifiableList(all);
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!closed) {
+                closed = true;
+                unpin(sequence);
+            }
+        }
+
+        private synchronized void checkOpen() {
+            if (closed) {
+                throw new IllegalStateException("Snapshot is closed");
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Pin the current versions of all models.
+     * </p>
+     *
+     * @return
+     */
+    public KeeSnapshot openSnapshot() {
+        synchronized (pins) {
+            long current = sequence;
+            pins.merge(current, 1, Integer::sum);
+            return new Snapshot(current);
+        }
+    }
+
+    /**
+     * The number of writes made so far.
+     *
+     * @return
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Total models.
+     *
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The number of versions kept for all models, including deletions that
+     * open snapshots may still see.
+     *
+     * @return
+     */
+    public int getVersionCount() {
+        int count = 0;
+        for (Chain c : chains.values()) {
+            for (Version v = c.head; v != null; v = v.older) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public Kee getKee(String id) {
+        return getKee(KeeId.valueOf(id));
+    }
+
+    @Override
+    public Kee getKee(KeeId id) {
+        Chain chain = chains.get(id);
+        Version head = chain != null ? chain.head : null;
+        return head != null ? head.kee : null;
+    }
+
+    /**
+     * The sequence of the write that made the current version.
+     */
+    @Override
+    public long getVersion(KeeId id) {
+        Chain chain = chains.get(id);
+        Version head = chain != null ? chain.head : null;
+        return head != null && head.kee != null ? head.sequence : NO_VERSION;
+    }
+
+    @Override
+    public void addKee(Kee item) {
+        applyAll(Collections.singletonList(KeeEvent.added(this, item)));
+    }
+
+    @Override
+    public void deleteKee(Kee item) {
+        deleteKee(item.getKeeId());
+    }
+
+    @Override
+    public void deleteKee(String id) {
+        deleteKee(KeeId.valueOf(id));
+    }
+
+    @Override
+    public void deleteKee(KeeId id) {
+        writeLock.lock();
+        try {
+            Kee current = getKee(id);
+            if (current != null) {
+                write(Collections.singletonList(KeeEvent.removed(this, current)));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void updateKee(Kee item) {
+        applyAll(Collections.singletonList(KeeEvent.updated(this, item, null)));
+    }
+
+    @Override
+    public boolean replaceIfVersion(KeeId id, long expectedVersion, Kee item) {
+        writeLock.lock();
+        try {
+            checkReplacement(id, item);
+            if (getVersion(id) != expectedVersion) {
+                return false;
+            }
+            replace(id, item);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * <p>
+     * The function is called once, holding the write lock, with the current
+     * version of the model.
+     * </p>
+     */
+    @Override
+    public Kee computeIfPresent(KeeId id, BiFunction<KeeId, ? super Kee, ? extends Kee> remapping) {
+        writeLock.lock();
+        try {
+            Kee current = getKee(id);
+            if (current == null) {
+                return null;
+            }
+            Kee next = remapping.apply(id, current);
+            checkReplacement(id, next);
+            replace(id, next);
+            return next != null ? getKee(id) : null;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        applyAll(Collections.singletonList(KeeEvent.cleared(this)));
+    }
+
+    /**
+     * <p>
+     * Make the specified changes as one write: a snapshot sees all of them or
+     * none. All changes are checked first; if one cannot be made (i.e. a model
+     * is added twice) nothing is changed.
+     * </p>
+     */
+    @Override
+    public void applyAll(List<KeeEvent> changes) {
+        writeLock.lock();
+        try {
+            KeeBatches.check(changes, id -> getKee(id) != null, this::check);
+            write(changes);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void addKeeListener(Consumer<KeeEvent> listener) {
+        events.addListener(listener);
+    }
+
+    @Override
+    public void removeKeeListener(Consumer<KeeEvent> listener) {
+        events.removeListener(listener);
+    }
+
+    /**
+     * <p>
+     * Check that the specified model can be added or updated, throwing
+     * {@code IllegalArgumentException} if not.
+     * </p>
+     *
+     * @param item
+     */
+    protected void check(Kee item) {
+        if (item == null) {
+            throw new IllegalArgumentException("Invalid item to add");
+        }
+    }
+
+    private void checkReplacement(KeeId id, Kee item) {
+        if (item != null) {
+            check(item);
+            if (!item.getKeeId().equals(id)) {
+                throw new IllegalArgumentException("Item " + item.getKeeId() + " cannot replace " + id);
+            }
+        }
+    }
+
+    private void replace(KeeId id, Kee item) {
+        if (item != null) {
+            write(Collections.singletonList(KeeEvent.updated(this, item, null)));
+        } else {
+            Kee current = getKee(id);
+            if (current != null) {
+                write(Collections.singletonList(KeeEvent.removed(this, current)));
+            }
+        }
+    }
+
+    /**
+     * Add a version for each change, all with the next sequence; holding the
+     * write lock.
+     */
+    private void write(List<KeeEvent> changes) {
+        long next = sequence + 1;
+        List<KeeEvent> applied = new ArrayList<>(changes.size());
+        Set<KeeId> touched = new HashSet<>();
+        for (KeeEvent c : changes) {
+            switch (c.getType()) {
+            case ADDED:
+            case UPDATED:
+                Kee frozen = c.getKee().snapshot();
+                Kee previous = push(c.getId(), next, frozen, frozen != c.getKee());
+                applied.add(previous == null ? KeeEvent.added(this, frozen) : KeeEvent.updated(this, frozen, previous));
+                touched.add(c.getId());
+                break;
+            case REMOVED:
+                Kee removed = push(c.getId(), next, null, false);
+                if (removed != null) {
+                    applied.add(KeeEvent.removed(this, removed));
+                    touched.add(c.getId());
+                }
+                break;
+            case CLEARED:
+                for (KeeId id : chains.keySet()) {
+                    if (push(id, next, null, false) != null) {
+                        touched.add(id);
+                    }
+                }
+                applied.add(KeeEvent.cleared(this));
+                break;
+            case BATCH:
+                break;
+            }
+        }
+        if (applied.isEmpty()) {
+            return;
+        }
+        // the versions become visible to new snapshots all at once
+        sequence = next;
+        history.addAll(touched);
+        prune(sweep ? history : touched);
+        try {
+            events.publish(applied.size() == 1 ? applied.get(0) : KeeEvent.batch(this, applied));
+        } finally {
+            // after the listeners, which may read the versions replaced
+            release();
+        }
+    }
+
+    /**
+     * Add the version of the model, null if deleted, returning the current one.
+     */
+    private Kee push(KeeId id, long next, Kee kee, boolean owned) {
+        Chain chain = chains.computeIfAbsent(id, k -> new Chain());
+        Version head = chain.head;
+        Kee current = head != null ? head.kee : null;
+        if (kee == null && current == null) {
+            return null;
+        }
+        if (head != null && head.sequence == next) {
+            // changed again within the same write, no snapshot saw it
+            chain.head = new Version(next, kee, owned, head.older);
+            drop(head);
+        } else {
+            chain.head = new Version(next, kee, owned, head);
+        }
+        size += (current == null ? 1 : 0) - (kee == null ? 1 : 0);
+        return current;
+    }
+
+    /**
+     * Drop the versions that no open snapshot can see; holding the write lock.
+     */
+    private void prune(Set<KeeId> ids) {
+        long[] pinned;
+        synchronized (pins) {
+            pinned = pins.keySet().stream().mapToLong(Long::longValue).toArray();
+            sweep = false;
+        }
+        for (KeeId id : new ArrayList<>(ids)) {
+            Chain chain = chains.get(id);
+            if (chain == null) {
+                history.remove(id);
+                continue;
+            }
+            // the newest version is always kept, an older one only while a
+            // snapshot sees it, i.e. was opened before the next one was made
+            Version newer = chain.head;
+            for (Version v = newer.older; v != null; v = v.older) {
+                if (seen(pinned, v.sequence, newer.sequence)) {
+                    newer.older = v;
+                    newer = v;
+                } else {
+                    drop(v);
+                }
+            }
+            newer.older = null;
+            if (chain.head.older == null) {
+                history.remove(id);
+                if (chain.head.kee == null) {
+                    chains.remove(id);
+                }
+            }
+        }
+    }
+
+    /**
+     * The version is no longer reachable by new reads; holding the write lock.
+     */
+    private void drop(Version v) {
+        if (v.owned && v.kee instanceof AutoCloseable) {
+            dropped.add(v.kee);
+        }
+    }
+
+    /**
+     * Close the copies that were dropped; holding the write lock.
+     */
+    private void release() {
+        RuntimeException failed = null;
+        for (Kee kee : dropped) {
+            try {
+                ((AutoCloseable) kee).close();
+            } catch (Exception e) {
+                if (failed == null) {
+                    failed = new IllegalStateException("Cannot release a version of " + kee.getKeeId(), e);
+                } else {
+                    failed.addSuppressed(e);
+                }
+            }
+        }
+        dropped.clear();
+        if (failed != null) {
+            throw failed;
+        }
+    }
+
+    /**
+     * Whether a snapshot was opened at a sequence from {@code from} to before
+     * {@code to}.
+     */
+    private static boolean seen(long[] pinned, long from, long to) {
+        int i = Arrays.binarySearch(pinned, from);
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return i < pinned.length && pinned[i] < to;
+    }
+
+    private void unpin(long pinned) {
+        synchronized (pins) {
+            pins.computeIfPresent(pinned, (k, n) -> n > 1 ? n - 1 : null);
+            sweep = true;
+        }
+        // drop what this snapshot kept, unless a writer is busy (it will)
+        if (writeLock.tryLock()) {
+            try {
+                prune(history);
+                release();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+}
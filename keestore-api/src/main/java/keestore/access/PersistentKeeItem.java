@@ -0,0 +1,175 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>
+ * A {@code KeeItem} whose values are kept in an immutable, structurally shared
+ * map that is replaced on every change. Reads never lock and
+ * {@link #toKee()}/{@link #snapshot()} take constant time: the copy shares the
+ * current map with this item, and later changes to either one only create
+ * new versions of the few parts that changed.
+ * </p>
+ * <p>
+ * Changes are synchronized on the underlying storage, same as
+ * {@code KeeItem}. Iterating {@link #keys()}, {@link #values()} or
+ * {@link #toMap()} always sees one consistent version.
+ * </p>
+ *
+ * @author thinh ho
+ *
+ */
+public class PersistentKeeItem extends KeeItem {
+    private static final long serialVersionUID = 8841236540187604539L;
+
+    private final Storage storage;
+
+    /**
+     * The current version of the values as a mutable map.
+     */
+    private static class Storage extends AbstractMap<String, String> implements Serializable {
+        private static final long serialVersionUID = -3304426263612788245L;
+
+        private volatile PersistentMap<String, String> values;
+
+        private Storage(PersistentMap<String, String> values) {
+            this.values = values;
+        }
+
+        @Override
+        public int size() {
+            return values.size();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String && values.containsKey((String) key);
+        }
+
+        @Override
+        public String get(Object key) {
+            return key instanceof String ? values.get((String) key) : null;
+        }
+
+        @Override
+        public synchronized String put(String key, String value) {
+            String previous = values.get(key);
+            values = values.plus(key, value);
+            return previous;
+        }
+
+        @Override
+        public synchronized String remove(Object key) {
+            if (!(key instanceof String)) {
+                return null;
+            }
+            String previous = values.get((String) key);
+            values = values.minus((String) key);
+            return previous;
+        }
+
+        @Override
+        public synchronized void clear() {
+            values = PersistentMap.empty();
+        }
+
+        @Override
+        public Set<Map.Entry<String, String>> entrySet() {
+            PersistentMap<String, String> current = values;
+            return new AbstractSet<Map.Entry<String, String>>() {
+                @Override
+                public Iterator<Map.Entry<String, String>> iterator() {
+                    Iterator<Map.Entry<String, String>> entries = current.entries().iterator();
+                    return new Iterator<Map.Entry<String, String>>() {
+                        private Map.Entry<String, String> last;
+
+                        @Override
+                        public boolean hasNext() {
+                            return entries.hasNext();
+                        }
+
+                        @Override
+                        public Map.Entry<String, String> next() {
+                            last = entries.next();
+                            return last;
+                        }
+
+                        @Override
+                        public void remove() {
+                            if (last == null) {
+                                throw new IllegalStateException();
+                            }
+                            Storage.this.remove(last.getKey());
+                            last = null;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return current.size();
+                }
+            };
+        }
+    }
+
+    /**
+     * <p>
+     * Must set with an initial non-empty name value.
+     * </p>
+     *
+     * @param name
+     */
+    public PersistentKeeItem(String name) {
+        this(new Storage(PersistentMap.empty()), name);
+    }
+
+    @SuppressWarnings("rawtypes")
+    public PersistentKeeItem(final Map item) {
+        this(new Storage(PersistentMap.empty()), item);
+    }
+
+    private PersistentKeeItem(Storage storage, String name) {
+        super(storage, name);
+        this.storage = storage;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private PersistentKeeItem(Storage storage, Map item) {
+        super(storage, item);
+        this.storage = storage;
+    }
+
+    private PersistentKeeItem(Storage storage, long version) {
+        super(storage, version);
+        this.storage = storage;
+    }
+
+    /**
+     * <p>
+     * A copy of this item, that also carries over the current version, in
+     * constant time.
+     * </p>
+     */
+    @Override
+    public Kee toKee() {
+        // read the version first, see KeeItem
+        long current = getVersion();
+        return new PersistentKeeItem(new Storage(storage.values), current);
+    }
+
+    @Override
+    protected KeeItem copyOf(Map<String, Object> data) {
+        return new PersistentKeeItem(data);
+    }
+}
@@ -0,0 +1,344 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * <p>
+ * An immutable map as a hash array mapped trie. Adding or removing
+ * a key creates a new map that shares all of its structure with this one
+ * except for the path to the changed key (a few small arrays), so keeping
+ * every version of a map around is cheap and taking a snapshot is free.
+ * </p>
+ *
+ * @author thinh ho
+ *
+ */
+final class PersistentMap<K, V> implements Serializable {
+    private static final long serialVersionUID = -6190006453632218235L;
+    private static final int bits = 5;
+    private static final int mask = (1 << bits) - 1;
+
+    private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(BitmapNode.EMPTY, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * The empty map.
+     */
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(Object key) {
+        if (key == null) {
+            return null;
+        }
+        return (V) root.get(key, key.hashCode(), 0);
+    }
+
+    boolean containsKey(Object key) {
+        if (key == null) {
+            return false;
+        }
+        return root.containsKey(key, key.hashCode(), 0);
+    }
+
+    /**
+     * A map with the specified key mapped to the value, or this map if it
+     * already is.
+     */
+    PersistentMap<K, V> plus(K key, V value) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key must be non-null");
+        }
+        Change change = new Change();
+        Node n = root.plus(key, value, key.hashCode(), 0, change);
+        return n == root ? this : new PersistentMap<>(n, change.added ? size + 1 : size);
+    }
+
+    /**
+     * A map without the specified key, or this map if it does not exist.
+     */
+    PersistentMap<K, V> minus(Object key) {
+        if (key == null) {
+            return this;
+        }
+        Node n = root.minus(key, key.hashCode(), 0);
+        if (n == root) {
+            return this;
+        }
+        return n == null ? empty() : new PersistentMap<>(n, size - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    void forEach(BiConsumer<? super K, ? super V> action) {
+        root.forEach((k, v) -> action.accept((K) k, (V) v));
+    }
+
+    /**
+     * All entries of this map.
+     */
+    List<Map.Entry<K, V>> entries() {
+        List<Map.Entry<K, V>> entries = new ArrayList<>(size);
+        forEach((k, v) -> entries.add(new AbstractMap.SimpleImmutableEntry<>(k, v)));
+        return entries;
+    }
+
+    private static class Change {
+        private boolean added;
+    }
+
+    private static abstract class Node implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        abstract Object get(Object key, int hash, int shift);
+
+        abstract boolean containsKey(Object key, int hash, int shift);
+
+        abstract Node plus(Object key, Object value, int hash, int shift, Change change);
+
+        /** This node, a node without the key, or null if nothing is left. */
+        abstract Node minus(Object key, int hash, int shift);
+
+        abstract void forEach(BiConsumer<Object, Object> action);
+    }
+
+    /**
+     * Slots are pairs: a key and its value, or null and a child node. Only the
+     * slots that are in use are allocated; the bitmap tells which.
+     */
+    private static class BitmapNode extends Node {
+        private static final long serialVersionUID = 1L;
+        private static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        private final int bitmap;
+        private final Object[] slots;
+
+        private BitmapNode(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1)) * 2;
+        }
+
+        @Override
+        Object get(Object key, int hash, int shift) {
+            int bit = 1 << ((hash >>> shift) & mask);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            int i = index(bit);
+            Object k = slots[i];
+            if (k == null) {
+                return ((Node) slots[i + 1]).get(key, hash, shift + bits);
+            }
+            return key.equals(k) ? slots[i + 1] : null;
+        }
+
+        @Override
+        boolean containsKey(Object key, int hash, int shift) {
+            int bit = 1 << ((hash >>> shift) & mask);
+            if ((bitmap & bit) == 0) {
+                return false;
+            }
+            int i = index(bit);
+            Object k = slots[i];
+            if (k == null) {
+                return ((Node) slots[i + 1]).containsKey(key, hash, shift + bits);
+            }
+            return key.equals(k);
+        }
+
+        @Override
+        Node plus(Object key, Object value, int hash, int shift, Change change) {
+            int bit = 1 << ((hash >>> shift) & mask);
+            int i = index(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] copy = new Object[slots.length + 2];
+                System.arraycopy(slots, 0, copy, 0, i);
+                copy[i] = key;
+                copy[i + 1] = value;
+                System.arraycopy(slots, i, copy, i + 2, slots.length - i);
+                change.added = true;
+                return new BitmapNode(bitmap | bit, copy);
+            }
+            Object k = slots[i];
+            Object v = slots[i + 1];
+            if (k == null) {
+                Node child = (Node) v;
+                Node n = child.plus(key, value, hash, shift + bits, change);
+                return n == child ? this : with(i + 1, n);
+            }
+            if (key.equals(k)) {
+                return Objects.equals(value, v) ? this : with(i + 1, value);
+            }
+            // two keys in the same slot, push both down a level
+            change.added = true;
+            Node child = pair(k, v, k.hashCode(), key, value, hash, shift + bits);
+            Object[] copy = slots.clone();
+            copy[i] = null;
+            copy[i + 1] = child;
+            return new BitmapNode(bitmap, copy);
+        }
+
+        @Override
+        Node minus(Object key, int hash, int shift) {
+            int bit = 1 << ((hash >>> shift) & mask);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int i = index(bit);
+            Object k = slots[i];
+            if (k == null) {
+                Node child = (Node) slots[i + 1];
+                Node n = child.minus(key, hash, shift + bits);
+                if (n == child) {
+                    return this;
+                }
+                return n != null ? with(i + 1, n) : without(bit, i);
+            }
+            return key.equals(k) ? without(bit, i) : this;
+        }
+
+        @Override
+        void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < slots.length; i += 2) {
+                if (slots[i] == null) {
+                    ((Node) slots[i + 1]).forEach(action);
+                } else {
+                    action.accept(slots[i], slots[i + 1]);
+                }
+            }
+        }
+
+        private BitmapNode with(int i, Object value) {
+            Object[] copy = slots.clone();
+            copy[i] = value;
+            return new BitmapNode(bitmap, copy);
+        }
+
+        private BitmapNode without(int bit, int i) {
+            if (bitmap == bit) {
+                return null;
+            }
+            Object[] copy = new Object[slots.length - 2];
+            System.arraycopy(slots, 0, copy, 0, i);
+            System.arraycopy(slots, i + 2, copy, i, slots.length - i - 2);
+            return new BitmapNode(bitmap ^ bit, copy);
+        }
+
+        private static Node pair(Object k1, Object v1, int h1, Object k2, Object v2, int h2, int shift) {
+            if (h1 == h2) {
+                return new CollisionNode(h1, new Object[] { k1, v1, k2, v2 });
+            }
+            Change ignore = new Change();
+            return EMPTY.plus(k1, v1, h1, shift, ignore).plus(k2, v2, h2, shift, ignore);
+        }
+    }
+
+    /**
+     * Keys with the same hash, searched linearly.
+     */
+    private static class CollisionNode extends Node {
+        private static final long serialVersionUID = 1L;
+
+        private final int hash;
+        private final Object[] pairs;
+
+        private CollisionNode(int hash, Object[] pairs) {
+            this.hash = hash;
+            this.pairs = pairs;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < pairs.length; i += 2) {
+                if (key.equals(pairs[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        Object get(Object key, int hash, int shift) {
+            int i = hash == this.hash ? indexOf(key) : -1;
+            return i >= 0 ? pairs[i + 1] : null;
+        }
+
+        @Override
+        boolean containsKey(Object key, int hash, int shift) {
+            return hash == this.hash && indexOf(key) >= 0;
+        }
+
+        @Override
+        Node plus(Object key, Object value, int hash, int shift, Change change) {
+            if (hash != this.hash) {
+                // a different hash that shares the path so far, split here
+                BitmapNode n = new BitmapNode(1 << ((this.hash >>> shift) & mask), new Object[] { null, this });
+                return n.plus(key, value, hash, shift, change);
+            }
+            int i = indexOf(key);
+            if (i >= 0) {
+                if (Objects.equals(value, pairs[i + 1])) {
+                    return this;
+                }
+                Object[] copy = pairs.clone();
+                copy[i + 1] = value;
+                return new CollisionNode(hash, copy);
+            }
+            change.added = true;
+            Object[] copy = Arrays.copyOf(pairs, pairs.length + 2);
+            copy[pairs.length] = key;
+            copy[pairs.length + 1] = value;
+            return new CollisionNode(hash, copy);
+        }
+
+        @Override
+        Node minus(Object key, int hash, int shift) {
+            int i = hash == this.hash ? indexOf(key) : -1;
+            if (i < 0) {
+                return this;
+            }
+            if (pairs.length == 2) {
+                return null;
+            }
+            Object[] copy = new Object[pairs.length - 2];
+            System.arraycopy(pairs, 0, copy, 0, i);
+            System.arraycopy(pairs, i + 2, copy, i, pairs.length - i - 2);
+            return new CollisionNode(hash, copy);
+        }
+
+        @Override
+        void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < pairs.length; i += 2) {
+                action.accept(pairs[i], pairs[i + 1]);
+            }
+        }
+    }
+}
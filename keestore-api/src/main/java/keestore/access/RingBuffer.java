@@ -0,0 +1,102 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * A bounded queue for many producers and a single consumer, without locks.
+ * Each slot has a sequence number telling whether it is free for the
+ * producer at a position, or full for the consumer: producers claim a
+ * position with a compare-and-set, then fill the slot and publish it by
+ * moving its sequence.
+ * </p>
+ * 
+ * @author thinh ho
+ *
+ */
+final class RingBuffer<E> {
+    private final Object[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    // only read and written by the consumer
+    private long head;
+
+    /**
+     * @param capacity rounded up to a power of two.
+     */
+    RingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        slots = new Object[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+
+    /**
+     * Add the element, from any thread.
+     * 
+     * @return false if the buffer is full.
+     */
+    boolean offer(E element) {
+        while (true) {
+            long pos = tail.get();
+            int i = (int) pos & mask;
+            long diff = sequences.get(i) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    slots[i] = element;
+                    sequences.set(i, pos + 1);
+                    return true;
+                }
+            } else if (diff < 0) {
+                // the consumer has not taken the element a lap behind yet
+                return false;
+            }
+            // another producer claimed the position, try the next one
+        }
+    }
+
+    /**
+     * Take the next element; consumer only.
+     * 
+     * @return null if the buffer is empty.
+     */
+    @SuppressWarnings("unchecked")
+    E poll() {
+        int i = (int) head & mask;
+        if (sequences.get(i) != head + 1) {
+            return null;
+        }
+        E element = (E) slots[i];
+        slots[i] = null;
+        sequences.set(i, head + slots.length);
+        head++;
+        return element;
+    }
+
+    /**
+     * Whether there is no element to take; consumer only.
+     */
+    boolean isEmpty() {
+        return sequences.get((int) head & mask) != head + 1;
+    }
+}
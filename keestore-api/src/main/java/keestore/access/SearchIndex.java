@@ -0,0 +1,301 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * <p>
+ * A typo-tolerant search over the names and keys (and, if enabled, the
+ * values) of {@code Kee} models. Each text is split into its trigrams (three
+ * character sequences) and the index maps every trigram to the texts that
+ * contain it, so a query only visits the texts that share a trigram with it.
+ * Texts are scored by the share of trigrams they have in common with the
+ * query, so "pasword" still finds "password". A text shared by many models
+ * (i.e. a common key) is indexed once.
+ * </p>
+ * <p>
+ * The index is kept in memory only and holds the searched texts themselves,
+ * which is why values are not indexed by default; {@link #clear()} it when
+ * the models are no longer shown. All methods are synchronized on this
+ * object.
+ * </p>
+ *
+ * @author thinh ho
+ *
+ */
+public class SearchIndex {
+    private static final int gram = 3;
+    private static final double minScore = 0.3;
+
+    private final boolean includeValues;
+    private final Map<KeeId, Entry> entries = new HashMap<>();
+    private final Map<String, Text> texts = new HashMap<>();
+    private final Map<String, List<Text>> postings = new HashMap<>();
+
+    /**
+     * A model along with the version it was indexed at.
+     */
+    private static class Entry {
+        private final Kee kee;
+        private final long version;
+        private final List<Text> texts = new ArrayList<>();
+
+        private Entry(Kee kee) {
+            this.kee = kee;
+            this.version = kee.getVersion();
+        }
+    }
+
+    /**
+     * An indexed text, shared by all models that contain it (i.e. a key
+     * such as "password" is indexed once).
+     */
+    private static class Text {
+        private final String text;
+        private final int grams;
+        private final List<Entry> entries = new ArrayList<>(1);
+        // trigrams in common with the current query, see search()
+        private int hits;
+
+        private Text(String text, int grams) {
+            this.text = text;
+            this.grams = grams;
+        }
+    }
+
+    /**
+     * A text that matches a query.
+     */
+    private static class Match implements Comparable<Match> {
+        private final Text text;
+        private final double score;
+
+        private Match(Text text, double score) {
+            this.text = text;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(Match other) {
+            int c = Double.compare(other.score, score);
+            return c != 0 ? c : text.text.compareTo(other.text.text);
+        }
+    }
+
+    /**
+     * Index names and keys only.
+     */
+    public SearchIndex() {
+        this(false);
+    }
+
+    /**
+     * @param includeValues whether values are searched as well.
+     */
+    public SearchIndex(boolean includeValues) {
+        this.includeValues = includeValues;
+    }
+
+    /**
+     * <p>
+     * Index the specified model, replacing what was indexed for it before.
+     * </p>
+     *
+     * @param kee
+     */
+    public synchronized void add(Kee kee) {
+        KeeId id = kee.getKeeId();
+        remove(id);
+        Entry entry = new Entry(kee);
+        addText(entry, kee.getName());
+        kee.toMap().forEach((k, v) -> {
+            if (!k.equals(kee.idKey()) && !k.equals(kee.nameKey())) {
+                addText(entry, k);
+                if (includeValues && v instanceof String) {
+                    addText(entry, (String) v);
+                }
+            }
+        });
+        entries.put(id, entry);
+    }
+
+    /**
+     * <p>
+     * Remove the model with the specified identifier from the index.
+     * </p>
+     *
+     * @param id
+     */
+    public synchronized void remove(KeeId id) {
+        Entry entry = entries.remove(id);
+        if (entry == null) {
+            return;
+        }
+        entry.texts.forEach(t -> {
+            t.entries.remove(entry);
+            if (t.entries.isEmpty()) {
+                texts.remove(t.text);
+                grams(t.text).forEach(g -> {
+                    List<Text> found = postings.get(g);
+                    if (found != null && found.remove(t) && found.isEmpty()) {
+                        postings.remove(g);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * <p>
+     * Make the index the same as the specified models: models that are gone
+     * are removed, and only new models and those whose version moved are
+     * indexed.
+     * </p>
+     *
+     * @param all
+     */
+    public synchronized void sync(List<? extends Kee> all) {
+        Map<KeeId, Kee> current = new HashMap<>();
+        all.forEach(k -> current.put(k.getKeeId(), k));
+        new ArrayList<>(entries.keySet()).forEach(id -> {
+            if (!current.containsKey(id)) {
+                remove(id);
+            }
+        });
+        current.forEach((id, k) -> {
+            Entry entry = entries.get(id);
+            if (entry == null || entry.kee != k || entry.version != k.getVersion()) {
+                add(k);
+            }
+        });
+    }
+
+    /**
+     * <p>
+     * Forget all models.
+     * </p>
+     */
+    public synchronized void clear() {
+        entries.clear();
+        texts.clear();
+        postings.clear();
+    }
+
+    /**
+     * Total models indexed.
+     *
+     * @return
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * <p>
+     * The models with a name or key (or value) that is close to the specified
+     * query, best match first.
+     * </p>
+     *
+     * @param query
+     * @param limit the maximum number of models returned.
+     * @return
+     */
+    public synchronized List<Kee> search(String query, int limit) {
+        List<Kee> found = new ArrayList<>();
+        String normalized = normalize(query);
+        if (normalized.isEmpty() || limit <= 0) {
+            return found;
+        }
+        Set<String> grams = grams(normalized);
+        List<Text> touched = new ArrayList<>();
+        for (String g : grams) {
+            List<Text> candidates = postings.get(g);
+            if (candidates != null) {
+                for (Text t : candidates) {
+                    if (t.hits++ == 0) {
+                        touched.add(t);
+                    }
+                }
+            }
+        }
+
+        List<Match> matches = new ArrayList<>();
+        for (Text t : touched) {
+            double score = 2.0 * t.hits / (grams.size() + t.grams);
+            t.hits = 0;
+            if (t.text.contains(normalized)) {
+                score = Math.max(score, 0.5 + 0.5 * normalized.length() / t.text.length());
+            }
+            if (score >= minScore) {
+                matches.add(new Match(t, score));
+            }
+        }
+
+        // best texts first, so a model is found by its best text; only as many
+        // texts as needed are taken off the heap
+        PriorityQueue<Match> best = new PriorityQueue<>(matches);
+        Set<Entry> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        Match m;
+        while ((m = best.poll()) != null) {
+            for (Entry e : m.text.entries) {
+                if (seen.add(e)) {
+                    found.add(e.kee);
+                    if (found.size() == limit) {
+                        return found;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    private void addText(Entry entry, String text) {
+        String normalized = text != null ? normalize(text) : "";
+        if (normalized.isEmpty()) {
+            return;
+        }
+        Text t = texts.get(normalized);
+        if (t == null) {
+            Set<String> grams = grams(normalized);
+            t = new Text(normalized, grams.size());
+            texts.put(normalized, t);
+            for (String g : grams) {
+                postings.computeIfAbsent(g, k -> new ArrayList<>(2)).add(t);
+            }
+        }
+        if (!entry.texts.contains(t)) {
+            entry.texts.add(t);
+            t.entries.add(entry);
+        }
+    }
+
+    private static String normalize(String text) {
+        return text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The distinct trigrams of the text, padded so that the start and the end
+     * of the text count as well.
+     */
+    private static Set<String> grams(String text) {
+        String padded = " " + text + " ";
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + gram <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + gram));
+        }
+        return grams;
+    }
+}
@@ -0,0 +1,482 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+
+/**
+ * <p>
+ * A {@code KeeAccess} in which one thread, the writer, owns the models. Every
+ * change is sent as a command through a bounded {@link RingBuffer} to the
+ * writer, which makes the changes one after another: there is no lock, and
+ * all changes are in one total order, the order in which listeners see them
+ * (on the writer thread). Listeners can hand the changes to persistence or
+ * replication as they are.
+ * </p>
+ * <p>
+ * Readers never wait: they read the latest published snapshot, an immutable
+ * map that shares its structure with the previous one. The writer publishes a
+ * snapshot once for all the commands it took from the buffer at once, before
+ * the callers of those commands return, so a caller always reads its own
+ * changes. Calls return once the change is made, see
+ * {@link #submit(List)} to not wait.
+ * </p>
+ * <p>
+ * The writer thread runs until the access is {@link #close() closed}.
+ * </p>
+ *
+ * @author thinh ho
+ *
+ */
+public class SingleWriterKeeAccess implements KeeAccess, AutoCloseable {
+    private static final int defaultCapacity = 1024;
+    private static final long idleNanos = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final RingBuffer<Command> commands;
+    private final KeeEventSupport events = new KeeEventSupport();
+    private final Thread writer;
+    private volatile Snapshot snapshot = new Snapshot(PersistentMap.empty(), 0);
+    private volatile boolean sleeping;
+    private volatile boolean closed;
+    // the writer found no command left after closing, see send()
+    private volatile boolean stopped;
+
+    // owned by the writer thread
+    private PersistentMap<KeeId, Entry> entries = PersistentMap.empty();
+    private long version;
+    private long sequence;
+
+    /**
+     * A model along with its version in this access.
+     */
+    private static class Entry {
+        private final Kee kee;
+        private final long version;
+
+        private Entry(Kee kee, long version) {
+            this.kee = kee;
+            this.version = version;
+        }
+    }
+
+    /**
+     * The models as published by the writer, after the specified number of
+     * changes.
+     */
+    private static class Snapshot {
+        private final PersistentMap<KeeId, Entry> entries;
+        private final long sequence;
+
+        private Snapshot(PersistentMap<KeeId, Entry> entries, long sequence) {
+            this.entries = entries;
+            this.sequence = sequence;
+        }
+    }
+
+    private static class Command {
+        private final Supplier<Object> action;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+        private Object value;
+        private Throwable error;
+
+        private Command(Supplier<Object> action) {
+            this.action = action;
+        }
+
+        private void run() {
+            try {
+                value = action.get();
+            } catch (Throwable e) {
+                error = e;
+            }
+        }
+
+        private void complete() {
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(value);
+            }
+        }
+    }
+
+    public SingleWriterKeeAccess() {
+        this(defaultCapacity);
+    }
+
+    /**
+     * @param capacity the number of commands that can wait for the writer,
+     *        rounded up to a power of two; callers wait when it is full.
+     */
+    public SingleWriterKeeAccess(int capacity) {
+        commands = new RingBuffer<>(capacity);
+        writer = new Thread(this::write, "kee-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public Kee getKee(String id) {
+        return getKee(KeeId.valueOf(id));
+    }
+
+    @Override
+    public Kee getKee(KeeId id) {
+        Entry entry = snapshot.entries.get(id);
+        return entry != null ? entry.kee : null;
+    }
+
+    @Override
+    public long getVersion(KeeId id) {
+        Entry entry = snapshot.entries.get(id);
+        return entry != null ? entry.version : NO_VERSION;
+    }
+
+    /**
+     * All models as last published, in no particular order.
+     *
+     * @return
+     */
+    public List<Kee> getAll() {
+        PersistentMap<KeeId, Entry> current = snapshot.entries;
+        List<Kee> all = new ArrayList<>(current.size());
+        current.forEach((id, e) -> all.add(e.kee));
+        return Collections.unmodifiableList(all);
+    }
+
+    /**
+     * Total models as last published.
+     *
+     * @return
+     */
+    public int size() {
+        return snapshot.entries.size();
+    }
+
+    /**
+     * The number of changes made so far, as last published.
+     *
+     * @return
+     */
+    public long getSequence() {
+        return snapshot.sequence;
+    }
+
+    @Override
+    public void addKee(Kee item) {
+        call(() -> {
+            check(item);
+            KeeId id = item.getKeeId();
+            if (entries.containsKey(id)) {
+                throw new IllegalArgumentException("Item with id " + id + " already exists");
+            }
+            publish(put(id, item));
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteKee(Kee item) {
+        deleteKee(item.getKeeId());
+    }
+
+    @Override
+    public void deleteKee(String id) {
+        deleteKee(KeeId.valueOf(id));
+    }
+
+    @Override
+    public void deleteKee(KeeId id) {
+        call(() -> {
+            publish(remove(id));
+            return null;
+        });
+    }
+
+    @Override
+    public void updateKee(Kee item) {
+        call(() -> {
+            check(item);
+            publish(put(item.getKeeId(), item));
+            return null;
+        });
+    }
+
+    @Override
+    public boolean replaceIfVersion(KeeId id, long expectedVersion, Kee item) {
+        return (Boolean) call(() -> {
+            checkReplacement(id, item);
+            Entry entry = entries.get(id);
+            if ((entry != null ? entry.version : NO_VERSION) != expectedVersion) {
+                return false;
+            }
+            publish(item != null ? put(id, item) : remove(id));
+            return true;
+        });
+    }
+
+    /**
+     * <p>
+     * The function is called once, on the writer thread.
+     * </p>
+     */
+    @Override
+    public Kee computeIfPresent(KeeId id, BiFunction<KeeId, ? super Kee, ? extends Kee> remapping) {
+        return (Kee) call(() -> {
+            Entry entry = entries.get(id);
+            if (entry == null) {
+                return null;
+            }
+            Kee next = remapping.apply(id, entry.kee);
+            checkReplacement(id, next);
+            publish(next != null ? put(id, next) : remove(id));
+            return next;
+        });
+    }
+
+    @Override
+    public void clear() {
+        call(() -> {
+            entries = PersistentMap.empty();
+            publish(KeeEvent.cleared(this));
+            return null;
+        });
+    }
+
+    @Override
+    public void applyAll(List<KeeEvent> changes) {
+        call(batch(changes));
+    }
+
+    /**
+     * <p>
+     * Send the specified changes to the writer as one batch without waiting
+     * for them to be made.
+     * </p>
+     *
+     * @param changes
+     * @return completes once the changes are made and published, or
+     *         exceptionally if they could not be made.
+     */
+    public CompletableFuture<Void> submit(List<KeeEvent> changes) {
+        return send(batch(changes)).thenApply(r -> null);
+    }
+
+    @Override
+    public void addKeeListener(Consumer<KeeEvent> listener) {
+        events.addListener(listener);
+    }
+
+    @Override
+    public void removeKeeListener(Consumer<KeeEvent> listener) {
+        events.removeListener(listener);
+    }
+
+    /**
+     * <p>
+     * Stop the writer once it has made the changes already sent; no change can
+     * be sent afterwards.
+     * </p>
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writer);
+        if (Thread.currentThread() != writer) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Check that the specified model can be added or updated, throwing
+     * {@code IllegalArgumentException} if not. Called on the writer thread.
+     * </p>
+     *
+     * @param item
+     */
+    protected void check(Kee item) {
+        if (item == null) {
+            throw new IllegalArgumentException("Invalid item to add");
+        }
+    }
+
+    private Supplier<Object> batch(List<KeeEvent> changes) {
+        return () -> {
+            KeeBatches.check(changes, entries::containsKey, this::check);
+            List<KeeEvent> applied = new ArrayList<>(changes.size());
+            for (KeeEvent c : changes) {
+                KeeEvent done = null;
+                switch (c.getType()) {
+                case ADDED:
+                case UPDATED:
+                    done = put(c.getId(), c.getKee());
+                    break;
+                case REMOVED:
+                    done = remove(c.getId());
+                    break;
+                case CLEARED:
+                    entries = PersistentMap.empty();
+                    done = KeeEvent.cleared(this);
+                    break;
+                case BATCH:
+                    break;
+                }
+                if (done != null) {
+                    applied.add(done);
+                }
+            }
+            if (!applied.isEmpty()) {
+                publish(KeeEvent.batch(this, applied));
+            }
+            return null;
+        };
+    }
+
+    private void checkReplacement(KeeId id, Kee item) {
+        if (item != null) {
+            check(item);
+            if (!item.getKeeId().equals(id)) {
+                throw new IllegalArgumentException("Item " + item.getKeeId() + " cannot replace " + id);
+            }
+        }
+    }
+
+    private KeeEvent put(KeeId id, Kee item) {
+        Entry previous = entries.get(id);
+        entries = entries.plus(id, new Entry(item, ++version));
+        if (previous == null) {
+            return KeeEvent.added(this, item);
+        }
+        return KeeEvent.updated(this, item, previous.kee != item ? previous.kee : null);
+    }
+
+    private KeeEvent remove(KeeId id) {
+        Entry removed = entries.get(id);
+        if (removed == null) {
+            return null;
+        }
+        entries = entries.minus(id);
+        return KeeEvent.removed(this, removed.kee);
+    }
+
+    private void publish(KeeEvent change) {
+        if (change != null) {
+            sequence++;
+            events.publish(change);
+        }
+    }
+
+    /**
+     * Send the command and wait for it; commands sent by the writer itself
+     * (i.e. from a listener) are made right away.
+     */
+    private Object call(Supplier<Object> action) {
+        if (Thread.currentThread() == writer) {
+            Object result = action.get();
+            snapshot = new Snapshot(entries, sequence);
+            return result;
+        }
+        try {
+            return send(action).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private CompletableFuture<Object> send(Supplier<Object> action) {
+        Command command = new Command(action);
+        checkOpen();
+        int spins = 0;
+        while (!commands.offer(command)) {
+            checkOpen();
+            // the buffer is full, back off until the writer catches up
+            if (++spins < 100) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(this, 1000);
+            }
+        }
+        // sent, so it is made unless the writer stopped before it was seen
+        if (sleeping) {
+            LockSupport.unpark(writer);
+        }
+        if (stopped && Thread.currentThread() != writer) {
+            // the writer is about to end, once it has it either made the
+            // command or never will
+            boolean interrupted = false;
+            while (writer.isAlive()) {
+                try {
+                    writer.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            command.result.completeExceptionally(new IllegalStateException("Access is closed"));
+        }
+        return command.result;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Access is closed");
+        }
+    }
+
+    /**
+     * The writer: takes all commands that are waiting, makes them, publishes
+     * one snapshot, then lets the callers know.
+     */
+    private void write() {
+        List<Command> done = new ArrayList<>(commands.capacity());
+        while (true) {
+            Command command;
+            while (done.size() < commands.capacity() && (command = commands.poll()) != null) {
+                command.run();
+                done.add(command);
+            }
+            if (!done.isEmpty()) {
+                snapshot = new Snapshot(entries, sequence);
+                done.forEach(Command::complete);
+                done.clear();
+                continue;
+            }
+            if (closed) {
+                // a command sent while closing is still made
+                stopped = true;
+                if (commands.isEmpty()) {
+                    return;
+                }
+                continue;
+            }
+            sleeping = true;
+            if (commands.isEmpty() && !closed) {
+                LockSupport.parkNanos(this, idleNanos);
+            }
+            sleeping = false;
+        }
+    }
+}
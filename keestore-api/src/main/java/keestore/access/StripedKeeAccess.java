@@ -0,0 +1,383 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * An in-memory {@code KeeAccess} for many threads. Models are spread over a
+ * number of stripes by identifier, each with its own read/write lock, so
+ * readers never wait for each other and writers only wait for the threads
+ * that use the same stripe.
+ * </p>
+ * <p>
+ * Operations on a single model lock its stripe. Operations on all models
+ * ({@link #getAll()}, {@link #size()}, {@link #clear()} and batches) lock
+ * every stripe, always in the same order, so they see (or make) one
+ * consistent state, i.e. a save never sees half of a batch.
+ * </p>
+ * <p>
+ * Changes are published while the stripe is locked: the changes of one model
+ * are published in order, but listeners may be called by several threads at
+ * once for different models and must not block.
+ * </p>
+ *
+ * @author thinh ho
+ *
+ */
+public class StripedKeeAccess implements KeeAccess {
+    private final Stripe[] stripes;
+    private final int mask;
+    private final AtomicLong version = new AtomicLong();
+    private final KeeEventSupport events = new KeeEventSupport();
+
+    /**
+     * A model along with its version in this access.
+     */
+    private static class Entry {
+        private final Kee kee;
+        private final long version;
+
+        private Entry(Kee kee, long version) {
+            this.kee = kee;
+            this.version = version;
+        }
+    }
+
+    private static class Stripe {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Map<KeeId, Entry> entries = new HashMap<>();
+    }
+
+    /**
+     * Four stripes per processor.
+     */
+    public StripedKeeAccess() {
+        this(Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    /**
+     * @param stripes the number of stripes, rounded up to a power of two.
+     */
+    public StripedKeeAccess(int stripes) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("Stripes must be positive");
+        }
+        int size = Integer.highestOneBit(stripes);
+        if (size < stripes) {
+            size <<= 1;
+        }
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        this.mask = size - 1;
+    }
+
+    @Override
+    public Kee getKee(String id) {
+        return getKee(KeeId.valueOf(id));
+    }
+
+    @Override
+    public Kee getKee(KeeId id) {
+        Stripe stripe = stripe(id);
+        stripe.lock.readLock().lock();
+        try {
+            Entry entry = stripe.entries.get(id);
+            return entry != null ? entry.kee : null;
+        } finally {
+            stripe.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long getVersion(KeeId id) {
+        Stripe stripe = stripe(id);
+        stripe.lock.readLock().lock();
+        try {
+            Entry entry = stripe.entries.get(id);
+            return entry != null ? entry.version : NO_VERSION;
+        } finally {
+            stripe.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void addKee(Kee item) {
+        check(item);
+        KeeId id = item.getKeeId();
+        Stripe stripe = stripe(id);
+        stripe.lock.writeLock().lock();
+        try {
+            if (stripe.entries.containsKey(id)) {
+                throw new IllegalArgumentException("Item with id " + id + " already exists");
+            }
+            events.publish(put(stripe, id, item));
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteKee(Kee item) {
+        deleteKee(item.getKeeId());
+    }
+
+    @Override
+    public void deleteKee(String id) {
+        deleteKee(KeeId.valueOf(id));
+    }
+
+    @Override
+    public void deleteKee(KeeId id) {
+        Stripe stripe = stripe(id);
+        stripe.lock.writeLock().lock();
+        try {
+            KeeEvent done = remove(stripe, id);
+            if (done != null) {
+                events.publish(done);
+            }
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void updateKee(Kee item) {
+        check(item);
+        KeeId id = item.getKeeId();
+        Stripe stripe = stripe(id);
+        stripe.lock.writeLock().lock();
+        try {
+            events.publish(put(stripe, id, item));
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean replaceIfVersion(KeeId id, long expectedVersion, Kee item) {
+        checkReplacement(id, item);
+        Stripe stripe = stripe(id);
+        stripe.lock.writeLock().lock();
+        try {
+            Entry entry = stripe.entries.get(id);
+            if ((entry != null ? entry.version : NO_VERSION) != expectedVersion) {
+                return false;
+            }
+            KeeEvent done = item != null ? put(stripe, id, item) : remove(stripe, id);
+            if (done != null) {
+                events.publish(done);
+            }
+            return true;
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * <p>
+     * The function is called once, holding the lock of the stripe.
+     * </p>
+     */
+    @Override
+    public Kee computeIfPresent(KeeId id, BiFunction<KeeId, ? super Kee, ? extends Kee> remapping) {
+        Stripe stripe = stripe(id);
+        stripe.lock.writeLock().lock();
+        try {
+            Entry entry = stripe.entries.get(id);
+            if (entry == null) {
+                return null;
+            }
+            Kee next = remapping.apply(id, entry.kee);
+            checkReplacement(id, next);
+            events.publish(next != null ? put(stripe, id, next) : remove(stripe, id));
+            return next;
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lockAll();
+        try {
+            for (Stripe stripe : stripes) {
+                stripe.entries.clear();
+            }
+            events.publish(KeeEvent.cleared(this));
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * <p>
+     * Make the specified changes as one batch, holding all stripes. All
+     * changes are checked first: if one cannot be made (i.e. a model is added
+     * twice) nothing is changed.
+     * </p>
+     */
+    @Override
+    public void applyAll(List<KeeEvent> changes) {
+        lockAll();
+        try {
+            KeeBatches.check(changes, id -> stripe(id).entries.containsKey(id), this::check);
+            List<KeeEvent> applied = new ArrayList<>(changes.size());
+            for (KeeEvent c : changes) {
+                KeeEvent done = null;
+                switch (c.getType()) {
+                case ADDED:
+                case UPDATED:
+                    done = put(stripe(c.getId()), c.getId(), c.getKee());
+                    break;
+                case REMOVED:
+                    done = remove(stripe(c.getId()), c.getId());
+                    break;
+                case CLEARED:
+                    for (Stripe stripe : stripes) {
+                        stripe.entries.clear();
+                    }
+                    done = KeeEvent.cleared(this);
+                    break;
+                case BATCH:
+                    break;
+                }
+                if (done != null) {
+                    applied.add(done);
+                }
+            }
+            if (!applied.isEmpty()) {
+                events.publish(KeeEvent.batch(this, applied));
+            }
+        } finally {
+            unlockAll();
+        }
+    }
+
+    @Override
+    public void addKeeListener(Consumer<KeeEvent> listener) {
+        events.addListener(listener);
+    }
+
+    @Override
+    public void removeKeeListener(Consumer<KeeEvent> listener) {
+        events.removeListener(listener);
+    }
+
+    /**
+     * Total models.
+     *
+     * @return
+     */
+    public int size() {
+        readAll();
+        try {
+            int size = 0;
+            for (Stripe stripe : stripes) {
+                size += stripe.entries.size();
+            }
+            return size;
+        } finally {
+            unreadAll();
+        }
+    }
+
+    /**
+     * <p>
+     * All models at one point in time, in no particular order.
+     * </p>
+     *
+     * @return
+     */
+    public List<Kee> getAll() {
+        readAll();
+        try {
+            List<Kee> all = new ArrayList<>();
+            for (Stripe stripe : stripes) {
+                stripe.entries.values().forEach(e -> all.add(e.kee));
+            }
+            return Collections.unmodifiableList(all);
+        } finally {
+            unreadAll();
+        }
+    }
+
+    /**
+     * <p>
+     * Check that the specified model can be added or updated, throwing
+     * {@code IllegalArgumentException} if not.
+     * </p>
+     *
+     * @param item
+     */
+    protected void check(Kee item) {
+        if (item == null) {
+            throw new IllegalArgumentException("Invalid item to add");
+        }
+    }
+
+    private void checkReplacement(KeeId id, Kee item) {
+        if (item != null) {
+            check(item);
+            if (!item.getKeeId().equals(id)) {
+                throw new IllegalArgumentException("Item " + item.getKeeId() + " cannot replace " + id);
+            }
+        }
+    }
+
+    private KeeEvent put(Stripe stripe, KeeId id, Kee item) {
+        Entry previous = stripe.entries.put(id, new Entry(item, version.incrementAndGet()));
+        if (previous == null) {
+            return KeeEvent.added(this, item);
+        }
+        return KeeEvent.updated(this, item, previous.kee != item ? previous.kee : null);
+    }
+
+    private KeeEvent remove(Stripe stripe, KeeId id) {
+        Entry removed = stripe.entries.remove(id);
+        return removed != null ? KeeEvent.removed(this, removed.kee) : null;
+    }
+
+    private Stripe stripe(KeeId id) {
+        int h = id.hashCode();
+        return stripes[(h ^ (h >>> 16)) & mask];
+    }
+
+    private void lockAll() {
+        for (Stripe stripe : stripes) {
+            stripe.lock.writeLock().lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].lock.writeLock().unlock();
+        }
+    }
+
+    private void readAll() {
+        for (Stripe stripe : stripes) {
+            stripe.lock.readLock().lock();
+        }
+    }
+
+    private void unreadAll() {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,435 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Off-heap storage for secret values. Values are copied into direct
+ * {@code ByteBuffer} slabs and referenced by a {@code long} handle, so they are
+ * never moved or copied by the garbage collector and the memory used is sized
+ * explicitly by the number of slabs.
+ * </p>
+ * <p>
+ * Space is handed out in power-of-two blocks; a freed block is overwritten with
+ * zeros and reused for a value of the same size class. Values larger than a
+ * slab get a slab of their own. {@link #close()} overwrites and releases all
+ * slabs at once.
+ * </p>
+ * <p>
+ * Values are never changed in place, so a block can be shared by several
+ * holders (see {@link #retain(long)}); each block counts its holders and is
+ * only overwritten once the last one frees it.
+ * </p>
+ * <p>
+ * Owners that are garbage collected without freeing their values (see
+ * {@link #register(Object, Runnable)}) are cleaned up on a later allocation
+ * or copy, when the arena's usage is read, and on {@link #close()}. Cleanups
+ * run outside of the arena's lock: callers may hold their own lock while
+ * they call into the arena, but never the other way around.
+ * </p>
+ *
+ * @author thinh ho
+ *
+ */
+public class ValueArena implements AutoCloseable {
+    // the value's length and the number of its holders
+    private static final int header = 8;
+    private static final int minBlock = 16;
+    private static final byte[] zeros = new byte[4096];
+
+    private final int slabSize;
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    private final Map<Integer, Deque<Long>> free = new HashMap<>();
+    private final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+    private Cleanup owners;
+    private ByteBuffer current;
+    private long allocated;
+    private boolean closed;
+
+    /**
+     * Frees the values of an owner that was garbage collected. All registered
+     * cleanups are linked to each other so that they can be removed without a
+     * lookup.
+     */
+    private static class Cleanup extends PhantomReference<Object> {
+        private final Runnable cleanup;
+        private Cleanup previous;
+        private Cleanup next;
+        private boolean registered = true;
+
+        private Cleanup(Object owner, ReferenceQueue<Object> queue, Runnable cleanup) {
+            super(owner, queue);
+            this.cleanup = cleanup;
+        }
+    }
+
+    /**
+     * @param slabSize the size, in bytes, of each slab of memory reserved.
+     */
+    public ValueArena(int slabSize) {
+        if (slabSize < minBlock) {
+            throw new IllegalArgumentException("Slab size must be at least " + minBlock + " bytes");
+        }
+        this.slabSize = Integer.highestOneBit(slabSize - 1) << 1;
+    }
+
+    /**
+     * <p>
+     * Copy the specified value into the arena.
+     * </p>
+     *
+     * @param value
+     * @return the handle to the value.
+     */
+    public long allocate(byte[] value) {
+        return allocate(value, 0, value.length);
+    }
+
+    /**
+     * <p>
+     * Copy the specified range of bytes into the arena, as a value.
+     * </p>
+     *
+     * @param value
+     * @param from the offset of the value's first byte.
+     * @param length
+     * @return the handle to the value.
+     */
+    public long allocate(byte[] value, int from, int length) {
+        reclaim();
+        synchronized (this) {
+            checkOpen();
+            if (from < 0 || length < 0 || from + length > value.length) {
+                throw new IndexOutOfBoundsException("Range " + from + "+" + length + " of " + value.length);
+            }
+            int block = blockSize(length);
+            long handle = allocate(block);
+            ByteBuffer slab = slabs.get(slab(handle));
+            int offset = offset(handle);
+            slab.putInt(offset, length);
+            slab.putInt(offset + Integer.BYTES, 1);
+            at(slab, offset + header).put(value, from, length);
+            allocated += block;
+            return handle;
+        }
+    }
+
+    /**
+     * <p>
+     * Copy the specified value to a new place in the arena, without it
+     * leaving the arena.
+     * </p>
+     *
+     * @param handle
+     * @return the handle to the copy.
+     */
+    public long copy(long handle) {
+        reclaim();
+        synchronized (this) {
+            checkOpen();
+            ByteBuffer source = slabs.get(slab(handle));
+            int from = offset(handle);
+            int length = source.getInt(from);
+            long copy = allocate(blockSize(length));
+            ByteBuffer value = at(source, from);
+            value.limit(from + header + length);
+            ByteBuffer target = slabs.get(slab(copy));
+            at(target, offset(copy)).put(value);
+            target.putInt(offset(copy) + Integer.BYTES, 1);
+            allocated += blockSize(length);
+            return copy;
+        }
+    }
+
+    /**
+     * <p>
+     * Share the specified value with another holder, without copying it.
+     * Each holder frees the value on its own; its block is only overwritten
+     * once all of them have.
+     * </p>
+     *
+     * @param handle
+     * @return the same handle, for the new holder.
+     */
+    public synchronized long retain(long handle) {
+        checkOpen();
+        ByteBuffer slab = slabs.get(slab(handle));
+        int refs = offset(handle) + Integer.BYTES;
+        slab.putInt(refs, slab.getInt(refs) + 1);
+        return handle;
+    }
+
+    /**
+     * <p>
+     * A copy of the value; callers should overwrite it once done.
+     * </p>
+     *
+     * @param handle
+     * @return
+     */
+    public synchronized byte[] read(long handle) {
+        byte[] value = new byte[length(handle)];
+        read(handle, value, 0);
+        return value;
+    }
+
+    /**
+     * <p>
+     * Copy the value into the specified array, i.e. to serialize it without
+     * a copy of its own.
+     * </p>
+     *
+     * @param handle
+     * @param target
+     * @param to the offset in the array of the value's first byte.
+     */
+    public synchronized void read(long handle, byte[] target, int to) {
+        checkOpen();
+        ByteBuffer slab = slabs.get(slab(handle));
+        int offset = offset(handle);
+        int length = slab.getInt(offset);
+        if (to < 0 || to + length > target.length) {
+            throw new IndexOutOfBoundsException("Value of " + length + " bytes at " + to + " of " + target.length);
+        }
+        at(slab, offset + header).get(target, to, length);
+    }
+
+    /**
+     * The length of the value, in bytes.
+     *
+     * @param handle
+     * @return
+     */
+    public synchronized int length(long handle) {
+        checkOpen();
+        return slabs.get(slab(handle)).getInt(offset(handle));
+    }
+
+    /**
+     * The bytes the value takes in the arena, i.e. its whole block.
+     *
+     * @param handle
+     * @return
+     */
+    public synchronized int sizeOf(long handle) {
+        return blockSize(length(handle));
+    }
+
+    /**
+     * <p>
+     * Overwrite the value with zeros and make its space available again, or
+     * only drop this holder if the value is shared, see {@link #retain(long)}.
+     * </p>
+     *
+     * @param handle
+     */
+    public synchronized void free(long handle) {
+        if (closed) {
+            return;
+        }
+        int index = slab(handle);
+        ByteBuffer slab = slabs.get(index);
+        int offset = offset(handle);
+        int refs = slab.getInt(offset + Integer.BYTES);
+        if (refs > 1) {
+            slab.putInt(offset + Integer.BYTES, refs - 1);
+            return;
+        }
+        int block = blockSize(slab.getInt(offset));
+        zero(slab, offset, block);
+        allocated -= block;
+        if (block > slabSize) {
+            // a slab of its own, release it
+            slabs.set(index, null);
+        } else {
+            free.computeIfAbsent(block, b -> new ArrayDeque<>()).push(handle);
+        }
+    }
+
+    /**
+     * <p>
+     * Run the specified cleanup (i.e. free all of its values) once the owner is
+     * garbage collected. The cleanup must not reference the owner.
+     * </p>
+     *
+     * @param owner
+     * @param cleanup
+     * @return call to run the cleanup now (i.e. the owner is closed) instead.
+     */
+    public synchronized Runnable register(Object owner, Runnable cleanup) {
+        Cleanup c = new Cleanup(owner, collected, cleanup);
+        c.next = owners;
+        if (owners != null) {
+            owners.previous = c;
+        }
+        owners = c;
+        return () -> {
+            boolean registered;
+            synchronized (this) {
+                registered = unregister(c);
+            }
+            if (registered) {
+                cleanup.run();
+            }
+        };
+    }
+
+    /**
+     * Bytes in use by values, including the unused part of their blocks.
+     *
+     * @return
+     */
+    public long getAllocated() {
+        reclaim();
+        synchronized (this) {
+            return allocated;
+        }
+    }
+
+    /**
+     * Bytes reserved for slabs.
+     *
+     * @return
+     */
+    public long getReserved() {
+        reclaim();
+        synchronized (this) {
+            return slabs.stream().filter(s -> s != null).mapToLong(s -> s.capacity()).sum();
+        }
+    }
+
+    /**
+     * <p>
+     * Overwrite all values with zeros and release all memory. Handles can no
+     * longer be used.
+     * </p>
+     */
+    @Override
+    public void close() {
+        reclaim();
+        synchronized (this) {
+            slabs.stream().filter(s -> s != null).forEach(s -> zero(s, 0, s.capacity()));
+            slabs.clear();
+            free.clear();
+            owners = null;
+            current = null;
+            allocated = 0;
+            closed = true;
+        }
+    }
+
+    /**
+     * Run the cleanups of the owners that were garbage collected. They are
+     * taken off the queue under the arena's lock but run outside of it, since
+     * a cleanup takes its owner's lock before freeing values.
+     */
+    void reclaim() {
+        List<Cleanup> cleanups = new ArrayList<>();
+        synchronized (this) {
+            Reference<?> r;
+            while ((r = collected.poll()) != null) {
+                Cleanup c = (Cleanup) r;
+                if (unregister(c)) {
+                    cleanups.add(c);
+                }
+            }
+        }
+        cleanups.forEach(c -> c.cleanup.run());
+    }
+
+    private boolean unregister(Cleanup c) {
+        if (!c.registered || closed) {
+            return false;
+        }
+        if (c.previous != null) {
+            c.previous.next = c.next;
+        } else {
+            owners = c.next;
+        }
+        if (c.next != null) {
+            c.next.previous = c.previous;
+        }
+        c.previous = null;
+        c.next = null;
+        c.registered = false;
+        return true;
+    }
+
+    /**
+     * A free block of the specified size, reused or newly reserved.
+     */
+    private long allocate(int block) {
+        Deque<Long> blocks = free.get(block);
+        Long handle = blocks != null ? blocks.poll() : null;
+        return handle != null ? handle : reserve(block);
+    }
+
+    private long reserve(int block) {
+        if (block > slabSize) {
+            slabs.add(ByteBuffer.allocateDirect(block));
+            return handle(slabs.size() - 1, 0);
+        }
+        if (current == null || current.remaining() < block) {
+            current = ByteBuffer.allocateDirect(slabSize);
+            slabs.add(current);
+        }
+        int offset = current.position();
+        current.position(offset + block);
+        return handle(slabs.size() - 1, offset);
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Arena is closed");
+        }
+    }
+
+    private static int blockSize(int length) {
+        int size = length + header;
+        return size <= minBlock ? minBlock : Integer.highestOneBit(size - 1) << 1;
+    }
+
+    private static void zero(ByteBuffer slab, int offset, int length) {
+        ByteBuffer block = at(slab, offset);
+        for (int i = 0; i < length; i += zeros.length) {
+            block.put(zeros, 0, Math.min(zeros.length, length - i));
+        }
+    }
+
+    /**
+     * A view of the slab from the specified offset on, for bulk copies that
+     * leave the slab's own position alone.
+     */
+    private static ByteBuffer at(ByteBuffer slab, int offset) {
+        ByteBuffer view = slab.duplicate();
+        view.clear();
+        view.position(offset);
+        return view;
+    }
+
+    private static long handle(int slab, int offset) {
+        return ((long) slab << 32) | (offset & 0xffffffffL);
+    }
+
+    private static int slab(long handle) {
+        return (int) (handle >>> 32);
+    }
+
+    private static int offset(long handle) {
+        return (int) handle;
+    }
+}
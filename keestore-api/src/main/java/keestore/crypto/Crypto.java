@@ -142,8 +142,7 @@ public class Crypto implements Serializable {
     public String sign(String payload, String signatureAlgorithm) {
         String value = null;
         try {
-            Signature s = Signature.getInstance(signatureAlgorithm);
-            s.initSign(keyPair.getPrivate(), new SecureRandom());
+            Signature s = initSign(signatureAlgorithm);
             byte[] message = payload.getBytes();
             s.update(message);
             byte[] _signature = s.sign();
@@ -154,6 +153,28 @@ public class Crypto implements Serializable {
         return value;
     }
     
+    /**
+     * <p>
+     * A signature initialized with the RSA private key using the specified 
+     * hashing algorithm, for signing a payload that is too large to hold at once.
+     * Update it with the payload in chunks (i.e. the same bytes as 
+     * {@code String.getBytes()}) and encode the result of {@code sign()}; it
+     * verifies the same as {@link #sign(String, String)}.
+     * </p>
+     * 
+     * @param signatureAlgorithm
+     * @return
+     */
+    public Signature initSign(String signatureAlgorithm) {
+        try {
+            Signature s = Signature.getInstance(signatureAlgorithm);
+            s.initSign(keyPair.getPrivate(), new SecureRandom());
+            return s;
+        } catch (Exception e) {
+            throw new CryptoException(e);
+        }
+    }
+    
     /**
      * <p>
      * Verify default SHA256withRSA signature and original payload.
@@ -178,11 +199,40 @@ public class Crypto implements Serializable {
      * @return
      */
     public boolean verify(String payload, String signature, String signatureAlgorithm) {
+        return verify(payload.getBytes(), signature, signatureAlgorithm);
+    }
+    
+    /**
+     * <p>
+     * Verify default SHA256withRSA signature and original payload bytes (i.e. 
+     * the same bytes as {@code String.getBytes()}), without building a string.
+     * </p>
+     * 
+     * @param payload
+     * @param signature
+     * @return
+     */
+    public boolean verify(byte[] payload, String signature) {
+        return verify(payload, signature, "SHA256withRSA");
+    }
+    
+    /**
+     * <p>
+     * Verify the signature against the payload bytes and specified hashing 
+     * algorithm.
+     * </p>
+     * 
+     * @param payload
+     * @param signature
+     * @param signatureAlgorithm
+     * @return
+     */
+    public boolean verify(byte[] payload, String signature, String signatureAlgorithm) {
         boolean valid = false;
         try {
             Signature s = Signature.getInstance(signatureAlgorithm);
             s.initVerify(keyPair.getPublic());
-            s.update(payload.getBytes());
+            s.update(payload);
             valid = s.verify(decode(signature).get());
         } catch (Exception e) {
             throw new CryptoException(e);
@@ -8,6 +8,7 @@ package keestore.crypto;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 
+import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
 
 /**
@@ -54,6 +55,19 @@ public interface CryptoEngine {
     * @throws CryptoException
     */
    public byte[] decrypt(byte[] key, byte[] payload) throws CryptoException;
+   /**
+    * <p>
+    * Initialize a cipher to encrypt a stream of data, in chunks, using the 
+    * specified symmetric key. The output is compatible with 
+    * {@link #decrypt(byte[], byte[])} as long as the IV of the returned cipher
+    * ({@code Cipher.getIV()}) is written before the encrypted data.
+    * </p>
+    * 
+    * @param key
+    * @return
+    * @throws CryptoException
+    */
+   public Cipher encryptCipher(byte[] key) throws CryptoException;
    /**
     * <p>
     * Generate a secret/symmetric key given a secret or key value.
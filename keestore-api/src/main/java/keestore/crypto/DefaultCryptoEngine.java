@@ -82,6 +82,24 @@ public abstract class DefaultCryptoEngine implements CryptoEngine {
     @Override
     public byte[] encrypt(byte[] key, byte[] payload) {
         byte[] encrypted = null;
+        try {
+            Cipher cipher = encryptCipher(key);
+            byte[] iv = cipher.getIV();
+            byte[] _encrypted = cipher.doFinal(payload);
+            ByteBuffer buffer = ByteBuffer.allocate(_encrypted.length + iv.length);
+            buffer.put(iv);
+            buffer.put(_encrypted);
+            encrypted = buffer.array();
+        } catch (CryptoException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CryptoException(e);
+        }
+        return encrypted;
+    }
+    
+    @Override
+    public Cipher encryptCipher(byte[] key) throws CryptoException {
         SecretKey k = new SecretKeySpec(key, 0, key.length, getSecretKeyAlgorithm());
         try {
             Cipher cipher = getCipher();
@@ -91,16 +109,10 @@ public abstract class DefaultCryptoEngine implements CryptoEngine {
             } else {
                 cipher.init(Cipher.ENCRYPT_MODE, k);
             }
-
-            byte[] _encrypted = cipher.doFinal(payload);
-            ByteBuffer buffer = ByteBuffer.allocate(_encrypted.length + iv.getIV().length);
-            buffer.put(iv.getIV());
-            buffer.put(_encrypted);
-            encrypted = buffer.array();
+            return cipher;
         } catch (Exception e) {
             throw new CryptoException(e);
         }
-        return encrypted;
     }
 
     @Override
@@ -8,6 +8,7 @@ package keestore.crypto;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 
+import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
 
 /**
@@ -46,6 +47,11 @@ public class KeyCrypto implements CryptoEngine {
         return cryptoEngine.decrypt(key, payload);
     }
 
+    @Override
+    public Cipher encryptCipher(byte[] key) throws CryptoException {
+        return cryptoEngine.encryptCipher(key);
+    }
+
     @Override
     public Crypto createCrypto(String password, String keyPairAlgorithm, int keyPairSize) throws CryptoException {
         return cryptoEngine.createCrypto(password, keyPairAlgorithm, keyPairSize);
@@ -0,0 +1,141 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.crypto;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * A small pool of pre-generated {@code KeyPair}s for creating many crypto
+ * contexts (i.e. registrations for test fixtures or provisioning) without
+ * waiting on key pair generation each time. The pool is refilled in the
+ * background as key pairs are taken; if the pool is empty, the key pair is
+ * generated in the calling thread.
+ * </p>
+ * <p>
+ * Each key pair is handed out once.
+ * </p>
+ *
+ * @author thinh ho
+ *
+ */
+public class KeyPairPool {
+    private static final AtomicInteger threads = new AtomicInteger();
+
+    private final String keyPairAlgorithm;
+    private final int keyPairSize;
+    private final BlockingQueue<KeyPair> pool;
+    private final ExecutorService generator = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "keyPairPool-" + threads.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * <p>
+     * Create the pool and start generating key pairs in the background.
+     * </p>
+     *
+     * @param keyPairAlgorithm the keypair algorithm (i.e. RSA).
+     * @param keyPairSize the keypair key size (i.e. 2048).
+     * @param capacity number of key pairs to keep ready.
+     * @throws CryptoException if the algorithm is not available.
+     */
+    public KeyPairPool(String keyPairAlgorithm, int keyPairSize, int capacity) throws CryptoException {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Pool capacity must be positive: " + capacity);
+        }
+        this.keyPairAlgorithm = keyPairAlgorithm;
+        this.keyPairSize = keyPairSize;
+        this.pool = new ArrayBlockingQueue<>(capacity);
+        // fail here rather than in the background
+        generator();
+        for (int i = 0; i < capacity; i++) {
+            refill();
+        }
+    }
+
+    /**
+     * <p>
+     * Take a pre-generated key pair, or generate one now if none are ready.
+     * </p>
+     *
+     * @return
+     * @throws CryptoException
+     */
+    public KeyPair take() throws CryptoException {
+        KeyPair keyPair = pool.poll();
+        if (keyPair == null) {
+            keyPair = generate();
+        } else {
+            refill();
+        }
+        return keyPair;
+    }
+
+    /**
+     * <p>
+     * Create the new crypto context with the specified secret and a key pair
+     * from this pool, see {@link CryptoEngine#createCrypto(String, String, int)}.
+     * </p>
+     *
+     * @param cryptoEngine
+     * @param secret
+     * @return
+     * @throws CryptoException
+     */
+    public Crypto createCrypto(CryptoEngine cryptoEngine, String secret) throws CryptoException {
+        return new Crypto(cryptoEngine.generateKey(secret), take());
+    }
+
+    /**
+     * The number of key pairs ready to be taken.
+     *
+     * @return
+     */
+    public int available() {
+        return pool.size();
+    }
+
+    /**
+     * <p>
+     * Stop generating key pairs; the ones that are ready can still be taken.
+     * </p>
+     */
+    public void shutdown() {
+        generator.shutdownNow();
+    }
+
+    private void refill() {
+        try {
+            generator.execute(() -> pool.offer(generate()));
+        } catch (RejectedExecutionException e) {
+            // shut down, nothing more to generate
+        }
+    }
+
+    private KeyPair generate() throws CryptoException {
+        return generator().genKeyPair();
+    }
+
+    private KeyPairGenerator generator() throws CryptoException {
+        try {
+            KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance(keyPairAlgorithm);
+            keyPairGenerator.initialize(keyPairSize);
+            return keyPairGenerator;
+        } catch (NoSuchAlgorithmException e) {
+            throw new CryptoException(e);
+        }
+    }
+}
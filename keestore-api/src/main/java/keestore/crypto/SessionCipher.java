@@ -0,0 +1,131 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.crypto;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * <p>
+ * Authenticated encryption (AES-GCM) under a random key that only lives as
+ * long as this object, i.e. to keep data encrypted in memory for a session.
+ * Each sealed value is the nonce followed by the ciphertext and its tag; a
+ * value that was changed, or sealed with other associated data (i.e. the
+ * identifier of what it holds), cannot be opened.
+ * </p>
+ * <p>
+ * Nonces are a random prefix and a counter, so a nonce is never used twice
+ * with the key. The key is overwritten with zeros on {@link #close()}.
+ * </p>
+ *
+ * @author thinh ho
+ *
+ */
+public class SessionCipher implements AutoCloseable {
+    private static final String algorithm = "AES";
+    private static final String transformation = "AES/GCM/NoPadding";
+    private static final int keySize = 32;
+    private static final int nonceSize = 12;
+    private static final int tagBits = 128;
+
+    private final byte[] key;
+    private final int prefix;
+    private final AtomicLong counter = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * A new random key.
+     */
+    public SessionCipher() {
+        SecureRandom random = new SecureRandom();
+        this.key = new byte[keySize];
+        random.nextBytes(key);
+        this.prefix = random.nextInt();
+    }
+
+    /**
+     * <p>
+     * Encrypt the specified value.
+     * </p>
+     *
+     * @param plain
+     * @param associated authenticated along with the value, but not encrypted.
+     * @return
+     * @throws CryptoException
+     */
+    public byte[] seal(byte[] plain, byte[] associated) throws CryptoException {
+        byte[] nonce = ByteBuffer.allocate(nonceSize).putInt(prefix).putLong(counter.getAndIncrement()).array();
+        try {
+            Cipher cipher = cipher(Cipher.ENCRYPT_MODE, nonce, associated);
+            byte[] sealed = new byte[nonceSize + cipher.getOutputSize(plain.length)];
+            System.arraycopy(nonce, 0, sealed, 0, nonceSize);
+            cipher.doFinal(plain, 0, plain.length, sealed, nonceSize);
+            return sealed;
+        } catch (GeneralSecurityException e) {
+            throw new CryptoException(e);
+        }
+    }
+
+    /**
+     * <p>
+     * Decrypt and verify the value sealed by {@link #seal(byte[], byte[])}
+     * with the same associated data.
+     * </p>
+     *
+     * @param sealed
+     * @param associated
+     * @return
+     * @throws CryptoException if the value cannot be verified.
+     */
+    public byte[] open(byte[] sealed, byte[] associated) throws CryptoException {
+        if (sealed.length < nonceSize) {
+            throw new CryptoException("Invalid sealed value");
+        }
+        try {
+            Cipher cipher = cipher(Cipher.DECRYPT_MODE, Arrays.copyOf(sealed, nonceSize), associated);
+            return cipher.doFinal(sealed, nonceSize, sealed.length - nonceSize);
+        } catch (AEADBadTagException e) {
+            throw new CryptoException("Sealed value was tampered with", e);
+        } catch (GeneralSecurityException e) {
+            throw new CryptoException(e);
+        }
+    }
+
+    /**
+     * <p>
+     * Overwrite the key with zeros; nothing can be sealed or opened afterwards.
+     * </p>
+     */
+    @Override
+    public void close() {
+        closed = true;
+        synchronized (key) {
+            Arrays.fill(key, (byte) 0);
+        }
+    }
+
+    private Cipher cipher(int mode, byte[] nonce, byte[] associated) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(transformation);
+        synchronized (key) {
+            if (closed) {
+                throw new CryptoException("Session cipher is closed");
+            }
+            cipher.init(mode, new SecretKeySpec(key, algorithm), new GCMParameterSpec(tagBits, nonce));
+        }
+        if (associated != null) {
+            cipher.updateAAD(associated);
+        }
+        return cipher;
+    }
+}
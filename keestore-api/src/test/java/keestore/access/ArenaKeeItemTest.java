@@ -0,0 +1,109 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * <p>
+ * {@code ArenaKeeItem} unit tests.
+ * </p>
+ * 
+ * @author thinh ho
+ *
+ */
+public class ArenaKeeItemTest {
+    private ValueArena arena;
+    private ArenaKeeItem item;
+
+    @Before
+    public void init() {
+        arena = new ValueArena(1024);
+        item = new ArenaKeeItem(arena, "test");
+        item.put("test1", "value1");
+        item.put("test2", "value2");
+    }
+
+    @After
+    public void close() {
+        arena.close();
+    }
+
+    @Test
+    public void testUpdates() {
+        int size = item.size();
+        assertTrue(size == 4 && "test".equals(item.getName()) && item.getId() != null);
+        assertTrue("Only values should be in the arena", arena.getAllocated() == 32);
+        assertTrue("value1".equals(item.put("test1", "updated")));
+        assertTrue(item.size() == size && "updated".equals(item.get("test1")) && arena.getAllocated() == 32);
+        item.remove("test1");
+        assertTrue(item.size() == size - 1 && item.get("test1") == null && "value2".equals(item.get("test2")));
+
+        item.clear();
+        assertTrue("Clear should keep only the identifier", item.size() == 1 && item.getId() != null);
+        assertTrue(arena.getAllocated() == 0);
+    }
+
+    @Test
+    public void testSnapshot() {
+        long version = item.getVersion();
+        ArenaKeeItem copy = (ArenaKeeItem) item.snapshot();
+        assertTrue(copy.getVersion() == version && copy.toMap().equals(item.toMap()));
+        assertTrue("Snapshot should share its values", arena.getAllocated() == 32);
+
+        item.put("test1", "updated");
+        assertTrue("value1".equals(copy.get("test1")) && arena.getAllocated() == 48);
+        copy.close();
+        assertTrue(arena.getAllocated() == 32 && "updated".equals(item.get("test1")));
+        assertTrue("value2".equals(item.get("test2")));
+    }
+
+    @Test
+    public void testClose() {
+        Map<String, Object> before = item.toMap();
+        item.close();
+        assertTrue(arena.getAllocated() == 0 && item.size() == 2);
+        assertTrue(item.getId().equals(before.get(item.idKey())) && "test".equals(item.getName()));
+        item.close();
+        try {
+            item.put("test3", "value3");
+            assertTrue("Closed item should not accept values", false);
+        } catch (IllegalStateException e) {
+            assertTrue(item.get("test3") == null);
+        }
+    }
+
+    @Test
+    public void testCopyOf() {
+        ArenaKeeItem copy = new ArenaKeeItem(arena, item.toMap());
+        assertTrue(copy.toMap().equals(item.toMap()) && arena.getAllocated() == 64);
+        assertTrue(copy.keys().equals(item.keys()));
+    }
+
+    @Test
+    public void testBytes() {
+        item.put("test3", "v\u00e4lue3");
+        byte[] bytes = item.toBytes();
+        ArenaKeeItem copy = new ArenaKeeItem(arena, bytes);
+        assertTrue(copy.toMap().equals(item.toMap()) && copy.getKeeId().equals(item.getKeeId()));
+        assertTrue("Values are copied into the arena", arena.getAllocated() == 96);
+        assertTrue(copy.weigh() == item.weigh() && item.weigh() > 48);
+
+        try {
+            new ArenaKeeItem(arena, Arrays.copyOf(bytes, bytes.length - 1));
+            assertTrue("Truncated bytes should not be read", false);
+        } catch (IllegalArgumentException e) {
+            assertTrue("Nothing is left in the arena", arena.getAllocated() == 96);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * <p>
+ * {@code CompactKeeItem} unit tests.
+ * </p>
+ * 
+ * @author thinh ho
+ *
+ */
+public class CompactKeeItemTest {
+    private CompactKeeItem item;
+
+    @Before
+    public void init() {
+        item = new CompactKeeItem("test");
+        item.put("test1", "value1");
+        item.put("test2", "value2");
+    }
+
+    @Test
+    public void testUpdates() {
+        int size = item.size();
+        assertTrue(size == 4 && "test".equals(item.getName()) && item.getId() != null);
+        item.put("test1", "updated");
+        assertTrue(item.size() == size && "updated".equals(item.get("test1")));
+        item.remove("test1");
+        assertTrue(item.size() == size - 1 && item.get("test1") == null && "value2".equals(item.get("test2")));
+
+        item.clear();
+        assertTrue("Clear should keep only the identifier", item.size() == 1 && item.getId() != null);
+    }
+
+    @Test
+    public void testGrowPastThreshold() {
+        Map<String, Object> expected = item.toMap();
+        for (int i = 0; i < CompactMap.threshold * 3; i++) {
+            item.put("key" + i, "value" + i);
+            expected.put("key" + i, "value" + i);
+            assertTrue("Mismatch after " + (i + 1) + " puts", item.toMap().equals(expected));
+        }
+        for (int i = 0; i < CompactMap.threshold * 3; i += 2) {
+            item.remove("key" + i);
+            expected.remove("key" + i);
+        }
+        assertTrue(item.size() == expected.size() && item.toMap().equals(expected));
+        assertTrue(item.keys().equals(expected.keySet()));
+    }
+
+    @Test
+    public void testIteratorRemove() {
+        CompactMap map = new CompactMap();
+        Map<String, String> expected = new HashMap<>();
+        for (int i = 0; i < 6; i++) {
+            map.put("key" + i, "value" + i);
+            expected.put("key" + i, "value" + i);
+        }
+        Iterator<Map.Entry<String, String>> it = map.entrySet().iterator();
+        int visited = 0;
+        while (it.hasNext()) {
+            Map.Entry<String, String> e = it.next();
+            visited++;
+            if (e.getKey().endsWith("0") || e.getKey().endsWith("3")) {
+                it.remove();
+                expected.remove(e.getKey());
+            }
+        }
+        assertTrue("Every entry should be visited once", visited == 6);
+        assertTrue(map.equals(expected));
+    }
+
+    @Test
+    public void testCopies() {
+        long version = item.getVersion();
+        Kee copy = item.toKee();
+        assertTrue("A copy should be compact and carry over the version",
+            copy instanceof CompactKeeItem && copy.getVersion() == version);
+        assertTrue(copy.toMap().equals(item.toMap()));
+
+        KeeItem converted = new CompactKeeItem(KeeItem.toKeeItem(item.toJSONString()).toMap());
+        assertTrue(converted.toMap().equals(item.toMap()));
+    }
+}
@@ -0,0 +1,112 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * <p>
+ * {@code ConcurrentKeeItem} unit tests.
+ * </p>
+ * 
+ * @author thinh ho
+ *
+ */
+public class ConcurrentKeeItemTest {
+    private ConcurrentKeeItem item;
+
+    @Before
+    public void init() {
+        item = new ConcurrentKeeItem("test");
+        item.put("test1", "value1");
+        item.put("test2", "value2");
+    }
+
+    @Test
+    public void testUpdates() {
+        int size = item.size();
+        assertTrue(item.size() == 4 && "test".equals(item.getName()) && item.getId() != null);
+        item.put("username", "value1");
+        assertTrue(item.size() == size + 1 && "value1".equals(item.get("username")));
+        item.remove("username");
+        assertTrue(item.size() == size && item.get("username") == null);
+
+        item.clear();
+        assertTrue("Clear should keep only the identifier", item.size() == 1 && item.getId() != null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullValue() {
+        item.put("key", null);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReadOnlyKeys() {
+        item.keys().remove("test1");
+    }
+
+    @Test
+    public void testCopies() {
+        long version = item.getVersion();
+        Kee copy = item.toKee();
+        assertTrue("A copy should be concurrent and carry over the version",
+            copy instanceof ConcurrentKeeItem && copy.getVersion() == version);
+        assertTrue(copy.toMap().equals(item.toMap()));
+
+        item.put("test1", "updated");
+        assertTrue("Changes to the original should not change the copy",
+            "value1".equals(((KeeItem) copy).get("test1")) && copy.getVersion() == version);
+
+        KeeItem converted = new ConcurrentKeeItem(KeeItem.toKeeItem(item.toJSONString()).toMap());
+        assertTrue(converted.toMap().equals(item.toMap()));
+    }
+
+    @Test
+    public void testIterateWhileUpdating() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        int threads = 4;
+        int puts = 2000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            writers.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < puts; i++) {
+                    item.put("key-" + thread + "-" + i, "value" + i);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+
+        // iterating during the updates must not fail
+        boolean writing = true;
+        while (writing) {
+            item.keys().forEach(k -> item.get(k));
+            writing = writers.stream().anyMatch(f -> !f.isDone());
+        }
+        for (Future<?> f : writers) {
+            f.get();
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        assertTrue("All updates should be kept", item.size() == 4 + threads * puts);
+        assertTrue("Every update should advance the version", item.getVersion() >= threads * puts);
+    }
+}
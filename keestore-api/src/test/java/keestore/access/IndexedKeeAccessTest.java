@@ -0,0 +1,128 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * <p>
+ * {@code IndexedKeeAccess} unit tests.
+ * </p>
+ * 
+ * @author thinh ho
+ *
+ */
+public class IndexedKeeAccessTest {
+    private IndexedKeeAccess access;
+    private KeeItem mail;
+    private KeeItem bank;
+
+    @Before
+    public void init() {
+        access = new IndexedKeeAccess();
+        mail = new KeeItem("mail");
+        mail.put("username", "thinh");
+        mail.put("password", "secret");
+        bank = new KeeItem("bank");
+        bank.put("username", "thinh");
+        bank.put("pin", "1234");
+        access.addKee(mail);
+        access.addKee(bank);
+    }
+
+    @Test
+    public void testFind() {
+        assertTrue(access.findByName("mail").equals(Arrays.asList(mail)));
+        assertTrue(access.findByKey("username").equals(Arrays.asList(mail, bank)));
+        assertTrue(access.findByKey("pin").equals(Arrays.asList(bank)));
+        assertTrue(access.findByValue("thinh").equals(Arrays.asList(mail, bank)));
+        assertTrue(access.findByValue("secret").equals(Arrays.asList(mail)));
+        assertTrue("Name and identifier are not values", access.findByValue("mail").isEmpty()
+            && access.findByKey(mail.idKey()).isEmpty());
+        assertTrue(access.findByKey("url").isEmpty() && access.findByName("other").isEmpty());
+
+        KeeItem other = new KeeItem("mail");
+        access.addKee(other);
+        assertTrue("Names may repeat", access.findByName("mail").equals(Arrays.asList(mail, other)));
+    }
+
+    @Test
+    public void testDelete() {
+        access.deleteKee(mail);
+        assertTrue(access.findByName("mail").isEmpty() && access.findByValue("secret").isEmpty());
+        assertTrue(access.findByKey("username").equals(Arrays.asList(bank)));
+        access.deleteKee(bank.getId());
+        assertTrue(access.size() == 0 && access.findByKey("username").isEmpty());
+    }
+
+    @Test
+    public void testReindex() {
+        mail.put("password", "changed");
+        mail.remove("username");
+        assertTrue("Not reindexed yet", access.findByValue("changed").isEmpty());
+        access.reindex(mail);
+        assertTrue(access.findByValue("changed").equals(Arrays.asList(mail)) && access.findByValue("secret").isEmpty());
+        assertTrue(access.findByKey("username").equals(Arrays.asList(bank)));
+    }
+
+    @Test
+    public void testSync() {
+        KeeItem other = new KeeItem("other");
+        bank.setName("savings");
+        access.sync(Arrays.asList(bank, other));
+        assertTrue(access.size() == 2 && access.getKee(mail.getKeeId()) == null);
+        assertTrue(access.findByName("savings").equals(Arrays.asList(bank)) && access.findByName("bank").isEmpty());
+        assertTrue(access.findByName("other").equals(Arrays.asList(other)) && access.findByValue("secret").isEmpty());
+    }
+
+    @Test
+    public void testFindPrefix() {
+        KeeItem mailbox = new KeeItem("mailbox");
+        mailbox.put("url", "https://mail");
+        access.addKee(mailbox);
+        assertTrue(access.find(KeeQuery.all()).equals(Arrays.asList(bank, mail, mailbox)));
+        assertTrue(access.find(KeeQuery.all().namePrefix("mail")).equals(Arrays.asList(mail, mailbox)));
+        assertTrue(access.find(KeeQuery.all().namePrefix("mailb")).equals(Arrays.asList(mailbox)));
+        assertTrue(access.find(KeeQuery.all().keyPrefix("p")).equals(Arrays.asList(bank, mail)));
+        assertTrue(access.find(KeeQuery.all().namePrefix("mail").keyPrefix("u")).equals(Arrays.asList(mail, mailbox)));
+        assertTrue(access.find(KeeQuery.all().namePrefix("mail").keyPrefix("pin")).isEmpty());
+        assertTrue(access.find(KeeQuery.all().namePrefix("x")).isEmpty());
+    }
+
+    @Test
+    public void testFindPage() {
+        for (int i = 0; i < 20; i++) {
+            KeeItem item = new KeeItem(String.format("item%02d", i));
+            item.put("index", String.valueOf(i));
+            access.addKee(item);
+        }
+        KeeQuery query = KeeQuery.all().namePrefix("item").filter(k -> Integer.parseInt(((KeeItem) k).get("index")) % 2 == 0)
+            .limit(3);
+        List<String> names = new ArrayList<>();
+        List<Kee> page;
+        while (!(page = access.find(query)).isEmpty()) {
+            assertTrue(page.size() <= 3);
+            page.forEach(k -> names.add(k.getName()));
+            query = query.next();
+        }
+        assertTrue(names.equals(Arrays.asList("item00", "item02", "item04", "item06", "item08", "item10", "item12",
+            "item14", "item16", "item18")));
+        assertTrue(access.find(KeeQuery.all().keyPrefix("index").offset(18)).size() == 2);
+        assertTrue(access.find(KeeQuery.all().limit(0)).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicate() {
+        access.addKee(mail);
+    }
+}
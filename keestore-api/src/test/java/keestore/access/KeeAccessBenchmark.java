@@ -0,0 +1,108 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * <p>
+ * Multi-threaded throughput of {@code KeeAccess} implementations under
+ * contention, with 1 to 64 threads and 50%, 90% and 99% reads: each thread
+ * reads random models, replaces one for every write, and takes a consistent
+ * copy of all models (as a save does) every 10000 operations. The single
+ * lock baseline is a {@code StripedKeeAccess} with one stripe. Run manually.
+ * </p>
+ * 
+ * @author thinh ho
+ *
+ */
+@Ignore
+public class KeeAccessBenchmark {
+    private static final int keeCount = 1024;
+    private static final long durationMillis = 1000;
+    private static final int[] readPercents = { 50, 90, 99 };
+
+    @Test
+    public void testThroughput() throws Exception {
+        System.out.println(String.format("%-8s %-6s %16s %16s %16s", "threads", "reads", 
+            "indexed ops/ms", "1 stripe ops/ms", "striped ops/ms"));
+        for (int reads : readPercents) {
+            for (int threads = 1; threads <= 64; threads *= 2) {
+                // warm up
+                run(IndexedKeeAccess::new, threads, reads);
+                run(() -> new StripedKeeAccess(1), threads, reads);
+                run(StripedKeeAccess::new, threads, reads);
+
+                long indexedOps = run(IndexedKeeAccess::new, threads, reads);
+                long lockedOps = run(() -> new StripedKeeAccess(1), threads, reads);
+                long stripedOps = run(StripedKeeAccess::new, threads, reads);
+                System.out.println(String.format("%-8d %-6s %16d %16d %16d", threads, reads + "%",
+                    indexedOps / durationMillis, lockedOps / durationMillis, stripedOps / durationMillis));
+            }
+        }
+    }
+
+    private long run(Supplier<KeeAccess> factory, int threads, int readPercent) throws Exception {
+        KeeAccess access = factory.get();
+        KeeItem[] kees = new KeeItem[keeCount];
+        for (int i = 0; i < keeCount; i++) {
+            kees[i] = new KeeItem("kee" + i);
+            kees[i].put("username", "user" + i);
+            access.addKee(kees[i]);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        long end = System.currentTimeMillis() + durationMillis;
+        List<Future<Long>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            results.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long ops = 0;
+                start.await();
+                while (System.currentTimeMillis() < end) {
+                    for (int i = 0; i < 100; i++, ops++) {
+                        KeeItem kee = kees[random.nextInt(keeCount)];
+                        if (ops % 10000 == 0) {
+                            snapshot(access);
+                        } else if (random.nextInt(100) >= readPercent) {
+                            access.updateKee(kee);
+                        } else {
+                            access.getKee(kee.getKeeId());
+                        }
+                    }
+                }
+                return ops;
+            }));
+        }
+        start.countDown();
+        long total = 0;
+        for (Future<Long> f : results) {
+            total += f.get();
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        return total;
+    }
+
+    private static List<Kee> snapshot(KeeAccess access) {
+        if (access instanceof StripedKeeAccess) {
+            return ((StripedKeeAccess) access).getAll();
+        }
+        return ((IndexedKeeAccess) access).getAll();
+    }
+}
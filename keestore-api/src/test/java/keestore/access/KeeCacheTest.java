@@ -0,0 +1,151 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * <p>
+ * {@code KeeCache} unit tests.
+ * </p>
+ * 
+ * @author thinh ho
+ *
+ */
+public class KeeCacheTest {
+    private Map<KeeId, Kee> store;
+    private List<Kee> evicted;
+    private KeeCache cache;
+
+    @Before
+    public void init() {
+        store = new HashMap<>();
+        evicted = new ArrayList<>();
+        // every model weighs 100, so three fit
+        cache = new KeeCache(300, k -> 100, store::get);
+        cache.setEvictionListener(k -> {
+            evicted.add(k);
+            store.put(k.getKeeId(), k);
+        });
+    }
+
+    @Test
+    public void testEviction() {
+        List<KeeItem> items = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            KeeItem item = new KeeItem("item" + i);
+            items.add(item);
+            cache.put(item);
+        }
+        assertTrue("Least recently used is evicted", evicted.size() == 1 && evicted.get(0) == items.get(0));
+        assertTrue(cache.size() == 3 && !cache.contains(items.get(0).getKeeId()));
+
+        // using item1 makes item2 the least recently used
+        assertTrue(cache.get(items.get(1).getKeeId()) == items.get(1));
+        assertTrue("Loaded again", cache.get(items.get(0).getKeeId()) == items.get(0));
+        assertTrue(evicted.size() == 2 && evicted.get(1) == items.get(2));
+
+        KeeCache.Stats stats = cache.getStats();
+        assertTrue(stats.getHits() == 1 && stats.getMisses() == 1 && stats.getEvictions() == 2);
+        assertTrue(stats.getSize() == 3 && stats.getWeight() == 300 && stats.getHitRate() == 0.5);
+    }
+
+    @Test
+    public void testMissing() {
+        KeeItem item = new KeeItem("item");
+        assertTrue(cache.get(item.getKeeId()) == null && cache.size() == 0);
+        cache.put(item);
+        assertTrue(cache.invalidate(item.getKeeId()) == item && cache.size() == 0);
+        assertTrue("Not evicted", evicted.isEmpty());
+        assertTrue(cache.getStats().getMisses() == 1 && cache.getStats().getWeight() == 0);
+    }
+
+    @Test
+    public void testRead() {
+        KeeItem item = new KeeItem("item");
+        store.put(item.getKeeId(), item);
+        assertTrue("item".equals(cache.get(item.getKeeId(), Kee::getName)));
+        assertTrue(cache.get(new KeeItem("other").getKeeId(), Kee::getName) == null);
+
+        KeeCache.Stats stats = cache.getStats();
+        assertTrue(stats.getMisses() == 2 && stats.getLoadNanos(0.5) > 0);
+        assertTrue(stats.getLoadNanos(1) >= stats.getLoadNanos(0.5));
+        assertTrue(new KeeCache(1, store::get).getStats().getLoadNanos(0.99) == 0);
+    }
+
+    @Test
+    public void testOverBudget() {
+        KeeCache small = new KeeCache(50, k -> 100, store::get);
+        KeeItem item = new KeeItem("item");
+        small.put(item);
+        assertTrue("Most recently used is kept", small.size() == 1 && small.get(item.getKeeId()) == item);
+        assertTrue(KeeCache.weigh(item) > 0);
+    }
+
+    @Test
+    public void testDiscard() {
+        List<Kee> discarded = new ArrayList<>();
+        cache.setDiscardListener(discarded::add);
+        KeeItem item = new KeeItem("item");
+        cache.put(item);
+        cache.put(item);
+        assertTrue("Same model is not discarded", discarded.isEmpty());
+        KeeItem replacement = (KeeItem) item.toKee();
+        cache.put(replacement);
+        assertTrue(discarded.size() == 1 && discarded.get(0) == item);
+
+        // a load that raced a change is dropped, and loaded again
+        KeeItem other = new KeeItem("other");
+        store.put(other.getKeeId(), other);
+        List<Kee> loads = new ArrayList<>();
+        KeeCache[] racing = new KeeCache[1];
+        racing[0] = new KeeCache(300, k -> 100, id -> {
+            loads.add(store.get(id).toKee());
+            if (loads.size() == 1) {
+                racing[0].put(new KeeItem("change"));
+            }
+            return loads.get(loads.size() - 1);
+        });
+        racing[0].setDiscardListener(discarded::add);
+        assertTrue(racing[0].get(other.getKeeId()) == loads.get(1) && racing[0].size() == 2);
+        assertTrue("Stale load is discarded", discarded.size() == 2 && discarded.get(1) == loads.get(0));
+    }
+
+    @Test
+    public void testEvictionFailure() {
+        List<KeeItem> items = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            items.add(new KeeItem("item" + i));
+            cache.put(items.get(i));
+        }
+        cache.setEvictionListener(k -> {
+            throw new IllegalStateException("Cannot spill");
+        });
+        KeeItem item = new KeeItem("item3");
+        try {
+            cache.put(item);
+            assertTrue("Spill failure is thrown", false);
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertTrue("Nothing is lost", cache.size() == 4 && cache.contains(items.get(0).getKeeId()));
+        assertTrue(cache.getStats().getWeight() == 400 && cache.getStats().getEvictions() == 0);
+
+        // evicted once it can be spilled
+        cache.setEvictionListener(evicted::add);
+        cache.put(new KeeItem("item4"));
+        assertTrue(evicted.size() == 2 && evicted.get(0) == items.get(0) && evicted.get(1) == items.get(1));
+        assertTrue(cache.size() == 3 && cache.getStats().getWeight() == 300);
+    }
+}
@@ -0,0 +1,136 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * <p>
+ * {@code KeeEvent} unit tests, published by {@code IndexedKeeAccess}.
+ * </p>
+ * 
+ * @author thinh ho
+ *
+ */
+public class KeeEventTest {
+    private IndexedKeeAccess access;
+    private IndexedKeeAccess mirror;
+    private List<KeeEvent> events;
+    private KeeItem mail;
+    private KeeItem bank;
+
+    @Before
+    public void init() {
+        access = new IndexedKeeAccess();
+        mirror = new IndexedKeeAccess();
+        events = new ArrayList<>();
+        access.addKeeListener(events::add);
+        access.addKeeListener(e -> e.applyTo(mirror));
+        mail = new KeeItem("mail");
+        mail.put("username", "thinh");
+        bank = new KeeItem("bank");
+        bank.put("pin", "1234");
+    }
+
+    @Test
+    public void testPublish() {
+        access.addKee(mail);
+        access.addKee(bank);
+        access.deleteKee(mail.getId());
+        access.deleteKee(mail.getId());
+        access.clear();
+        assertTrue(events.size() == 4);
+        assertTrue(events.get(0).getType() == KeeEvent.Type.ADDED && events.get(0).getKee() == mail
+            && events.get(0).getId().equals(mail.getKeeId()) && events.get(0).getSource() == access);
+        assertTrue(events.get(1).getType() == KeeEvent.Type.ADDED && events.get(1).getKee() == bank);
+        assertTrue("Removed model is the previous one", events.get(2).getType() == KeeEvent.Type.REMOVED
+            && events.get(2).getKee() == null && events.get(2).getPrevious() == mail);
+        assertTrue(events.get(3).getType() == KeeEvent.Type.CLEARED && events.get(3).getId() == null);
+    }
+
+    @Test
+    public void testUpdate() {
+        access.addKee(mail);
+        access.addKee(bank);
+        mail.put("password", "secret");
+        access.reindex(mail);
+        KeeEvent updated = events.get(2);
+        assertTrue(updated.getType() == KeeEvent.Type.UPDATED && updated.getKee() == mail
+            && updated.getPrevious() == null);
+
+        Kee copy = mail.snapshot();
+        copy.put("url", "mail.com");
+        access.updateKee(copy);
+        updated = events.get(3);
+        assertTrue("Replaced model is the previous one", updated.getType() == KeeEvent.Type.UPDATED
+            && updated.getKee() == copy && updated.getPrevious() == mail);
+        assertTrue("Replacing keeps the position", access.getAll().equals(Arrays.asList(copy, bank)));
+        assertTrue(access.findByKey("url").equals(Arrays.asList(copy)));
+    }
+
+    @Test
+    public void testMirror() {
+        access.addKee(mail);
+        access.addKee(bank);
+        mail.put("password", "secret");
+        access.reindex(mail);
+        assertTrue(mirror.getAll().equals(Arrays.asList(mail, bank)));
+        assertTrue("Mirror is reindexed", mirror.findByValue("secret").equals(Arrays.asList(mail)));
+
+        KeeItem other = new KeeItem("other");
+        access.sync(Arrays.asList(bank, other));
+        assertTrue(mirror.getAll().equals(Arrays.asList(bank, other)));
+        access.clear();
+        assertTrue(mirror.size() == 0);
+    }
+
+    @Test
+    public void testRemoveListener() {
+        List<KeeEvent> other = new ArrayList<>();
+        Consumer<KeeEvent> listener = other::add;
+        access.addKeeListener(listener);
+        access.addKee(mail);
+        access.removeKeeListener(listener);
+        access.addKee(bank);
+        assertTrue(other.size() == 1 && events.size() == 2);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testUnsupported() {
+        KeeAccess plain = new KeeAccess() {
+            @Override
+            public Kee getKee(String id) {
+                return null;
+            }
+
+            @Override
+            public void addKee(Kee item) {
+            }
+
+            @Override
+            public void deleteKee(Kee item) {
+            }
+
+            @Override
+            public void deleteKee(String id) {
+            }
+
+            @Override
+            public void clear() {
+            }
+        };
+        plain.addKeeListener(e -> {
+        });
+    }
+}
@@ -0,0 +1,71 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.Test;
+
+/**
+ * <p>
+ * {@code KeeId} unit tests.
+ * </p>
+ * 
+ * @author thinh ho
+ *
+ */
+public class KeeIdTest {
+
+    @Test
+    public void testRandom() {
+        Set<KeeId> ids = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            KeeId id = KeeId.random();
+            UUID uuid = UUID.fromString(id.toString());
+            assertTrue(uuid.version() == 4 && uuid.variant() == 2 && uuid.toString().equals(id.toString()));
+            assertTrue(KeeId.valueOf(id.toString()).equals(id));
+            ids.add(id);
+        }
+        assertTrue(ids.size() == 1000);
+    }
+
+    @Test
+    public void testValueOf() {
+        String text = UUID.randomUUID().toString();
+        KeeId id = KeeId.valueOf(text);
+        KeeId same = KeeId.valueOf(new String(text));
+        assertTrue(id.equals(same) && id.hashCode() == same.hashCode() && id.compareTo(same) == 0);
+        assertTrue(text.equals(id.toString()));
+        assertTrue("Upper case is a different string, so a different id",
+            !id.equals(KeeId.valueOf(text.toUpperCase())));
+
+        KeeId custom = KeeId.valueOf("registration");
+        assertTrue(custom.equals(KeeId.valueOf("registration")) && !custom.equals(KeeId.valueOf("registration2")));
+        assertTrue("registration".equals(custom.toString()) && !custom.equals(id));
+    }
+
+    @Test
+    public void testOrder() {
+        KeeId a = KeeId.valueOf("0fffffff-ffff-4fff-bfff-ffffffffffff");
+        KeeId b = KeeId.valueOf("f0000000-0000-4000-8000-000000000000");
+        assertTrue(a.compareTo(b) < 0 && b.compareTo(a) > 0);
+        assertTrue(a.compareTo(KeeId.valueOf("zz")) < 0);
+    }
+
+    @Test
+    public void testKeeItem() {
+        KeeItem item = new KeeItem("test");
+        KeeId id = item.getKeeId();
+        assertTrue(id.toString().equals(item.getId()) && id == item.getKeeId());
+        item.setId("custom");
+        assertTrue(item.getKeeId().equals(KeeId.valueOf("custom")));
+        assertTrue(new KeeItem(item.toMap()).getKeeId().equals(item.getKeeId()));
+    }
+}
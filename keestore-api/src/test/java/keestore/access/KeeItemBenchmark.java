@@ -0,0 +1,92 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * <p>
+ * Multi-threaded throughput of {@code KeeItem} and {@code ConcurrentKeeItem}:
+ * each thread reads random keys, with a write every 10 operations and a full
+ * iteration of the keys every 1000 operations. Run manually.
+ * </p>
+ * 
+ * @author thinh ho
+ *
+ */
+@Ignore
+public class KeeItemBenchmark {
+    private static final int keyCount = 64;
+    private static final long durationMillis = 1000;
+
+    @Test
+    public void testThroughput() throws Exception {
+        System.out.println(String.format("%-8s %18s %18s", "threads", "KeeItem ops/ms", "Concurrent ops/ms"));
+        for (int threads = 1; threads <= Runtime.getRuntime().availableProcessors() * 2; threads *= 2) {
+            // warm up
+            run(() -> new KeeItem("benchmark"), threads);
+            run(() -> new ConcurrentKeeItem("benchmark"), threads);
+
+            long synchronizedOps = run(() -> new KeeItem("benchmark"), threads);
+            long concurrentOps = run(() -> new ConcurrentKeeItem("benchmark"), threads);
+            System.out.println(String.format("%-8d %18d %18d", threads, 
+                synchronizedOps / durationMillis, concurrentOps / durationMillis));
+        }
+    }
+
+    private long run(Supplier<KeeItem> factory, int threads) throws Exception {
+        KeeItem item = factory.get();
+        String[] keys = new String[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = "key" + i;
+            item.put(keys[i], "value" + i);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        long end = System.currentTimeMillis() + durationMillis;
+        List<Future<Long>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            results.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long ops = 0;
+                start.await();
+                while (System.currentTimeMillis() < end) {
+                    for (int i = 0; i < 100; i++, ops++) {
+                        String key = keys[random.nextInt(keyCount)];
+                        if (ops % 1000 == 0) {
+                            item.keys().forEach(k -> {});
+                        } else if (ops % 10 == 0) {
+                            item.put(key, "value" + ops);
+                        } else {
+                            item.get(key);
+                        }
+                    }
+                }
+                return ops;
+            }));
+        }
+        start.countDown();
+        long total = 0;
+        for (Future<Long> f : results) {
+            total += f.get();
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        return total;
+    }
+}
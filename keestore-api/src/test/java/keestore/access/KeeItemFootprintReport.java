@@ -0,0 +1,75 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * <p>
+ * Heap footprint of 100k vaults with {@code KeeItem}, {@code CompactKeeItem}
+ * and {@code ConcurrentKeeItem}. Each vault holds the id, the name and four
+ * key-value pairs; the same strings are shared by all representations so the
+ * difference is the cost of the storage itself. Run manually, preferably with
+ * a fixed heap (i.e. -Xms1g -Xmx1g).
+ * </p>
+ * 
+ * @author thinh ho
+ *
+ */
+@Ignore
+public class KeeItemFootprintReport {
+    private static final int vaults = 100000;
+    private static final int entries = 4;
+
+    @Test
+    public void testFootprint() {
+        String[] names = new String[vaults];
+        String[][] values = new String[vaults][entries * 2];
+        for (int i = 0; i < vaults; i++) {
+            names[i] = "vault" + i;
+            for (int j = 0; j < entries * 2; j++) {
+                values[i][j] = "key" + j + "value" + i;
+            }
+        }
+        
+        System.out.println(String.format("%-20s %12s %14s", "100k vaults", "total (MB)", "per vault (B)"));
+        report("KeeItem", name -> new KeeItem(name), names, values);
+        report("CompactKeeItem", name -> new CompactKeeItem(name), names, values);
+        report("ConcurrentKeeItem", name -> new ConcurrentKeeItem(name), names, values);
+    }
+
+    private void report(String label, Function<String, KeeItem> factory, String[] names, String[][] values) {
+        long before = usedMemory();
+        List<KeeItem> items = new ArrayList<>(vaults);
+        for (int i = 0; i < vaults; i++) {
+            KeeItem item = factory.apply(names[i]);
+            for (int j = 0; j < entries * 2; j += 2) {
+                item.put(values[i][j], values[i][j + 1]);
+            }
+            items.add(item);
+        }
+        long used = usedMemory() - before;
+        System.out.println(String.format("%-20s %12.1f %14d", label, used / (1024.0 * 1024.0), used / items.size()));
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
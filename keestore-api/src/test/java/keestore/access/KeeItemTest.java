@@ -183,4 +183,26 @@ public class KeeItemTest {
                     item.get(k) != null && item.get(k).equals(convertedItem.get(k)));
         });
     }
+
+    @Test
+    public void testVersion() {
+        long version = item.getVersion();
+        item.put("test1", "value1");
+        assertTrue("Putting the same value should not change the version", item.getVersion() == version);
+        item.put("test1", "updated");
+        assertTrue("Updating a value should change the version", item.getVersion() > version);
+
+        version = item.getVersion();
+        item.remove("nothing");
+        assertTrue("Removing a non-existing key should not change the version", item.getVersion() == version);
+        item.remove("test1");
+        assertTrue("Removing a key should change the version", item.getVersion() > version);
+
+        version = item.getVersion();
+        KeeItem copy = (KeeItem) item.toKee();
+        assertTrue("A copy should carry over the version", copy.getVersion() == version);
+        item.clear();
+        assertTrue("Clearing should change the version", item.getVersion() > version);
+        assertTrue("Changes to the original should not change the copy", copy.getVersion() == version);
+    }
 }
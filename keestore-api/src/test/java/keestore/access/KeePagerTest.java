@@ -0,0 +1,133 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * <p>
+ * {@code KeePager} unit tests.
+ * </p>
+ *
+ * @author thinh ho
+ *
+ */
+public class KeePagerTest {
+    private Map<KeeId, String> store;
+    private List<KeeId> ids;
+    // loads run when the test says so
+    private Queue<Runnable> loads;
+    private List<Integer> loaded;
+    private KeePager<String> pager;
+
+    @Before
+    public void init() {
+        store = new HashMap<>();
+        ids = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            KeeItem item = new KeeItem("item" + i);
+            store.put(item.getKeeId(), item.getName());
+            ids.add(item.getKeeId());
+        }
+        loads = new ArrayDeque<>();
+        loaded = new ArrayList<>();
+        // 10 rows a page, 4 pages kept
+        pager = new KeePager<>(ids, 10, 4, store::get, loads::add);
+        pager.setLoadListener((from, to) -> loaded.add(from));
+    }
+
+    private void runLoads() {
+        while (!loads.isEmpty()) {
+            loads.poll().run();
+        }
+    }
+
+    @Test
+    public void testLoadOnRead() {
+        assertTrue(pager.size() == 100 && pager.getKeeId(42).equals(ids.get(42)));
+        assertTrue("Not loaded yet", pager.get(15) == null && !pager.isLoaded(15));
+        // the page read and the next one
+        assertTrue(loads.size() == 2);
+        pager.get(16);
+        assertTrue("Already being loaded", loads.size() == 2);
+
+        runLoads();
+        assertTrue(loaded.size() == 2 && loaded.get(0) == 10 && loaded.get(1) == 20);
+        assertTrue(pager.get(15).equals("item15") && pager.isLoaded(25) && !pager.isLoaded(35));
+    }
+
+    @Test
+    public void testPrefetchDirection() {
+        pager.get(55);
+        runLoads();
+        assertTrue(pager.isLoaded(65) && !pager.isLoaded(45));
+
+        // reading up loads the page above
+        pager.get(45);
+        runLoads();
+        assertTrue(pager.isLoaded(35));
+    }
+
+    @Test
+    public void testEviction() {
+        for (int row = 0; row < 100; row += 10) {
+            pager.get(row);
+            runLoads();
+        }
+        assertTrue(pager.getPageCount() == 4);
+        assertTrue("Far pages are evicted", !pager.isLoaded(0) && !pager.isLoaded(50));
+        assertTrue(pager.isLoaded(99) && pager.isLoaded(60));
+
+        // evicted pages are loaded again
+        assertTrue(pager.get(0) == null);
+        runLoads();
+        assertTrue(pager.get(0).equals("item0") && pager.getPageCount() == 4 && !pager.isLoaded(99));
+    }
+
+    @Test
+    public void testRefresh() {
+        pager.get(0);
+        pager.refresh(ids.subList(50, 100));
+        runLoads();
+        assertTrue("Loaded from the previous index", loaded.isEmpty() && pager.getPageCount() == 0);
+
+        assertTrue(pager.size() == 50 && pager.get(0) == null);
+        runLoads();
+        assertTrue(pager.get(0).equals("item50"));
+    }
+
+    @Test
+    public void testInvalidate() {
+        pager.get(0);
+        runLoads();
+        store.put(ids.get(5), "changed");
+        loaded.clear();
+        pager.invalidate(ids.get(5));
+        assertTrue("Kept until loaded again", pager.get(5).equals("item5") && loads.size() == 1);
+        runLoads();
+        assertTrue(pager.get(5).equals("changed") && loaded.size() == 1 && loaded.get(0) == 0);
+
+        // changed again while it is loaded
+        pager.invalidate(ids.get(5));
+        Runnable load = loads.poll();
+        store.put(ids.get(5), "again");
+        pager.invalidate(ids.get(5));
+        load.run();
+        assertTrue("Loaded once more", pager.get(5).equals("changed") && loads.size() == 1);
+        runLoads();
+        assertTrue(pager.get(5).equals("again"));
+    }
+}
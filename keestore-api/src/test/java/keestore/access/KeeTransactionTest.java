@@ -0,0 +1,126 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * <p>
+ * {@code KeeTransaction} and batch unit tests, made on an
+ * {@code IndexedKeeAccess}.
+ * </p>
+ * 
+ * @author thinh ho
+ *
+ */
+public class KeeTransactionTest {
+    private IndexedKeeAccess access;
+    private IndexedKeeAccess mirror;
+    private List<KeeEvent> events;
+    private KeeItem mail;
+    private KeeItem bank;
+    private KeeItem other;
+
+    @Before
+    public void init() {
+        access = new IndexedKeeAccess();
+        mirror = new IndexedKeeAccess();
+        events = new ArrayList<>();
+        access.addKeeListener(events::add);
+        access.addKeeListener(e -> e.applyTo(mirror));
+        mail = new KeeItem("mail");
+        mail.put("username", "thinh");
+        bank = new KeeItem("bank");
+        bank.put("pin", "1234");
+        other = new KeeItem("other");
+    }
+
+    @Test
+    public void testAddAll() {
+        access.addAll(Arrays.asList(mail, bank, other));
+        assertTrue("One event per batch", events.size() == 1);
+        KeeEvent batch = events.get(0);
+        assertTrue(batch.getType() == KeeEvent.Type.BATCH && batch.getChanges().size() == 3);
+        assertTrue(batch.getChanges().get(2).getType() == KeeEvent.Type.ADDED
+            && batch.getChanges().get(2).getKee() == other);
+        assertTrue(access.getAll().equals(Arrays.asList(mail, bank, other)));
+        assertTrue(access.findByKey("pin").equals(Arrays.asList(bank)));
+        assertTrue("Mirror applies the batch", mirror.getAll().equals(access.getAll()));
+
+        access.deleteAll(Arrays.asList(mail, other));
+        assertTrue(events.size() == 2 && events.get(1).getChanges().size() == 2);
+        assertTrue(access.getAll().equals(Arrays.asList(bank)) && mirror.getAll().equals(Arrays.asList(bank)));
+    }
+
+    @Test
+    public void testAllOrNothing() {
+        access.addKee(mail);
+        events.clear();
+        try {
+            access.addAll(Arrays.asList(bank, mail));
+            assertTrue("Duplicate must fail", false);
+        } catch (IllegalArgumentException e) {
+        }
+        assertTrue("Nothing was added", access.getAll().equals(Arrays.asList(mail)) && events.isEmpty());
+        assertTrue(access.findByKey("pin").isEmpty());
+
+        // deleted then added again in the same batch
+        access.applyAll(Arrays.asList(KeeEvent.removed(this, mail), KeeEvent.added(this, mail)));
+        assertTrue(access.getAll().equals(Arrays.asList(mail)));
+        try {
+            access.applyAll(Arrays.asList(KeeEvent.added(this, bank), KeeEvent.added(this, bank)));
+            assertTrue("Duplicate within the batch must fail", false);
+        } catch (IllegalArgumentException e) {
+        }
+        assertTrue(access.size() == 1);
+    }
+
+    @Test
+    public void testCommit() {
+        access.addKee(mail);
+        events.clear();
+        try (KeeTransaction tx = access.begin()) {
+            tx.delete(mail).add(bank).add(other);
+            assertTrue("Not made before commit", access.getAll().equals(Arrays.asList(mail)));
+            assertTrue(tx.getChanges().size() == 3 && tx.isActive());
+            tx.commit();
+            assertTrue(!tx.isActive());
+        }
+        assertTrue(access.getAll().equals(Arrays.asList(bank, other)));
+        assertTrue(events.size() == 1 && mirror.getAll().equals(Arrays.asList(bank, other)));
+
+        try (KeeTransaction tx = access.begin()) {
+            tx.clear().add(mail).commit();
+        }
+        assertTrue(access.getAll().equals(Arrays.asList(mail)) && mirror.getAll().equals(Arrays.asList(mail)));
+    }
+
+    @Test
+    public void testRollback() {
+        try (KeeTransaction tx = access.begin()) {
+            tx.add(mail).add(bank);
+            tx.rollback();
+        }
+        try (KeeTransaction tx = access.begin()) {
+            tx.add(other);
+        }
+        assertTrue("Nothing made", access.size() == 0 && events.isEmpty());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCommitTwice() {
+        KeeTransaction tx = access.begin().add(mail);
+        tx.commit();
+        tx.commit();
+    }
+}
@@ -0,0 +1,178 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * <p>
+ * Versions and compare-and-set updates of {@code IndexedKeeAccess}.
+ * </p>
+ * 
+ * @author thinh ho
+ *
+ */
+public class KeeVersionTest {
+    private IndexedKeeAccess access;
+    private KeeItem mail;
+
+    @Before
+    public void init() {
+        access = new IndexedKeeAccess();
+        mail = new KeeItem("mail");
+        mail.put("username", "thinh");
+        access.addKee(mail);
+    }
+
+    @Test
+    public void testVersion() {
+        KeeId id = mail.getKeeId();
+        long v1 = access.getVersion(id);
+        assertTrue(v1 != KeeAccess.NO_VERSION);
+        assertTrue(access.getVersion(KeeId.random()) == KeeAccess.NO_VERSION);
+
+        mail.put("password", "secret");
+        assertTrue("Only changes through the access count", access.getVersion(id) == v1);
+        access.reindex(mail);
+        long v2 = access.getVersion(id);
+        assertTrue(v2 > v1);
+
+        access.deleteKee(id);
+        assertTrue(access.getVersion(id) == KeeAccess.NO_VERSION);
+        access.addKee(mail);
+        assertTrue("Versions never go back", access.getVersion(id) > v2);
+    }
+
+    @Test
+    public void testReplaceIfVersion() {
+        KeeId id = mail.getKeeId();
+        long version = access.getVersion(id);
+        Kee copy = mail.snapshot();
+        copy.put("password", "secret");
+        assertTrue(access.replaceIfVersion(id, version, copy));
+        assertTrue(access.getKee(id) == copy && access.findByValue("secret").equals(Arrays.asList(copy)));
+
+        Kee stale = mail.snapshot();
+        assertTrue("Stale version", !access.replaceIfVersion(id, version, stale));
+        assertTrue(access.getKee(id) == copy);
+
+        assertTrue(access.replaceIfVersion(id, access.getVersion(id), null));
+        assertTrue("Deleted", access.getKee(id) == null);
+        assertTrue("Added if absent", access.replaceIfVersion(id, KeeAccess.NO_VERSION, mail));
+        assertTrue(!access.replaceIfVersion(id, KeeAccess.NO_VERSION, mail));
+        assertTrue(access.getAll().equals(Arrays.asList(mail)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReplaceOther() {
+        access.replaceIfVersion(mail.getKeeId(), access.getVersion(mail.getKeeId()), new KeeItem("other"));
+    }
+
+    @Test
+    public void testComputeIfPresent() {
+        List<KeeEvent> events = new ArrayList<>();
+        access.addKeeListener(events::add);
+        KeeId id = mail.getKeeId();
+        Kee result = access.computeIfPresent(id, (k, v) -> {
+            v.put("password", "secret");
+            return v;
+        });
+        assertTrue(result == mail && access.findByKey("password").equals(Arrays.asList(mail)));
+        assertTrue(events.size() == 1 && events.get(0).getType() == KeeEvent.Type.UPDATED);
+
+        assertTrue(access.computeIfPresent(KeeId.random(), (k, v) -> v) == null);
+        assertTrue(access.computeIfPresent(id, (k, v) -> null) == null);
+        assertTrue(access.size() == 0);
+    }
+
+    @Test
+    public void testConcurrentCompute() throws Exception {
+        KeeId id = mail.getKeeId();
+        mail.put("count", "0");
+        int threads = 4;
+        int updates = 500;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread w = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < updates; i++) {
+                    access.computeIfPresent(id, (k, v) -> {
+                        Kee next = v.snapshot();
+                        next.put("count", String.valueOf(Integer.parseInt((String) next.toMap().get("count")) + 1));
+                        return next;
+                    });
+                }
+            });
+            w.start();
+            workers.add(w);
+        }
+        start.countDown();
+        for (Thread w : workers) {
+            w.join();
+        }
+        assertTrue("No lost update", access.getKee(id).toMap().get("count").equals(String.valueOf(threads * updates)));
+    }
+
+    @Test
+    public void testDefaultCompareAndSet() {
+        // an access without its own versions uses the version of the item
+        AtomicInteger retries = new AtomicInteger();
+        KeeAccess plain = new KeeAccess() {
+            private final List<Kee> items = new ArrayList<>(Arrays.asList(mail));
+
+            @Override
+            public Kee getKee(String id) {
+                return items.stream().filter(k -> k.getId().equals(id)).findFirst().orElse(null);
+            }
+
+            @Override
+            public void addKee(Kee item) {
+                items.add(item);
+            }
+
+            @Override
+            public void deleteKee(Kee item) {
+                items.remove(item);
+            }
+
+            @Override
+            public void deleteKee(String id) {
+                items.removeIf(k -> k.getId().equals(id));
+            }
+
+            @Override
+            public void clear() {
+                items.clear();
+            }
+        };
+        KeeId id = mail.getKeeId();
+        long version = plain.getVersion(id);
+        assertTrue(version == mail.getVersion());
+        Kee result = plain.computeIfPresent(id, (k, v) -> {
+            if (retries.getAndIncrement() == 0) {
+                // another writer got there first
+                mail.put("url", "mail.com");
+            }
+            return v;
+        });
+        assertTrue(result == mail && retries.get() == 2);
+        assertTrue(!plain.replaceIfVersion(id, version, mail));
+    }
+}
@@ -0,0 +1,43 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * <p>
+ * {@code KeySymbols} unit tests.
+ * </p>
+ * 
+ * @author thinh ho
+ *
+ */
+public class KeySymbolsTest {
+
+    @Test
+    public void testIntern() {
+        String key = new String("username");
+        String symbol = KeySymbols.intern(key);
+        assertTrue(symbol.equals(key) && KeySymbols.intern(new String("username")) == symbol);
+        assertTrue(KeySymbols.intern(new String(KeeItem.ITEMNAME_ID)) == KeeItem.ITEMNAME_ID);
+        assertTrue(KeySymbols.intern(null) == null);
+    }
+
+    @Test
+    public void testParsedKeysShared() {
+        KeeItem first = KeeItem.toKeeItem("{\"itemName\":\"a\",\"itemId\":\"1\",\"password\":\"x\"}");
+        KeeItem second = KeeItem.toKeeItem("{\"itemName\":\"b\",\"itemId\":\"2\",\"password\":\"y\"}");
+        String k1 = first.keys().stream().filter(k -> k.equals("password")).findFirst().get();
+        String k2 = second.keys().stream().filter(k -> k.equals("password")).findFirst().get();
+        assertTrue("Keys of parsed items should be the same instance", k1 == k2);
+
+        CompactKeeItem item = new CompactKeeItem("c");
+        item.put(new String("password"), "z");
+        assertTrue(item.keys().stream().anyMatch(k -> k == k1));
+    }
+}
@@ -0,0 +1,198 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * <p>
+ * {@code MvccKeeAccess} unit tests.
+ * </p>
+ * 
+ * @author thinh ho
+ *
+ */
+public class MvccKeeAccessTest {
+    private MvccKeeAccess access;
+    private List<KeeEvent> events;
+    private KeeItem mail;
+    private KeeItem bank;
+
+    @Before
+    public void init() {
+        access = new MvccKeeAccess();
+        events = new ArrayList<>();
+        access.addKeeListener(events::add);
+        mail = new KeeItem("mail");
+        bank = new KeeItem("bank");
+    }
+
+    @Test
+    public void testAccess() {
+        access.addKee(mail);
+        access.addKee(bank);
+        KeeId id = mail.getKeeId();
+        assertTrue("Models are copied", access.getKee(id) != mail && access.getKee(id).getName().equals("mail"));
+        assertTrue(access.size() == 2 && access.getSequence() == 2);
+        try {
+            access.addKee(mail);
+            assertTrue("Duplicate must fail", false);
+        } catch (IllegalArgumentException e) {
+        }
+
+        mail.put("user", "thinh");
+        assertTrue("Changes in place are not seen", access.getKee(id).toMap().get("user") == null);
+        access.updateKee(mail);
+        assertTrue("thinh".equals(access.getKee(id).toMap().get("user")));
+
+        access.deleteKee(mail);
+        assertTrue(access.getKee(id) == null && access.size() == 1);
+        access.clear();
+        assertTrue(access.size() == 0 && access.getVersionCount() == 0);
+        assertTrue(events.size() == 5 && events.get(4).getType() == KeeEvent.Type.CLEARED);
+    }
+
+    @Test
+    public void testVersions() {
+        access.addKee(mail);
+        KeeId id = mail.getKeeId();
+        long version = access.getVersion(id);
+        assertTrue(version != KeeAccess.NO_VERSION);
+        assertTrue(access.replaceIfVersion(id, version, mail) && access.getVersion(id) > version);
+        assertTrue(!access.replaceIfVersion(id, version, mail));
+        assertTrue(access.computeIfPresent(id, (k, v) -> null) == null && access.getKee(id) == null);
+        assertTrue(access.getVersion(id) == KeeAccess.NO_VERSION);
+        assertTrue(access.replaceIfVersion(id, KeeAccess.NO_VERSION, mail) && access.getKee(id) != null);
+    }
+
+    @Test
+    public void testSnapshot() {
+        access.addAll(Arrays.asList(mail, bank));
+        KeeSnapshot snapshot = access.openSnapshot();
+        mail.put("user", "thinh");
+        access.updateKee(mail);
+        access.deleteKee(bank);
+        access.addKee(new KeeItem("shop"));
+
+        assertTrue(snapshot.getAll().size() == 2 && snapshot.getKee(bank.getKeeId()) != null);
+        assertTrue(snapshot.getKee(mail.getKeeId()).toMap().get("user") == null);
+        assertTrue(access.size() == 2 && access.getKee(bank.getKeeId()) == null);
+
+        // both versions of mail and the deleted bank are kept
+        assertTrue(access.getVersionCount() == 5);
+        snapshot.close();
+        assertTrue("Unseen versions are dropped", access.getVersionCount() == 2);
+        try {
+            snapshot.getAll();
+            assertTrue("Closed snapshot must fail", false);
+        } catch (IllegalStateException e) {
+        }
+    }
+
+    @Test
+    public void testOldestSnapshot() {
+        access.addKee(mail);
+        KeeId id = mail.getKeeId();
+        KeeSnapshot first = access.openSnapshot();
+        mail.put("user", "first");
+        access.updateKee(mail);
+        KeeSnapshot second = access.openSnapshot();
+        mail.put("user", "second");
+        access.updateKee(mail);
+
+        second.close();
+        assertTrue("The first snapshot still holds its version", access.getVersionCount() == 2);
+        assertTrue(first.getKee(id).toMap().get("user") == null);
+        first.close();
+        assertTrue(access.getVersionCount() == 1 && "second".equals(access.getKee(id).toMap().get("user")));
+    }
+
+    @Test
+    public void testBatch() {
+        access.addKee(mail);
+        events.clear();
+        try {
+            access.addAll(Arrays.asList(bank, mail));
+            assertTrue("Duplicate must fail", false);
+        } catch (IllegalArgumentException e) {
+        }
+        assertTrue("Nothing was added", access.size() == 1 && events.isEmpty());
+
+        long sequence = access.getSequence();
+        try (KeeTransaction tx = access.begin()) {
+            tx.delete(mail).add(bank).commit();
+        }
+        assertTrue("One write", access.getSequence() == sequence + 1);
+        assertTrue(events.size() == 1 && events.get(0).getChanges().size() == 2);
+    }
+
+    @Test
+    public void testConsistentSnapshot() throws Exception {
+        // the writer always moves a model between two identifiers in one batch,
+        // so a snapshot always sees the same number of models
+        int pairs = 32;
+        List<KeeItem> first = new ArrayList<>();
+        List<KeeItem> second = new ArrayList<>();
+        for (int i = 0; i < pairs; i++) {
+            first.add(new KeeItem("first" + i));
+            second.add(new KeeItem("second" + i));
+        }
+        access.addAll(first);
+        CountDownLatch done = new CountDownLatch(1);
+        Thread writer = new Thread(() -> {
+            for (int n = 0; n < 200; n++) {
+                for (int i = 0; i < pairs; i++) {
+                    KeeItem from = first.get(i);
+                    KeeItem to = second.get(i);
+                    if (access.getKee(from.getKeeId()) == null) {
+                        from = to;
+                        to = first.get(i);
+                    }
+                    access.applyAll(Arrays.asList(KeeEvent.removed(this, from), KeeEvent.added(this, to)));
+                }
+            }
+            done.countDown();
+        });
+        writer.start();
+        while (done.getCount() > 0) {
+            try (KeeSnapshot snapshot = access.openSnapshot()) {
+                assertTrue(snapshot.getAll().size() == pairs);
+            }
+        }
+        writer.join();
+        assertTrue(access.getVersionCount() == pairs);
+    }
+
+    @Test
+    public void testRelease() {
+        ValueArena arena = new ValueArena(4096);
+        ArenaKeeItem item = new ArenaKeeItem(arena, "mail");
+        item.put("password", "secret");
+        access.addKee(item);
+        KeeSnapshot snapshot = access.openSnapshot();
+        Kee first = snapshot.getKee(item.getKeeId());
+
+        item.put("password", "changed");
+        access.updateKee(item);
+        assertTrue("Kept while a snapshot sees it", "secret".equals(first.toMap().get("password")));
+        snapshot.close();
+        assertTrue("Wiped once no snapshot sees it", first.toMap().get("password") == null);
+        assertTrue("changed".equals(access.getKee(item.getKeeId()).toMap().get("password")));
+        assertTrue("The written model is not wiped", "changed".equals(item.get("password")));
+
+        Kee second = access.getKee(item.getKeeId());
+        access.deleteKee(item.getKeeId());
+        assertTrue("Wiped once deleted", second.toMap().get("password") == null && access.getVersionCount() == 0);
+    }
+}
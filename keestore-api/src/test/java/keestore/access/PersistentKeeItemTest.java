@@ -0,0 +1,69 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * <p>
+ * {@code PersistentKeeItem} unit tests.
+ * </p>
+ * 
+ * @author thinh ho
+ *
+ */
+public class PersistentKeeItemTest {
+    private PersistentKeeItem item;
+
+    @Before
+    public void init() {
+        item = new PersistentKeeItem("test");
+        item.put("test1", "value1");
+        item.put("test2", "value2");
+    }
+
+    @Test
+    public void testUpdates() {
+        assertTrue(item.size() == 4 && "test".equals(item.getName()) && item.getId() != null);
+        item.put("test1", "updated");
+        assertTrue("updated".equals(item.get("test1")));
+        item.remove("test1");
+        assertTrue(item.size() == 3 && item.get("test1") == null);
+        item.clear();
+        assertTrue("Clear should keep only the identifier", item.size() == 1 && item.getId() != null);
+    }
+
+    @Test
+    public void testSnapshot() {
+        Map<String, Object> before = item.toMap();
+        long version = item.getVersion();
+        Kee snapshot = item.snapshot();
+        assertTrue("A snapshot should carry over the version and values",
+            snapshot instanceof PersistentKeeItem && snapshot.getVersion() == version
+                && snapshot.toMap().equals(before));
+
+        item.put("test1", "updated");
+        item.remove("test2");
+        assertTrue("Changes to the original should not change the snapshot",
+            snapshot.toMap().equals(before) && snapshot.getVersion() == version);
+
+        snapshot.put("test3", "value3");
+        assertTrue("Changes to the snapshot should not change the original",
+            item.get("test3") == null && "updated".equals(item.get("test1")));
+    }
+
+    @Test
+    public void testToJson() {
+        KeeItem converted = new PersistentKeeItem(KeeItem.toKeeItem(item.toJSONString()).toMap());
+        assertTrue(converted.toMap().equals(item.toMap()));
+        assertTrue(converted.keys().equals(item.keys()));
+    }
+}
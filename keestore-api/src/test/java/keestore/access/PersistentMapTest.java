@@ -0,0 +1,82 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * <p>
+ * {@code PersistentMap} unit tests.
+ * </p>
+ * 
+ * @author thinh ho
+ *
+ */
+public class PersistentMapTest {
+
+    private static Map<String, String> toMap(PersistentMap<String, String> map) {
+        Map<String, String> copy = new HashMap<>();
+        map.forEach(copy::put);
+        return copy;
+    }
+
+    @Test
+    public void testSameAsHashMap() {
+        Random random = new Random(17);
+        Map<String, String> expected = new HashMap<>();
+        PersistentMap<String, String> map = PersistentMap.empty();
+        for (int i = 0; i < 20000; i++) {
+            String key = "key" + random.nextInt(2000);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.minus(key);
+            } else {
+                String value = "value" + i;
+                expected.put(key, value);
+                map = map.plus(key, value);
+            }
+            assertTrue(map.size() == expected.size());
+        }
+        assertTrue(toMap(map).equals(expected));
+        for (String key : expected.keySet()) {
+            assertTrue(expected.get(key).equals(map.get(key)) && map.containsKey(key));
+        }
+    }
+
+    @Test
+    public void testVersionsAreKept() {
+        PersistentMap<String, String> v1 = PersistentMap.<String, String> empty().plus("a", "1").plus("b", "2");
+        PersistentMap<String, String> v2 = v1.plus("a", "updated").minus("b").plus("c", "3");
+        assertTrue("1".equals(v1.get("a")) && "2".equals(v1.get("b")) && v1.get("c") == null && v1.size() == 2);
+        assertTrue("updated".equals(v2.get("a")) && v2.get("b") == null && "3".equals(v2.get("c")) && v2.size() == 2);
+        assertTrue("Unchanged maps should be returned as is", v1.plus("a", "1") == v1 && v1.minus("nothing") == v1);
+    }
+
+    @Test
+    public void testHashCollisions() {
+        // "Aa" and "BB" (and their concatenations) have the same hash code
+        String[] keys = { "AaAa", "AaBB", "BBAa", "BBBB" };
+        PersistentMap<String, String> map = PersistentMap.empty();
+        for (String key : keys) {
+            map = map.plus(key, key.toLowerCase());
+        }
+        map = map.plus("other", "value");
+        assertTrue(map.size() == keys.length + 1);
+        for (String key : keys) {
+            assertTrue(key.toLowerCase().equals(map.get(key)));
+        }
+        map = map.minus("AaBB").minus("BBBB");
+        assertTrue(map.size() == 3 && map.get("AaBB") == null && "bbaa".equals(map.get("BBAa")));
+        map = map.minus("AaAa").minus("BBAa").minus("other");
+        assertTrue(map.size() == 0 && toMap(map).isEmpty());
+    }
+}
@@ -0,0 +1,77 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * <p>
+ * {@code SearchIndex} unit tests.
+ * </p>
+ * 
+ * @author thinh ho
+ *
+ */
+public class SearchIndexTest {
+    private SearchIndex index;
+    private KeeItem mail;
+    private KeeItem bank;
+
+    @Before
+    public void init() {
+        index = new SearchIndex();
+        mail = new KeeItem("Personal Mail");
+        mail.put("password", "hunter2");
+        bank = new KeeItem("Bank");
+        bank.put("account number", "12345");
+        index.sync(Arrays.asList(mail, bank));
+    }
+
+    @Test
+    public void testSearch() {
+        assertTrue(index.search("mail", 10).equals(Arrays.asList(mail)));
+        assertTrue("Typo should still match", index.search("pasword", 10).equals(Arrays.asList(mail)));
+        assertTrue(index.search("acount", 10).equals(Arrays.asList(bank)));
+        assertTrue(index.search("BANK", 10).equals(Arrays.asList(bank)));
+        assertTrue("Values are not indexed by default", index.search("hunter2", 10).isEmpty());
+        assertTrue(index.search("zzz", 10).isEmpty() && index.search("", 10).isEmpty());
+        assertTrue(index.search("a", 0).isEmpty());
+    }
+
+    @Test
+    public void testValues() {
+        SearchIndex values = new SearchIndex(true);
+        values.add(mail);
+        assertTrue(values.search("hunter", 10).equals(Arrays.asList(mail)));
+    }
+
+    @Test
+    public void testRanking() {
+        KeeItem mailbox = new KeeItem("Mailbox archive");
+        index.add(mailbox);
+        assertTrue(index.search("mailbox", 10).get(0) == mailbox);
+        assertTrue(index.search("mail", 1).size() == 1);
+    }
+
+    @Test
+    public void testSync() {
+        mail.put("username", "thinh");
+        mail.remove("password");
+        KeeItem other = new KeeItem("Other");
+        index.sync(Arrays.asList(mail, other));
+        assertTrue(index.size() == 2 && index.search("bank", 10).isEmpty());
+        assertTrue(index.search("usrname", 10).equals(Arrays.asList(mail)) && index.search("password", 10).isEmpty());
+        assertTrue(index.search("other", 10).equals(Arrays.asList(other)));
+
+        index.clear();
+        assertTrue(index.size() == 0 && index.search("mail", 10).isEmpty());
+    }
+}
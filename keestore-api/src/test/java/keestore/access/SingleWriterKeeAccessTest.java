@@ -0,0 +1,190 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * <p>
+ * {@code SingleWriterKeeAccess} and {@code RingBuffer} unit tests.
+ * </p>
+ * 
+ * @author thinh ho
+ *
+ */
+public class SingleWriterKeeAccessTest {
+    private SingleWriterKeeAccess access;
+    private List<KeeEvent> events;
+    private KeeItem mail;
+    private KeeItem bank;
+
+    @Before
+    public void init() {
+        access = new SingleWriterKeeAccess(4);
+        events = Collections.synchronizedList(new ArrayList<>());
+        access.addKeeListener(events::add);
+        mail = new KeeItem("mail");
+        bank = new KeeItem("bank");
+    }
+
+    @After
+    public void close() {
+        access.close();
+    }
+
+    @Test
+    public void testRingBuffer() {
+        RingBuffer<String> ring = new RingBuffer<>(3);
+        assertTrue(ring.capacity() == 4 && ring.isEmpty() && ring.poll() == null);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer("e" + i));
+        }
+        assertTrue("Full", !ring.offer("e4"));
+        assertTrue("e0".equals(ring.poll()) && ring.offer("e4"));
+        for (int i = 1; i <= 4; i++) {
+            assertTrue(("e" + i).equals(ring.poll()));
+        }
+        assertTrue(ring.isEmpty());
+    }
+
+    @Test
+    public void testReadOwnWrites() {
+        access.addKee(mail);
+        assertTrue(access.getKee(mail.getId()) == mail && access.size() == 1);
+        access.updateKee(bank);
+        assertTrue(new HashSet<>(access.getAll()).equals(new HashSet<>(Arrays.asList(mail, bank))));
+        try {
+            access.addKee(mail);
+            assertTrue("Duplicate must fail", false);
+        } catch (IllegalArgumentException e) {
+        }
+        access.deleteKee(mail);
+        assertTrue(access.getKee(mail.getKeeId()) == null);
+        access.clear();
+        assertTrue(access.size() == 0 && access.getSequence() == 4);
+        assertTrue(events.size() == 4 && events.get(3).getType() == KeeEvent.Type.CLEARED);
+    }
+
+    @Test
+    public void testVersions() {
+        access.addKee(mail);
+        KeeId id = mail.getKeeId();
+        long version = access.getVersion(id);
+        Kee copy = mail.snapshot();
+        assertTrue(access.replaceIfVersion(id, version, copy) && access.getKee(id) == copy);
+        assertTrue(!access.replaceIfVersion(id, version, mail));
+        assertTrue(access.computeIfPresent(id, (k, v) -> null) == null && access.getKee(id) == null);
+    }
+
+    @Test
+    public void testSubmit() throws Exception {
+        access.addKee(mail);
+        CompletableFuture<Void> done = access.submit(Arrays.asList(KeeEvent.removed(this, mail),
+            KeeEvent.added(this, bank)));
+        done.get();
+        assertTrue(access.getAll().equals(Arrays.asList(bank)));
+        assertTrue(events.size() == 2 && events.get(1).getChanges().size() == 2);
+
+        try {
+            access.submit(Arrays.asList(KeeEvent.added(this, bank))).get();
+            assertTrue("Duplicate must fail", false);
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    @Test
+    public void testTotalOrder() throws Exception {
+        // many writers through a small buffer: every change is made once, and
+        // listeners see them in the order of the sequence
+        int threads = 8;
+        int perThread = 200;
+        List<Long> sequences = Collections.synchronizedList(new ArrayList<>());
+        access.addKeeListener(e -> sequences.add(access.getSequence()));
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread w = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    access.addKee(new KeeItem("kee"));
+                }
+            });
+            w.start();
+            writers.add(w);
+        }
+        for (Thread w : writers) {
+            w.join();
+        }
+        assertTrue(access.size() == threads * perThread && access.getSequence() == threads * perThread);
+        assertTrue(events.size() == threads * perThread);
+        for (int i = 1; i < sequences.size(); i++) {
+            assertTrue("Listeners see changes in order", sequences.get(i) >= sequences.get(i - 1));
+        }
+    }
+
+    @Test
+    public void testListenerWrites() {
+        // a listener on the writer thread can change the access
+        access.addKeeListener(e -> {
+            if (e.getType() == KeeEvent.Type.ADDED && e.getKee() == mail) {
+                access.addKee(bank);
+            }
+        });
+        access.addKee(mail);
+        assertTrue(access.size() == 2 && access.getKee(bank.getKeeId()) == bank);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testClosed() {
+        access.addKee(mail);
+        access.close();
+        assertTrue("Readable after close", access.getKee(mail.getKeeId()) == mail);
+        access.addKee(bank);
+    }
+
+    @Test
+    public void testCloseWhileSending() throws Exception {
+        List<KeeItem> added = Collections.synchronizedList(new ArrayList<>());
+        List<KeeItem> refused = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> senders = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread sender = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    KeeItem item = new KeeItem("item" + i);
+                    try {
+                        access.addKee(item);
+                        added.add(item);
+                    } catch (IllegalStateException e) {
+                        refused.add(item);
+                    }
+                }
+            });
+            senders.add(sender);
+            sender.start();
+        }
+        Thread.sleep(5);
+        access.close();
+        for (Thread sender : senders) {
+            sender.join();
+        }
+        assertTrue(added.size() + refused.size() == 4000);
+        assertTrue("Every change that was sent is made", access.size() == added.size());
+        for (KeeItem item : refused) {
+            assertTrue("A refused change is not made", access.getKee(item.getKeeId()) == null);
+        }
+    }
+}
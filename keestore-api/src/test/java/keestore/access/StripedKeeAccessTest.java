@@ -0,0 +1,137 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * <p>
+ * {@code StripedKeeAccess} unit tests.
+ * </p>
+ * 
+ * @author thinh ho
+ *
+ */
+public class StripedKeeAccessTest {
+    private StripedKeeAccess access;
+    private List<KeeEvent> events;
+    private KeeItem mail;
+    private KeeItem bank;
+
+    @Before
+    public void init() {
+        access = new StripedKeeAccess(4);
+        events = new ArrayList<>();
+        access.addKeeListener(events::add);
+        mail = new KeeItem("mail");
+        bank = new KeeItem("bank");
+    }
+
+    @Test
+    public void testAccess() {
+        access.addKee(mail);
+        access.addKee(bank);
+        assertTrue(access.getKee(mail.getId()) == mail && access.getKee(bank.getKeeId()) == bank);
+        assertTrue(access.size() == 2 && new HashSet<>(access.getAll()).equals(new HashSet<>(Arrays.asList(mail, bank))));
+        try {
+            access.addKee(mail);
+            assertTrue("Duplicate must fail", false);
+        } catch (IllegalArgumentException e) {
+        }
+
+        access.deleteKee(mail);
+        assertTrue(access.getKee(mail.getKeeId()) == null && access.size() == 1);
+        access.clear();
+        assertTrue(access.size() == 0);
+        assertTrue(events.size() == 4 && events.get(2).getType() == KeeEvent.Type.REMOVED
+            && events.get(3).getType() == KeeEvent.Type.CLEARED);
+    }
+
+    @Test
+    public void testVersions() {
+        access.addKee(mail);
+        KeeId id = mail.getKeeId();
+        long version = access.getVersion(id);
+        assertTrue(version != KeeAccess.NO_VERSION);
+        Kee copy = mail.snapshot();
+        assertTrue(access.replaceIfVersion(id, version, copy) && access.getKee(id) == copy);
+        assertTrue(!access.replaceIfVersion(id, version, mail));
+        assertTrue(access.getVersion(id) > version);
+        assertTrue(access.computeIfPresent(id, (k, v) -> null) == null && access.getKee(id) == null);
+        assertTrue(access.replaceIfVersion(id, KeeAccess.NO_VERSION, mail) && access.getKee(id) == mail);
+    }
+
+    @Test
+    public void testBatch() {
+        access.addKee(mail);
+        events.clear();
+        try {
+            access.addAll(Arrays.asList(bank, mail));
+            assertTrue("Duplicate must fail", false);
+        } catch (IllegalArgumentException e) {
+        }
+        assertTrue("Nothing was added", access.size() == 1 && events.isEmpty());
+
+        try (KeeTransaction tx = access.begin()) {
+            tx.delete(mail).add(bank).commit();
+        }
+        assertTrue(access.getAll().equals(Arrays.asList(bank)));
+        assertTrue(events.size() == 1 && events.get(0).getChanges().size() == 2);
+    }
+
+    @Test
+    public void testConsistentSnapshot() throws Exception {
+        // writers always move a model between two identifiers in one batch, so
+        // a consistent read always sees the same number of models
+        int pairs = 32;
+        List<KeeItem> first = new ArrayList<>();
+        List<KeeItem> second = new ArrayList<>();
+        for (int i = 0; i < pairs; i++) {
+            first.add(new KeeItem("first" + i));
+            second.add(new KeeItem("second" + i));
+        }
+        access.addAll(first);
+        CountDownLatch done = new CountDownLatch(2);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 2; t++) {
+            Thread writer = new Thread(() -> {
+                for (int n = 0; n < 200; n++) {
+                    for (int i = 0; i < pairs; i++) {
+                        KeeItem from = first.get(i);
+                        KeeItem to = second.get(i);
+                        if (access.getKee(from.getKeeId()) == null) {
+                            from = to;
+                            to = first.get(i);
+                        }
+                        try {
+                            access.applyAll(Arrays.asList(KeeEvent.removed(this, from), KeeEvent.added(this, to)));
+                        } catch (IllegalArgumentException e) {
+                            // the other writer moved it first
+                        }
+                    }
+                }
+                done.countDown();
+            });
+            writer.start();
+            threads.add(writer);
+        }
+        while (done.getCount() > 0) {
+            assertTrue(access.getAll().size() == pairs && access.size() == pairs);
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.access;
+
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * <p>
+ * {@code ValueArena} unit tests.
+ * </p>
+ * 
+ * @author thinh ho
+ *
+ */
+public class ValueArenaTest {
+    private ValueArena arena;
+
+    @Before
+    public void init() {
+        arena = new ValueArena(256);
+    }
+
+    @After
+    public void close() {
+        arena.close();
+    }
+
+    @Test
+    public void testAllocateAndRead() {
+        long a = arena.allocate(bytes("secret"));
+        long b = arena.allocate(new byte[0]);
+        long c = arena.allocate(bytes("a somewhat longer secret value"));
+        assertTrue("secret".equals(text(arena.read(a))));
+        assertTrue(arena.read(b).length == 0);
+        assertTrue("a somewhat longer secret value".equals(text(arena.read(c))));
+        assertTrue(arena.getAllocated() == 16 + 16 + 64 && arena.getReserved() == 256);
+    }
+
+    @Test
+    public void testRange() {
+        byte[] value = bytes("not a secret");
+        long a = arena.allocate(value, 4, 8);
+        assertTrue(arena.length(a) == 8 && arena.sizeOf(a) == 16);
+        byte[] target = new byte[10];
+        arena.read(a, target, 1);
+        assertTrue("secret".equals(text(arena.read(a)).substring(2)) && target[0] == 0);
+        assertTrue("a secret".equals(new String(target, 1, 8, StandardCharsets.UTF_8)) && target[9] == 0);
+        try {
+            arena.read(a, target, 3);
+            assertTrue("Value should not fit", false);
+        } catch (IndexOutOfBoundsException e) {
+            assertTrue(arena.getAllocated() == 16);
+        }
+    }
+
+    @Test
+    public void testFreeReusesBlock() {
+        long a = arena.allocate(bytes("first"));
+        arena.allocate(bytes("second"));
+        arena.free(a);
+        assertTrue(arena.getAllocated() == 16);
+        long b = arena.allocate(bytes("third"));
+        assertTrue("Freed block should be reused", a == b && "third".equals(text(arena.read(b))));
+        assertTrue(arena.getReserved() == 256);
+    }
+
+    @Test
+    public void testSlabs() {
+        for (int i = 0; i < 40; i++) {
+            arena.allocate(bytes("value" + i));
+        }
+        assertTrue(arena.getReserved() == 256 * 3);
+
+        byte[] large = new byte[1000];
+        Arrays.fill(large, (byte) 7);
+        long handle = arena.allocate(large);
+        assertTrue(Arrays.equals(large, arena.read(handle)) && arena.getReserved() == 256 * 3 + 1024);
+        arena.free(handle);
+        assertTrue("Large value should release its own slab", arena.getReserved() == 256 * 3);
+    }
+
+    @Test
+    public void testCopy() {
+        long a = arena.allocate(bytes("secret"));
+        long b = arena.copy(a);
+        arena.free(a);
+        assertTrue(a != b && "secret".equals(text(arena.read(b))) && arena.getAllocated() == 16);
+    }
+
+    @Test
+    public void testRetain() {
+        long a = arena.allocate(bytes("secret"));
+        assertTrue(arena.retain(a) == a && arena.getAllocated() == 16);
+        arena.free(a);
+        assertTrue("Shared value should stay", "secret".equals(text(arena.read(a))));
+        arena.free(a);
+        assertTrue(arena.getAllocated() == 0);
+        long b = arena.allocate(bytes("other"));
+        arena.free(b);
+        assertTrue("Reused block should hold one holder", a == b && arena.getAllocated() == 0);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testClosed() {
+        long a = arena.allocate(bytes("secret"));
+        arena.close();
+        assertTrue(arena.getAllocated() == 0 && arena.getReserved() == 0);
+        arena.read(a);
+    }
+
+    @Test
+    public void testRegister() {
+        long a = arena.allocate(bytes("secret"));
+        Runnable release = arena.register(new Object(), () -> arena.free(a));
+        release.run();
+        release.run();
+        assertTrue("Cleanup should run once", arena.getAllocated() == 0);
+    }
+
+    @Test
+    public void testCollected() throws InterruptedException {
+        long a = arena.allocate(bytes("secret"));
+        boolean[] unlocked = new boolean[1];
+        arena.register(new Object(), () -> {
+            unlocked[0] = !Thread.holdsLock(arena);
+            arena.free(a);
+        });
+        for (int i = 0; i < 50 && arena.getAllocated() != 0; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertTrue("Reading the usage should clean up", arena.getAllocated() == 0);
+        assertTrue("Cleanup should run outside of the arena's lock", unlocked[0]);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(byte[] value) {
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
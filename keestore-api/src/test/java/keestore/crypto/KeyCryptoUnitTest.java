@@ -7,16 +7,19 @@ package keestore.crypto;
 
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
 import java.io.UnsupportedEncodingException;
 import java.security.KeyFactory;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.SecureRandom;
+import java.security.Signature;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.KeySpec;
 import java.security.spec.PKCS8EncodedKeySpec;
 import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
 
 import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
@@ -192,6 +195,41 @@ public abstract class KeyCryptoUnitTest {
         assertTrue("Decrypted message does not match original message", new String(decrypted, charset).equals(message));
     }
 
+    @Test
+    public void testCryptoEngineEncryptCipherChunks() throws Exception {
+        StringBuilder buffer = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            buffer.append(message);
+        }
+        byte[] payload = buffer.toString().getBytes(charset);
+
+        // encrypt in uneven chunks, IV first
+        Cipher cipher = crypto.encryptCipher(cryptoContext.getSecretKey());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(cipher.getIV());
+        for (int offset = 0; offset < payload.length; offset += 7) {
+            byte[] chunk = cipher.update(payload, offset, Math.min(7, payload.length - offset));
+            if (chunk != null) {
+                out.write(chunk);
+            }
+        }
+        out.write(cipher.doFinal());
+
+        byte[] decrypted = crypto.decrypt(cryptoContext.getSecretKey(), out.toByteArray());
+        assertTrue("Decrypted chunks do not match original message", Arrays.equals(payload, decrypted));
+    }
+
+    @Test
+    public void testIncrementalSignature() throws Exception {
+        String payload = message + message;
+        Signature signature = cryptoContext.initSign("SHA256withRSA");
+        signature.update(message.getBytes());
+        signature.update(message.getBytes());
+        String signed = Crypto.encode(signature.sign()).get();
+        assertTrue("Incremental signature does not verify against the whole payload",
+                cryptoContext.verify(payload, signed));
+    }
+
     @Test(expected = ExpectedCryptoException.class)
     public void testCryptoEngineInvalidKeyDecrypt() throws CryptoException, UnsupportedEncodingException {
         byte[] encrypted = crypto.encrypt(cryptoContext.getSecretKey(), message.getBytes(charset));
@@ -0,0 +1,67 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.crypto;
+
+import static org.junit.Assert.assertTrue;
+
+import java.security.KeyPair;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * KeyPairPool unit tests.
+ * 
+ * @author thinh ho
+ *
+ */
+public class KeyPairPoolTest {
+    private KeyPairPool pool;
+
+    @Before
+    public void setup() throws Exception {
+        pool = new KeyPairPool("RSA", 512, 2);
+    }
+
+    @After
+    public void teardown() throws Exception {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testTakeUnique() throws Exception {
+        // take more than the capacity, whatever is not ready is generated inline
+        Set<String> publicKeys = new HashSet<>();
+        for (int i = 0; i < 5; i++) {
+            KeyPair keyPair = pool.take();
+            assertTrue("Key pair should be RSA", "RSA".equals(keyPair.getPublic().getAlgorithm()));
+            assertTrue("Key pairs should not be handed out twice",
+                publicKeys.add(Crypto.encode(keyPair.getPublic().getEncoded()).get()));
+        }
+    }
+
+    @Test
+    public void testCreateCrypto() throws Exception {
+        CryptoEngine engine = new KeyCrypto(new AesCryptoEngine());
+        Crypto crypto = pool.createCrypto(engine, "password");
+        byte[] secret = engine.generateKey("password");
+        assertTrue("Secret key should be generated from the secret",
+            Arrays.equals(secret, crypto.getSecretKey()));
+
+        byte[] encrypted = engine.encrypt(crypto.getKeyPair().getPublic(), secret);
+        assertTrue("Pooled key pair should decrypt what it encrypted",
+            Arrays.equals(secret, engine.decrypt(crypto.getKeyPair().getPrivate(), encrypted)));
+    }
+
+    @Test(expected = CryptoException.class)
+    public void testUnknownAlgorithm() throws Exception {
+        new KeyPairPool("Unknown", 512, 1);
+    }
+}
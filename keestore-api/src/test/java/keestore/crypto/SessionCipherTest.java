@@ -0,0 +1,70 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.crypto;
+
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * <p>
+ * {@code SessionCipher} unit tests.
+ * </p>
+ * 
+ * @author thinh ho
+ *
+ */
+public class SessionCipherTest {
+    private static final byte[] message = "{\"password\":\"secret\"}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] id = "vault-1".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void testSealOpen() {
+        try (SessionCipher cipher = new SessionCipher()) {
+            byte[] sealed = cipher.seal(message, id);
+            assertTrue(Arrays.equals(message, cipher.open(sealed, id)));
+            assertTrue("Nonces are not reused", !Arrays.equals(sealed, cipher.seal(message, id)));
+        }
+    }
+
+    @Test
+    public void testTampered() {
+        try (SessionCipher cipher = new SessionCipher()) {
+            byte[] sealed = cipher.seal(message, id);
+            try {
+                cipher.open(sealed, "vault-2".getBytes(StandardCharsets.UTF_8));
+                assertTrue("Other associated data must fail", false);
+            } catch (CryptoException e) {
+            }
+            sealed[sealed.length - 1] ^= 1;
+            try {
+                cipher.open(sealed, id);
+                assertTrue("Changed value must fail", false);
+            } catch (CryptoException e) {
+            }
+        }
+    }
+
+    @Test
+    public void testClosed() {
+        SessionCipher cipher = new SessionCipher();
+        byte[] sealed = cipher.seal(message, id);
+        cipher.close();
+        try {
+            cipher.open(sealed, id);
+            assertTrue("Closed cipher must fail", false);
+        } catch (CryptoException e) {
+        }
+        try (SessionCipher other = new SessionCipher()) {
+            other.open(sealed, id);
+            assertTrue("Other session must fail", false);
+        } catch (CryptoException e) {
+        }
+    }
+}
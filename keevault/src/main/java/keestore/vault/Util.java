@@ -10,6 +10,9 @@ import java.awt.Font;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.net.URL;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Supplier;
 
 import javax.swing.ImageIcon;
 import javax.swing.JMenu;
@@ -39,6 +42,38 @@ public class Util {
         }
     }
     
+    /***
+     * Helper that executes the specified function within the Event Queue
+     * thread and waits for its result. The caller must not hold a lock that
+     * the Event Queue thread may wait on.
+     * 
+     * @param s
+     * @return
+     */
+    public static <T> T waitForEventQueue(Supplier<T> s) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            return s.get();
+        }
+        FutureTask<T> task = new FutureTask<>(s::get);
+        SwingUtilities.invokeLater(task);
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            // not run at all if it has not started yet
+            task.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for the Event Queue thread", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+    
     public static ImageIcon getIcon() {
         URL iconURL = Util.class.getResource("/keestore/vault/img/laptop.icns");
         ImageIcon icon = new ImageIcon(iconURL);
@@ -26,4 +26,11 @@ public interface VaultEditor {
      * @return
      */
     String getVaultName();
+    /**
+     * Save the edits, made to a copy of the original vault.
+     * 
+     * @param edited
+     * @return false if nothing was saved (i.e. the vault changed meanwhile).
+     */
+    boolean save(Kee edited);
 };
@@ -0,0 +1,160 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.vault;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>
+ * Runs the independent phases of application startup (i.e. registration and
+ * key parsing, vault read and decrypt) concurrently with each other and with
+ * the UI construction, and records how long each phase took. Once the table
+ * is filled in, {@link #complete()} logs all phase timings.
+ * </p>
+ *
+ * @author thinh ho
+ *
+ */
+public class VaultStartup {
+    private static final Logger logger = Logger.getLogger(VaultStartup.class);
+
+    private final long started = System.nanoTime();
+    private final Map<String, Long> timings = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final AtomicInteger threads = new AtomicInteger();
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "startup-" + threads.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * <p>
+     * Run the phase in the background.
+     * </p>
+     *
+     * @param name
+     * @param phase
+     * @return
+     */
+    public <T> CompletableFuture<T> phase(String name, Supplier<T> phase) {
+        return CompletableFuture.supplyAsync(() -> timed(name, phase), executor);
+    }
+
+    /**
+     * <p>
+     * Run the phase in the background once the specified phase completes.
+     * </p>
+     *
+     * @param after
+     * @param name
+     * @param phase
+     * @return
+     */
+    public <U, T> CompletableFuture<T> phase(CompletableFuture<U> after, String name,
+        Function<U, T> phase)
+    {
+        return after.thenApplyAsync(u -> timed(name, () -> phase.apply(u)), executor);
+    }
+
+    /**
+     * <p>
+     * Run the phase in the background once both of the specified phases complete.
+     * </p>
+     *
+     * @param first
+     * @param second
+     * @param name
+     * @param phase
+     * @return
+     */
+    public <U, V, T> CompletableFuture<T> phase(CompletableFuture<U> first, CompletableFuture<V> second,
+        String name, BiFunction<U, V, T> phase)
+    {
+        return first.thenCombineAsync(second, (u, v) -> timed(name, () -> phase.apply(u, v)), executor);
+    }
+
+    /**
+     * <p>
+     * Run the phase in the current thread.
+     * </p>
+     *
+     * @param name
+     * @param phase
+     * @return
+     */
+    public <T> T timed(String name, Supplier<T> phase) {
+        long start = System.nanoTime();
+        try {
+            return phase.get();
+        } finally {
+            record(name, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * <p>
+     * Run the phase in the current thread.
+     * </p>
+     *
+     * @param name
+     * @param phase
+     */
+    public void timed(String name, Runnable phase) {
+        timed(name, () -> {
+            phase.run();
+            return null;
+        });
+    }
+
+    /**
+     * <p>
+     * Record a phase that was timed elsewhere.
+     * </p>
+     *
+     * @param name
+     * @param nanos
+     */
+    public void record(String name, long nanos) {
+        timings.put(name, TimeUnit.NANOSECONDS.toMillis(nanos));
+        logger.debug("Startup phase '" + name + "' took " + TimeUnit.NANOSECONDS.toMillis(nanos) + " ms");
+    }
+
+    /**
+     * <p>
+     * Phase timings, in milliseconds, in the order that phases completed.
+     * </p>
+     *
+     * @return
+     */
+    public Map<String, Long> getTimings() {
+        synchronized(timings) {
+            return new LinkedHashMap<>(timings);
+        }
+    }
+
+    /**
+     * <p>
+     * Startup is done; log all phase timings and release the background threads.
+     * </p>
+     */
+    public void complete() {
+        record("total", System.nanoTime() - started);
+        logger.info("Startup timings (ms): " + getTimings());
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,171 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.vault.controller;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import keestore.access.Kee;
+
+/**
+ * <p>
+ * Keeps track of the {@code Kee} models as they were last persisted so that an
+ * unchanged store is never re-encrypted. Each model is remembered by its
+ * identifier, instance and version, along with a digest of its content so
+ * that a model that may have changed can be compared with what was persisted
+ * without keeping a copy of its values.
+ * </p>
+ * <p>
+ * The version of a model only counts the changes to that instance; a model
+ * replaced by another instance (i.e. an edited copy, or another snapshot) is
+ * compared by its digest, whatever its version.
+ * </p>
+ * <p>
+ * A save looks at each model once: {@link #changes(List)} digests only the
+ * models that may have changed, and {@link #saved(Changes)} remembers those
+ * same digests once they are persisted.
+ * </p>
+ *
+ * @author thinh ho
+ *
+ */
+public class ChangeTracker {
+    private static class Saved {
+        // not kept alive, a snapshot that was collected is compared by digest
+        private final Reference<Kee> instance;
+        private final long version;
+        private final byte[] content;
+
+        private Saved(Kee instance, byte[] content) {
+            this.instance = new WeakReference<>(instance);
+            this.version = instance.getVersion();
+            this.content = content;
+        }
+
+        private boolean isSame(Kee k) {
+            return instance.get() == k && version == k.getVersion();
+        }
+    }
+
+    /**
+     * The models to persist along with the digest of each one, and whether
+     * they differ from the last persisted state.
+     */
+    public static final class Changes {
+        private final List<Kee> models;
+        private final Map<String, byte[]> digests;
+        private final boolean changed;
+
+        private Changes(List<Kee> models, Map<String, byte[]> digests, boolean changed) {
+            this.models = models;
+            this.digests = digests;
+            this.changed = changed;
+        }
+
+        public List<Kee> getModels() {
+            return models;
+        }
+
+        /**
+         * @return true if the models are the same as what was last persisted.
+         */
+        public boolean isEmpty() {
+            return !changed;
+        }
+    }
+
+    private final Map<String, Saved> saved = new HashMap<>();
+
+    /**
+     * <p>
+     * Remember the specified models as the persisted state (i.e. right after
+     * loading from file).
+     * </p>
+     *
+     * @param models
+     */
+    public synchronized void reset(List<? extends Kee> models) {
+        saved.clear();
+        models.forEach(k -> saved.put(k.getId(), new Saved(k, digest(k))));
+    }
+
+    /**
+     * <p>
+     * Compare the specified models with the last persisted state. A model that
+     * is another instance, or whose version moved, but whose content is the
+     * same as what was persisted (i.e. saving a vault without edits) is not a
+     * change. Only those models are digested, once.
+     * </p>
+     *
+     * @param models
+     * @return
+     */
+    public synchronized Changes changes(List<Kee> models) {
+        Map<String, byte[]> digests = new HashMap<>();
+        boolean changed = models.size() != saved.size();
+        for (Kee k : models) {
+            Saved s = saved.get(k.getId());
+            if (s != null && s.isSame(k)) {
+                digests.put(k.getId(), s.content);
+                continue;
+            }
+            byte[] content = digest(k);
+            digests.put(k.getId(), content);
+            if (s == null || !Arrays.equals(s.content, content)) {
+                changed = true;
+            } else {
+                saved.put(k.getId(), new Saved(k, s.content));
+            }
+        }
+        return new Changes(models, digests, changed);
+    }
+
+    /**
+     * <p>
+     * The models (snapshots) of the specified changes have been persisted.
+     * </p>
+     *
+     * @param changes
+     */
+    public synchronized void saved(Changes changes) {
+        saved.clear();
+        changes.models.forEach(k -> saved.put(k.getId(), new Saved(k, changes.digests.get(k.getId()))));
+    }
+
+    /**
+     * A digest of all keys and values of the model, in key order.
+     */
+    private static byte[] digest(Kee k) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        new TreeMap<>(k.toMap()).forEach((key, value) -> {
+            update(digest, key);
+            update(digest, String.valueOf(value));
+        });
+        return digest.digest();
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        // length first so that no two different maps digest the same bytes
+        digest.update(new byte[] { (byte) (bytes.length >>> 24), (byte) (bytes.length >>> 16),
+            (byte) (bytes.length >>> 8), (byte) bytes.length });
+        digest.update(bytes);
+        Arrays.fill(bytes, (byte) 0);
+    }
+}
@@ -6,16 +6,24 @@
 package keestore.vault.controller;
 
 import java.awt.event.ActionListener;
-import java.awt.event.WindowAdapter;
-import java.awt.event.WindowEvent;
 import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 
 import javax.swing.JFrame;
+import javax.swing.JOptionPane;
 
+import org.apache.log4j.Logger;
 import org.springframework.util.Assert;
 
+import keestore.access.IndexedKeeAccess;
 import keestore.access.Kee;
 import keestore.access.KeeAccess;
+import keestore.access.KeeEvent;
+import keestore.access.KeeId;
+import keestore.access.KeeIndex;
+import keestore.access.KeeQuery;
+import keestore.access.KeeTransaction;
 import keestore.vault.Util;
 import keestore.vault.VaultEditor;
 import keestore.vault.model.Vault;
@@ -28,7 +36,9 @@ import keestore.vault.ui.table.KeeTable;
  * @author thinh ho
  *
  */
-public class VaultController implements KeeAccess {
+public class VaultController implements KeeAccess, KeeIndex {
+    private static final Logger logger = Logger.getLogger(VaultController.class);
+
     private final KeeAccess access;
 
     /**
@@ -57,11 +67,55 @@ public class VaultController implements KeeAccess {
     public void deleteKee(Kee item) {
         access.deleteKee(item);
     }
+
+    @Override
+    public void deleteKee(KeeId id) {
+        access.deleteKee(id);
+    }
+
+    @Override
+    public void updateKee(Kee item) {
+        if (item != null) {
+            access.updateKee(item);
+        }
+    }
     
     @Override
     public Kee getKee(String id) {
         return access.getKee(id);
     }
+
+    @Override
+    public Kee getKee(KeeId id) {
+        return access.getKee(id);
+    }
+    
+    @Override
+    public List<Kee> findByName(String name) {
+        return index().findByName(name);
+    }
+
+    @Override
+    public List<Kee> findByKey(String key) {
+        return index().findByKey(key);
+    }
+
+    @Override
+    public List<Kee> findByValue(String value) {
+        return index().findByValue(value);
+    }
+    
+    @Override
+    public List<Kee> find(KeeQuery query) {
+        return index().find(query);
+    }
+    
+    private KeeIndex index() {
+        if(!(access instanceof KeeIndex)) {
+            throw new UnsupportedOperationException("Underlying access is not indexed");
+        }
+        return (KeeIndex) access;
+    }
     
     /**
      * Create the appropriate vault in the underlying model.
@@ -74,16 +128,30 @@ public class VaultController implements KeeAccess {
     }
     
     /**
-     * Saving the vault captured from the viewer - performs a delete/add from the
-     * specified table.
+     * Saving the vault captured from the viewer - replaces the vault in the
+     * specified table with the edited copy, unless it was changed or deleted
+     * since the viewer was opened (or last saved). A copy that is not saved
+     * is wiped.
      * 
-     * @param viewer the form.
+     * @param edited the edited copy of the vault.
      * @param table the table that also needs to be updated.
+     * @param expectedVersion the version of the vault in the table when the
+     *        viewer was opened or last saved.
+     * @return false if the vault is stale and nothing was saved.
      */
-    public static void saveKee(VaultEditor viewer, KeeTable table) {
-        Kee updated = viewer.getOriginalVault();
-        table.deleteKee(updated.getId());
-        table.addKee(updated);
+    public static boolean saveKee(Kee edited, KeeTable table, long expectedVersion) {
+        boolean saved = table.replaceIfVersion(edited.getKeeId(), expectedVersion, edited);
+        if(!saved) {
+            logger.warn("Vault " + edited.getId() + " changed since it was opened, not saved");
+            if(edited instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) edited).close();
+                } catch (Exception e) {
+                    logger.warn("Cannot wipe vault " + edited.getId(), e);
+                }
+            }
+        }
+        return saved;
     }
     
     /**
@@ -97,14 +165,18 @@ public class VaultController implements KeeAccess {
         Util.withEventQueue(() -> {
             if(table.getSelectedKee() != null) {
                 Kee item = table.getSelectedKee();
+                // the version each save expects, moved by each save
+                long[] version = { table.getVersion(item.getKeeId()) };
                 VaultEditDialog view = new VaultEditDialog(parent, "Vault: " + item.getName(), item, this);
-                view.addWindowListener(new WindowAdapter() {
-                    @Override
-                    public void windowClosing(WindowEvent e) {
-                        if (e.getSource() instanceof VaultEditor) {
-                            saveKee((VaultEditor)e.getSource(), table);
-                        }
+                view.withSaver(edited -> {
+                    if(!saveKee(edited, table, version[0])) {
+                        JOptionPane.showMessageDialog(view, 
+                            "Vault was changed or deleted while editing, edits not saved", "Error",
+                            JOptionPane.ERROR_MESSAGE);
+                        return false;
                     }
+                    version[0] = table.getVersion(edited.getKeeId());
+                    return true;
                 });
                 view.setVisible(true);
             }
@@ -125,26 +197,77 @@ public class VaultController implements KeeAccess {
         return e -> {
             switch(e.getActionCommand()) {
             case "Save":
-                Kee original = vaultViewer.getOriginalVault();
-                original.clear();
-                original.setName(vaultViewer.getVaultName());
+                // edit a copy, the vault in the table is only replaced if it
+                // did not change meanwhile
+                Kee edited = vaultViewer.getOriginalVault().toKee();
+                edited.clear();
+                edited.setName(vaultViewer.getVaultName());
                 itemController.getVaultItems().forEach(i -> {
-                    original.put(i.getKey(), i.getValue());
+                    edited.put(i.getKey(), i.getValue());
                 });
+                vaultViewer.save(edited);
                 break;
             }
         };
     }
 
+    @Override
+    public void applyAll(List<KeeEvent> changes) {
+        access.applyAll(changes);
+    }
+
+    @Override
+    public long getVersion(KeeId id) {
+        return access.getVersion(id);
+    }
+
+    @Override
+    public boolean replaceIfVersion(KeeId id, long expectedVersion, Kee item) {
+        return access.replaceIfVersion(id, expectedVersion, item);
+    }
+
+    @Override
+    public Kee computeIfPresent(KeeId id, BiFunction<KeeId, ? super Kee, ? extends Kee> remapping) {
+        return access.computeIfPresent(id, remapping);
+    }
+
     @Override
     public void clear() {
         access.clear();
     }
+
+    @Override
+    public void addKeeListener(Consumer<KeeEvent> listener) {
+        access.addKeeListener(listener);
+    }
+
+    @Override
+    public void removeKeeListener(Consumer<KeeEvent> listener) {
+        access.removeKeeListener(listener);
+    }
+    
+    /**
+     * <p>
+     * Mirror a change made to another {@code KeeAccess} (i.e. the table) in the
+     * underlying model, at the cost of that one change.
+     * </p>
+     * 
+     * @param event
+     */
+    public void apply(KeeEvent event) {
+        event.applyTo(this);
+    }
     
     public void updateAll(List<Kee> all) {
         if(all != null && all.size() > 0) {
-            clear();
-            all.forEach(a -> access.addKee(a));
+            if(access instanceof IndexedKeeAccess) {
+                // only reindex what changed
+                ((IndexedKeeAccess) access).sync(all);
+                return;
+            }
+            try(KeeTransaction tx = access.begin()) {
+                tx.clear().addAll(all).commit();
+            }
         }
     }
 
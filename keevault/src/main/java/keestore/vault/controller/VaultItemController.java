@@ -19,7 +19,7 @@ import java.util.function.Supplier;
 import javax.swing.event.TableModelEvent;
 import javax.swing.event.TableModelListener;
 
-import keestore.crypto.Crypto;
+import keestore.access.KeeItem;
 import keestore.vault.Util;
 import keestore.vault.VaultItemEditor;
 import keestore.vault.model.VaultItem;
@@ -48,7 +48,8 @@ public class VaultItemController {
     
     /**
      * This controller can be attached as a table model listener so that it will
-     * synchronizes its data with the table model on updates.
+     * make the same row changes to its data as the table model; only a change
+     * to all rows reloads all items.
      * 
      * @return
      */
@@ -58,13 +59,27 @@ public class VaultItemController {
                 VaultItemTableModel sourceModel = (VaultItemTableModel)e.getSource();
                 switch(e.getType()) {
                 case TableModelEvent.INSERT:
+                    for(int i = e.getFirstRow(); i <= e.getLastRow(); i++) {
+                        items.add(i, sourceModel.getItem(i));
+                    }
                     break;
                 case TableModelEvent.DELETE:
+                    for(int i = e.getLastRow(); i >= e.getFirstRow(); i--) {
+                        items.remove(i);
+                    }
                     break;
                 case TableModelEvent.UPDATE:
-                    // clear and add-all
-                    items.clear();
-                    items.addAll(sourceModel.getAll());
+                    if(e.getFirstRow() == TableModelEvent.HEADER_ROW 
+                        || e.getLastRow() == Integer.MAX_VALUE) 
+                    {
+                        // clear and add-all
+                        items.clear();
+                        items.addAll(sourceModel.getAll());
+                    } else {
+                        for(int i = e.getFirstRow(); i <= e.getLastRow(); i++) {
+                            items.set(i, sourceModel.getItem(i));
+                        }
+                    }
                     break;
                 }
             }
@@ -175,7 +190,8 @@ public class VaultItemController {
     }
     
     /**
-     * Validation rules when adding/editing an item.
+     * Validation rules when adding/editing an item. The keys of the vault's
+     * identifier and name are reserved.
      * 
      * @param editor
      * @return
@@ -188,11 +204,14 @@ public class VaultItemController {
             {
                 return "Item must contain non-null key and value";
             }
+            // the vault's own identifier and name are kept under these keys
+            if(KeeItem.ITEMNAME_ID.equals(item.getKey()) || KeeItem.ITEMNAME_KEY.equals(item.getKey())) {
+                return "Cannot add/update " + item.getKey() + ", reserved key";
+            }
             if((editor.getOriginalItem() == null || !editor.getOriginalItem().getKey().equals(item.getKey())) 
                 && isDuplicateItem().test(item)) 
             {
-                String key = new String(Crypto.decode(item.getKey()).get());
-                return "Cannot add/update " + key +", duplicate key";
+                return "Cannot add/update " + item.getKey() +", duplicate key";
             }
             return "";
         };
@@ -0,0 +1,182 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.vault.controller;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import javax.swing.Timer;
+
+import org.apache.log4j.Logger;
+
+import keestore.access.KeeSnapshot;
+import keestore.vault.Util;
+
+/**
+ * <p>
+ * Saves (encrypts) the vaults in a table on a background thread so that the
+ * Event Queue thread is never blocked by serialize, sign, encrypt, and write.
+ * The table is pinned (see {@link VaultTableController#openSnapshot()}) within
+ * the Event Queue thread, without copying it, and the remaining work is done
+ * on a single worker thread, in order.
+ * </p>
+ * <p>
+ * Edits are coalesced: each call to {@link #scheduleSave()} restarts a timer
+ * and only one save happens once the edits stop for the configured delay. Save
+ * progress is reported as status messages within the Event Queue thread.
+ * </p>
+ * <p>
+ * Nothing is saved until the table is {@link #ready()} (i.e. fully loaded) so
+ * that a partially loaded table never replaces the datastore. Saves can also
+ * wait on a prerequisite (i.e. the keys are still being generated); they are 
+ * queued, in order, until it completes. A save with no changes does not wait,
+ * and if the prerequisite fails the queued saves fail with it.
+ * </p>
+ *
+ * @author thinh ho
+ *
+ */
+public class VaultSaveService {
+    private static final Logger logger = Logger.getLogger(VaultSaveService.class);
+    private static final String defaultDateTimeFormat = "HH:mm:ss";
+
+    private final VaultTableController controller;
+    private final Timer debounce;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "vaultSave");
+        t.setDaemon(true);
+        return t;
+    });
+    private Consumer<String> status = s -> {};
+    private volatile boolean ready = false;
+    private volatile CompletableFuture<?> prerequisite = CompletableFuture.completedFuture(null);
+
+    /**
+     * Must instantiate with the controller that encrypts the table it controls.
+     *
+     * @param controller
+     * @param delayMillis the quiet period after the last edit before saving.
+     */
+    public VaultSaveService(VaultTableController controller, int delayMillis) {
+        this.controller = controller;
+        this.debounce = new Timer(delayMillis, e -> saveNow());
+        this.debounce.setRepeats(false);
+    }
+
+    /**
+     * <p>
+     * Receive save progress/completion messages within the Event Queue thread.
+     * </p>
+     *
+     * @param status
+     */
+    public void withStatus(Consumer<String> status) {
+        this.status = status;
+    }
+
+    /**
+     * <p>
+     * Queue all saves until the specified prerequisite completes.
+     * </p>
+     *
+     * @param prerequisite
+     */
+    public void waitFor(CompletableFuture<?> prerequisite) {
+        this.prerequisite = prerequisite;
+    }
+
+    /**
+     * <p>
+     * The table is fully loaded, saves are now allowed.
+     * </p>
+     */
+    public void ready() {
+        ready = true;
+    }
+
+    /**
+     * <p>
+     * Save once there are no more calls to this method for the configured delay.
+     * </p>
+     */
+    public void scheduleSave() {
+        debounce.restart();
+    }
+
+    /**
+     * <p>
+     * Pin the table and save it in the background right away. Must be
+     * called within the Event Queue thread.
+     * </p>
+     *
+     * @return true, once complete, if the vaults were encrypted.
+     */
+    public Future<Boolean> saveNow() {
+        debounce.stop();
+        if(!ready) {
+            logger.warn("Vaults not loaded yet, not saving");
+            return CompletableFuture.completedFuture(false);
+        }
+        KeeSnapshot snapshot = controller.openSnapshot();
+        CompletableFuture<?> waitFor = prerequisite;
+        if(!waitFor.isDone()) {
+            report("Save queued until keys are ready");
+        }
+        return worker.submit(() -> {
+            try(KeeSnapshot pinned = snapshot) {
+                ChangeTracker.Changes changes = controller.changes(pinned.getAll());
+                if(changes.isEmpty()) {
+                    return false;
+                }
+                try {
+                    waitFor.join();
+                } catch (RuntimeException e) {
+                    report("Save failed: keys are not ready");
+                    throw e;
+                }
+                return save(changes);
+            }
+        });
+    }
+
+    /**
+     * <p>
+     * The final save on exit: any pending save runs now, after the saves that
+     * are already queued. No saves are accepted afterwards. The vaults must
+     * not be released (see {@code Vault#closeAll()}) until the returned save
+     * completes, or the user chose to discard it.
+     * </p>
+     * 
+     * @return the final save, complete once all saves have completed.
+     */
+    public Future<Boolean> shutdown() {
+        Future<Boolean> last = saveNow();
+        worker.shutdown();
+        return last;
+    }
+
+    private boolean save(ChangeTracker.Changes changes) {
+        report("Encrypting " + changes.getModels().size() + " vault(s)...");
+        try {
+            boolean encrypted = controller.encrypt(changes);
+            report("Encrypted at " + new SimpleDateFormat(defaultDateTimeFormat).format(new Date()));
+            return encrypted;
+        } catch (RuntimeException e) {
+            logger.error("Cannot encrypt vaults: " + e.getMessage(), e);
+            report("Encrypt failed: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    private void report(String message) {
+        Util.withEventQueue(() -> status.accept(message));
+    }
+}
@@ -12,23 +12,21 @@ import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.io.IOException;
 import java.util.List;
-import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
-import javax.swing.event.TableModelEvent;
-import javax.swing.event.TableModelListener;
 
 import org.apache.log4j.Logger;
 
 import keestore.access.Kee;
-import keestore.access.KeeItem;
-import keestore.crypto.Crypto;
+import keestore.access.KeeEvent;
+import keestore.access.KeeSnapshot;
+import keestore.access.MvccKeeAccess;
 import keestore.vault.crypto.VaultCrypto;
 import keestore.vault.model.Vault;
 import keestore.vault.ui.table.KeeTable;
-import keestore.vault.ui.table.KeeTableModel;
 
 /**
  * A table controller for {@code KeeTable} and exposes functionalities via
@@ -41,6 +39,9 @@ public class VaultTableController {
     private static final Logger logger = Logger.getLogger(VaultTableController.class);
     
     private final KeeTable table;
+    private final ChangeTracker changes = new ChangeTracker();
+    // the versions of the table's models, read by saves, see openSnapshot()
+    private final MvccKeeAccess history = new MvccKeeAccess();
     private VaultCrypto crypto;
     
     /**
@@ -50,6 +51,7 @@ public class VaultTableController {
      */
     public VaultTableController(KeeTable table) {
         this.table = table;
+        table.addKeeListener(e -> e.applyTo(history));
     }
     
     public void setVaultCrypto(VaultCrypto crypto) {
@@ -123,65 +125,143 @@ public class VaultTableController {
      */
     public void loadTable(KeeTable table) throws IOException {
         if(crypto != null) {
-            List<Vault> values = crypto.loadVault();
-            values.forEach(v -> {
-                table.addKee(v);
-            });
+            loadTable(table, crypto.loadVault());
         }
     }
     
     /**
      * <p>
-     * Encrypt all values in the specified table via the underlying crypto.
+     * Load the specified values, which were loaded from the underlying crypto,
+     * into the table as one batch.
      * </p>
      * 
      * @param table
+     * @param values
      */
-    public void handleEncrypt(KeeTable table) {
+    public void loadTable(KeeTable table, List<Vault> values) {
+        table.addAll(values);
+        changes.reset(values);
+    }
+    
+    /**
+     * <p>
+     * Encrypt all values in the specified table via the underlying crypto. 
+     * Nothing is encrypted if the table has not changed since the last load
+     * or encrypt.
+     * </p>
+     * 
+     * @param table
+     * @return true if the values were encrypted, false if there were no changes.
+     */
+    public boolean handleEncrypt(KeeTable table) {
+        if(table == this.table) {
+            try(KeeSnapshot snapshot = openSnapshot()) {
+                return encrypt(changes(snapshot.getAll()));
+            }
+        }
+        List<Kee> snapshot = snapshot(table);
+        try {
+            return encrypt(changes(snapshot));
+        } finally {
+            release(snapshot);
+        }
+    }
+    
+    /**
+     * <p>
+     * Pin the values of the controlled table as they are now so that they can
+     * be read (i.e. encrypted) on any thread while the table is edited. Nothing
+     * is copied: every change to the table is kept as a new version, and the
+     * versions are dropped once no snapshot reads them. Call within the Event
+     * Queue thread to include all changes made so far. The snapshot must be
+     * closed once done.
+     * </p>
+     * 
+     * @return
+     */
+    public KeeSnapshot openSnapshot() {
+        return history.openSnapshot();
+    }
+    
+    /**
+     * <p>
+     * Capture a copy of all values in the specified table so that they can be
+     * encrypted outside of the Event Queue thread. Must be called within the 
+     * Event Queue thread. The snapshot must be released once done.
+     * </p>
+     * 
+     * @param table
+     * @return
+     */
+    public List<Kee> snapshot(KeeTable table) {
+        return table.getAll().stream().map(k -> k.snapshot()).collect(Collectors.toList());
+    }
+    
+    /**
+     * <p>
+     * Overwrite the values of the snapshot that are kept off-heap, see
+     * {@link Vault}.
+     * </p>
+     * 
+     * @param snapshot
+     */
+    public void release(List<Kee> snapshot) {
+        snapshot.forEach(k -> {
+            if(k instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) k).close();
+                } catch (Exception e) {
+                    logger.warn("Cannot release snapshot of " + k.getId(), e);
+                }
+            }
+        });
+    }
+    
+    /**
+     * <p>
+     * Compare the snapshot with the last load or encrypt, once; the result is
+     * handed to {@link #encrypt(ChangeTracker.Changes)}.
+     * </p>
+     * 
+     * @param snapshot
+     * @return
+     */
+    public ChangeTracker.Changes changes(List<Kee> snapshot) {
+        return changes.changes(snapshot);
+    }
+    
+    /**
+     * <p>
+     * Encrypt the snapshot of the specified changes via the underlying crypto,
+     * if it has changed since the last load or encrypt.
+     * </p>
+     * 
+     * @param changeSet
+     * @return true if the values were encrypted, false if there were no changes.
+     */
+    public boolean encrypt(ChangeTracker.Changes changeSet) {
         if(crypto == null) {
             throw new IllegalStateException("Vault crypto not configured for encrypt");
         }
         
-        // decode all values
-        List<Kee> decoded = table.getAll().stream().map(k -> {
-            // find all keys not the id or name keys
-            Set<String> keys = k.toMap().keySet().stream().filter(a -> {
-                return !a.equals(k.nameKey()) && !a.equals(k.idKey());
-            }).collect(Collectors.toSet());
-            // create a copy and decode the values
-            KeeItem copy = new KeeItem(k.toMap());
-            for(String key : keys) {
-                String _value = copy.get(key);
-                copy.put(new String(Crypto.decode(key).get()), new String(Crypto.decode(_value).get()));
-                copy.remove(key);
-            }
-            return copy;
-        }).collect(Collectors.toList());
-        crypto.encrypt(decoded);
+        if(changeSet.isEmpty()) {
+            logger.debug("No changes since the last encrypt, skipping");
+            return false;
+        }
+        crypto.encrypt(changeSet.getModels());
+        changes.saved(changeSet);
+        return true;
     }
     
     /**
-     * Any update to the table model will callback to this controller to update
-     * the underlying model with table data.
+     * Any change to the table model will callback to this controller to make the
+     * same change to the underlying model, one vault at a time.
      * 
      * @param controller
      * @return
      */
-    public TableModelListener tableModelListener(final VaultController controller) {
-        return e -> {
-            if(e.getSource() instanceof KeeTableModel) {
-                KeeTableModel sourceModel = (KeeTableModel)e.getSource();
-                switch(e.getType()) {
-                case TableModelEvent.INSERT:
-                    break;
-                case TableModelEvent.DELETE:
-                    break;
-                case TableModelEvent.UPDATE:
-                    controller.updateAll(sourceModel.getAll());
-                    break;
-                }
-            }
-        };
+    public Consumer<KeeEvent> keeListener(final VaultController controller) {
+        return controller::apply;
     }
     
     /**
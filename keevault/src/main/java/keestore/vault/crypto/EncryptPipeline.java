@@ -0,0 +1,331 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.vault.crypto;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+import javax.crypto.Cipher;
+
+import org.apache.commons.codec.binary.Base64OutputStream;
+import org.json.simple.JSONValue;
+
+import keestore.access.Kee;
+import keestore.crypto.Crypto;
+import keestore.crypto.CryptoException;
+
+/**
+ * <p>
+ * Encrypts models to file as a pipeline of stages, each running on its own
+ * thread and connected to the next by a bounded queue:
+ * <ol>
+ * <li>Serialize: models to a json array, signing the json along the way</li>
+ * <li>Compress: (optional) deflate the json</li>
+ * <li>Encrypt: encrypt using the symmetric key</li>
+ * <li>Write: encode and write to the file channel</li>
+ * </ol>
+ * Each link between two stages has its own small pool of fixed-size buffers
+ * that the upstream stage fills and the downstream stage returns once consumed,
+ * so all stages overlap and peak memory is a few buffers rather than a copy of
+ * the whole payload per stage. A link never waits on buffers held by another 
+ * link, so a slow stage cannot starve its neighbors. The output is
+ * written to a temporary file that replaces the datastore once all stages
+ * complete.
+ * </p>
+ *
+ * @author thinh ho
+ *
+ */
+class EncryptPipeline {
+    private static final int bufferSize = 64 * 1024;
+    private static final int bufferCount = 4;
+    private static final String signatureAlgorithm = "SHA256withRSA";
+    private static final ByteBuffer EOF = ByteBuffer.allocate(0);
+    private static final AtomicInteger threads = new AtomicInteger();
+    private static final ExecutorService stages = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "encryptStage-" + threads.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Crypto crypto;
+    private final Cipher cipher;
+    private final boolean compress;
+    private volatile String signature;
+
+    /**
+     * The buffers between two stages: filled buffers go downstream through the
+     * queue and come back through the pool.
+     */
+    private static class Link {
+        private final BlockingQueue<ByteBuffer> queue = new ArrayBlockingQueue<>(bufferCount);
+        private final BlockingQueue<ByteBuffer> pool = new ArrayBlockingQueue<>(bufferCount);
+
+        private Link() {
+            for (int i = 0; i < bufferCount; i++) {
+                pool.add(ByteBuffer.allocate(bufferSize));
+            }
+        }
+
+        private ByteBuffer take() throws InterruptedException {
+            return queue.take();
+        }
+
+        private void recycle(ByteBuffer b) throws InterruptedException {
+            b.clear();
+            pool.put(b);
+        }
+    }
+
+    /**
+     * Buffers written by a stage, sent downstream as each one fills up.
+     */
+    private static class Output {
+        private final Link link;
+        private ByteBuffer current;
+
+        private Output(Link link) {
+            this.link = link;
+        }
+
+        /**
+         * The buffer to write into, with at least the specified space left.
+         */
+        private ByteBuffer buffer(int remaining) throws InterruptedException {
+            if (current != null && current.remaining() < remaining) {
+                flush();
+            }
+            if (current == null) {
+                current = link.pool.take();
+            }
+            return current;
+        }
+
+        private void write(byte[] data) throws InterruptedException {
+            int offset = 0;
+            while (offset < data.length) {
+                ByteBuffer b = buffer(1);
+                int length = Math.min(b.remaining(), data.length - offset);
+                b.put(data, offset, length);
+                offset += length;
+            }
+        }
+
+        private void flush() throws InterruptedException {
+            if (current != null) {
+                current.flip();
+                link.queue.put(current);
+                current = null;
+            }
+        }
+
+        private void close() throws InterruptedException {
+            flush();
+            link.queue.put(EOF);
+        }
+    }
+
+    EncryptPipeline(Crypto crypto, Cipher cipher, boolean compress) {
+        this.crypto = crypto;
+        this.cipher = cipher;
+        this.compress = compress;
+    }
+
+    /**
+     * <p>
+     * Write the models to the target file as a json object containing the
+     * specified fields, followed by the encoded encrypted payload and its
+     * signature.
+     * </p>
+     *
+     * @param models
+     * @param fields
+     * @param target
+     */
+    void encrypt(List<Kee> models, Map<String, String> fields, File target) {
+        Path tmp = new File(target.getParentFile(), target.getName() + ".tmp").toPath();
+        Link serialized = new Link();
+        Link compressed = compress ? new Link() : serialized;
+        Link encrypted = new Link();
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        tasks.add(() -> serialize(models, new Output(serialized)));
+        if (compress) {
+            tasks.add(() -> compress(serialized, new Output(compressed)));
+        }
+        tasks.add(() -> encrypt(compressed, new Output(encrypted)));
+        tasks.add(() -> write(encrypted, fields, tmp));
+
+        CompletionService<Void> completion = new ExecutorCompletionService<>(stages);
+        List<Future<Void>> running = new ArrayList<>();
+        tasks.forEach(t -> running.add(completion.submit(t)));
+        try {
+            for (int i = 0; i < running.size(); i++) {
+                completion.take().get();
+            }
+            move(tmp, target.toPath());
+        } catch (Exception e) {
+            running.forEach(f -> f.cancel(true));
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException ignore) {}
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            throw new CryptoException("Cannot encrypt file: " + cause.getMessage(), cause);
+        }
+    }
+
+    private Void serialize(List<Kee> models, Output out) throws Exception {
+        Signature s = crypto.initSign(signatureAlgorithm);
+        // same as JSONArray.toJSONString() without holding the whole string
+        byte[] comma = ",".getBytes();
+        byte[] data = "[".getBytes();
+        s.update(data);
+        out.write(data);
+        for (int i = 0; i < models.size(); i++) {
+            if (i > 0) {
+                s.update(comma);
+                out.write(comma);
+            }
+            data = JSONValue.toJSONString(models.get(i)).getBytes();
+            s.update(data);
+            out.write(data);
+        }
+        data = "]".getBytes();
+        s.update(data);
+        out.write(data);
+        signature = Crypto.encode(s.sign()).get();
+        out.close();
+        return null;
+    }
+
+    private Void compress(Link upstream, Output out) throws Exception {
+        Deflater deflater = new Deflater();
+        try {
+            ByteBuffer in;
+            while ((in = upstream.take()) != EOF) {
+                deflater.setInput(in.array(), in.arrayOffset() + in.position(), in.remaining());
+                while (!deflater.needsInput()) {
+                    deflate(deflater, out);
+                }
+                upstream.recycle(in);
+            }
+            deflater.finish();
+            while (!deflater.finished()) {
+                deflate(deflater, out);
+            }
+        } finally {
+            deflater.end();
+        }
+        out.close();
+        return null;
+    }
+
+    private void deflate(Deflater deflater, Output out) throws InterruptedException {
+        ByteBuffer b = out.buffer(1);
+        int length = deflater.deflate(b.array(), b.arrayOffset() + b.position(), b.remaining());
+        b.position(b.position() + length);
+    }
+
+    private Void encrypt(Link upstream, Output out) throws Exception {
+        // room for the cipher to hold back/pad up to a couple of blocks
+        int headroom = Math.max(cipher.getBlockSize(), 16) * 2;
+        ByteBuffer in;
+        while ((in = upstream.take()) != EOF) {
+            while (in.hasRemaining()) {
+                ByteBuffer b = out.buffer(headroom + 1);
+                int length = Math.min(in.remaining(), b.remaining() - headroom);
+                int written = cipher.update(in.array(), in.arrayOffset() + in.position(), length,
+                    b.array(), b.arrayOffset() + b.position());
+                in.position(in.position() + length);
+                b.position(b.position() + written);
+            }
+            upstream.recycle(in);
+        }
+        ByteBuffer b = out.buffer(cipher.getOutputSize(0));
+        b.position(b.position() + cipher.doFinal(b.array(), b.arrayOffset() + b.position()));
+        out.close();
+        return null;
+    }
+
+    private Void write(Link upstream, Map<String, String> fields, Path tmp) throws Exception {
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+        {
+            OutputStream file = new BufferedOutputStream(Channels.newOutputStream(channel), bufferSize);
+            StringBuilder prefix = new StringBuilder("{");
+            fields.forEach((k, v) -> {
+                prefix.append('"').append(JSONValue.escape(k)).append("\":\"")
+                    .append(JSONValue.escape(v)).append("\",");
+            });
+            prefix.append("\"payload\":\"");
+            file.write(prefix.toString().getBytes());
+
+            // the payload is the IV followed by the encrypted data, encoded
+            // without line breaks; closing the encoder must not close the file
+            OutputStream encoder = new Base64OutputStream(new FilterOutputStream(file) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            }, true, 0, null);
+            encoder.write(cipher.getIV());
+            ByteBuffer in;
+            while ((in = upstream.take()) != EOF) {
+                encoder.write(in.array(), in.arrayOffset() + in.position(), in.remaining());
+                upstream.recycle(in);
+            }
+            encoder.close();
+
+            // the signature is known once the serializer is done, which is
+            // before the end of the payload makes it down to this stage
+            file.write(("\",\"signature\":\"" + signature + "\"}").getBytes());
+            file.flush();
+            channel.force(true);
+        }
+        return null;
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -5,22 +5,34 @@
  */
 package keestore.vault.crypto;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.security.KeyPair;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.InflaterInputStream;
+
+import javax.crypto.Cipher;
 
-import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
+import org.json.simple.parser.ContentHandler;
 import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
 
 import keestore.access.Kee;
+import keestore.access.KeeId;
 import keestore.access.KeeItem;
 import keestore.crypto.Crypto;
 import keestore.crypto.CryptoEngine;
@@ -37,11 +49,14 @@ import keestore.vault.model.Vault;
  *
  */
 public class VaultCrypto {
+    private static final String compression = "deflate";
+    
     private final CryptoEngine cryptoEngine;
     private final Crypto crypto;
     private String id;
     private final String salt;
     private File registration;
+    private boolean compress = false;
     
     /**
      * <p>
@@ -71,17 +86,57 @@ public class VaultCrypto {
      * @throws IOException
      */
     public VaultCrypto(CryptoEngine cryptoEngine, File registration) throws IOException {
-        Charset charset = Charset.forName(CryptoEngine.charSet);
-        String json = Files.readAllLines(registration.toPath(), charset).get(0);
-        KeeItem _registration = KeeItem.toKeeItem(json);
-        PrivateKey privateKey = Crypto.buildPrivateKey(Crypto.decode(_registration.get("privateKey")).get()).get();
-        PublicKey publicKey = Crypto.buildPublicKey(Crypto.decode(_registration.get("publicKey")).get()).get();
-        byte[] encSecretKey = Crypto.decode(_registration.get("secretKey")).get();
-        this.id = _registration.getId();
-        this.salt = _registration.get("salt");
+        this(cryptoEngine, readRegistration(registration), registration);
+    }
+    
+    /**
+     * <p>
+     * Rebuild the keys from the registration information, which was read from 
+     * the specified file. The secret key stays encrypted (wrapped) and is only
+     * decrypted for each use, see {@link #getInternalSecretKey()}.
+     * </p>
+     * 
+     * @param cryptoEngine
+     * @param registration
+     * @param source the registration file.
+     */
+    public VaultCrypto(CryptoEngine cryptoEngine, KeeItem registration, File source) {
+        PrivateKey privateKey = Crypto.buildPrivateKey(Crypto.decode(registration.get("privateKey")).get()).get();
+        PublicKey publicKey = Crypto.buildPublicKey(Crypto.decode(registration.get("publicKey")).get()).get();
+        byte[] encSecretKey = Crypto.decode(registration.get("secretKey")).get();
+        this.id = registration.getId();
+        this.salt = registration.get("salt");
         this.cryptoEngine = cryptoEngine;
         this.crypto = new Crypto(encSecretKey, new KeyPair(publicKey, privateKey));
-        this.registration = registration;
+        this.registration = source;
+    }
+    
+    /**
+     * <p>
+     * Read the registration information from file.
+     * </p>
+     * 
+     * @param registration
+     * @return
+     * @throws IOException
+     */
+    public static KeeItem readRegistration(File registration) throws IOException {
+        Charset charset = Charset.forName(CryptoEngine.charSet);
+        String json = Files.readAllLines(registration.toPath(), charset).get(0);
+        return KeeItem.toKeeItem(json);
+    }
+    
+    /**
+     * <p>
+     * The file that holds the user data for the specified registration.
+     * </p>
+     * 
+     * @param registration
+     * @param source the registration file.
+     * @return
+     */
+    public static File getVault(KeeItem registration, File source) {
+        return new File(source.getParentFile(), registration.getId());
     }
     
     /**
@@ -102,56 +157,219 @@ public class VaultCrypto {
      * <li>Verify signature of decrypted payload</li>
      * </ol>
      * Once all is good, turn the json payload into GUI models with each key/value
-     * in encoded format.
+     * as is; values are only ever encoded in the datastore itself.
      * </p>
      * 
      * @return
      * @throws IOException
      */
-    @SuppressWarnings("unchecked")
     public List<Vault> loadVault() throws IOException {
+        return loadVault(readVault(getVault()));
+    }
+    
+    /**
+     * <p>
+     * Read the (encrypted) datastore from the specified file, or null if the 
+     * file does not exist. This does not involve any keys and can be done 
+     * while the keys are being loaded.
+     * </p>
+     * 
+     * @param vault
+     * @return
+     * @throws IOException
+     */
+    public static String readVault(File vault) throws IOException {
+        if(!vault.exists()) {
+            return null;
+        }
+        Charset charset = Charset.forName(CryptoEngine.charSet);
+        return Files.readAllLines(vault.toPath(), charset).get(0);
+    }
+    
+    /**
+     * <p>
+     * Decrypt and verify the datastore contents obtained via
+     * {@link #readVault(File)}, see {@link #loadVault()}.
+     * </p>
+     * 
+     * @param json
+     * @return
+     * @throws IOException
+     */
+    public List<Vault> loadVault(String json) throws IOException {
         List<Vault> data = new ArrayList<>();
-        if(getVault().exists()) {
+        loadVault(json, data::add);
+        return data;
+    }
+    
+    /**
+     * <p>
+     * Decrypt and verify the datastore contents, handing each vault to the
+     * specified consumer as soon as it is built rather than collecting them
+     * all. The signature is verified over the decrypted bytes, which are
+     * parsed incrementally and then overwritten with zeros; being a single
+     * blob, the decrypted payload is still held once while it is loaded.
+     * </p>
+     * 
+     * @param json
+     * @param vaults
+     * @throws IOException
+     */
+    @SuppressWarnings("unchecked")
+    public void loadVault(String json, Consumer<Vault> vaults) throws IOException {
+        if(json != null) {
             try {
-                Charset charset = Charset.forName(CryptoEngine.charSet);
-                String json = Files.readAllLines(getVault().toPath(), charset).get(0);
                 JSONParser p = new JSONParser();
                 JSONObject obj = (JSONObject)p.parse(json);
                 
                 String signature = (String)obj.get("signature");
                 String encrypted = (String)obj.get("payload");
-                byte[] decrypted = cryptoEngine.decrypt(getInternalSecretKey(), Crypto.decode(encrypted).get());
-                String payload = new String(decrypted);
-                boolean verified = crypto.verify(payload, signature);
-                if(!verified) {
-                    throw new CryptoException("Invalid signature! Datastore might have been tampered.");
+                byte[] secretKey = getInternalSecretKey();
+                byte[] decrypted;
+                try {
+                    decrypted = cryptoEngine.decrypt(secretKey, Crypto.decode(encrypted).get());
+                } finally {
+                    Arrays.fill(secretKey, (byte) 0);
+                }
+                if(compression.equals(obj.get("compression"))) {
+                    decrypted = inflate(decrypted);
+                }
+                try {
+                    boolean verified = crypto.verify(decrypted, signature);
+                    if(!verified) {
+                        throw new CryptoException("Invalid signature! Datastore might have been tampered.");
+                    }
+                    Reader payload = new InputStreamReader(new ByteArrayInputStream(decrypted), 
+                        Charset.defaultCharset());
+                    p.parse(payload, new VaultHandler(vaults));
+                } finally {
+                    Arrays.fill(decrypted, (byte) 0);
                 }
-                JSONArray array = (JSONArray)p.parse(payload);
-                array.forEach(a -> {
-                    JSONObject o = (JSONObject)a;
-                    KeeItem item = KeeItem.toKeeItem(o.toJSONString());
-                    Vault v = new Vault(item.getName());
-                    item.toMap().keySet().forEach(k -> {
-                        if(k.equals(item.nameKey()) || k.equals(item.idKey())) {
-                            v.put(k, item.get(k));
-                        } else {
-                            v.put(Crypto.encode(k.getBytes()).get(), Crypto.encode(item.get(k).getBytes()).get());
-                        }
-                    });
-                    data.add(v);
-                });
-                
             } catch (Exception e) {
                 throw new IOException(e);
             }
         }
-        return data;
+    }
+    
+    /**
+     * <p>
+     * Build a vault from its key/values, as is.
+     * </p>
+     * 
+     * @param item
+     * @return
+     */
+    static Vault toVault(Map<String, String> item) {
+        if(!item.containsKey(KeeItem.ITEMNAME_KEY) || !item.containsKey(KeeItem.ITEMNAME_ID)) {
+            throw new IllegalArgumentException("Vault missing required field: " + item.keySet());
+        }
+        Vault v = new Vault(item.get(KeeItem.ITEMNAME_KEY));
+        item.forEach(v::put);
+        return v;
+    }
+    
+    /**
+     * <p>
+     * Builds each vault of the payload's json array as soon as its object is
+     * parsed, so that neither the payload nor the array is held as a whole.
+     * </p>
+     */
+    private static class VaultHandler implements ContentHandler {
+        private final Consumer<Vault> vaults;
+        private final Map<String, String> item = new LinkedHashMap<>();
+        private int depth;
+        private String key;
+        
+        private VaultHandler(Consumer<Vault> vaults) {
+            this.vaults = vaults;
+        }
+        
+        @Override
+        public void startJSON() {
+        }
+        
+        @Override
+        public void endJSON() {
+        }
+        
+        @Override
+        public boolean startArray() throws ParseException {
+            if(depth++ != 0) {
+                throw new ParseException(ParseException.ERROR_UNEXPECTED_TOKEN, "Nested array in vault");
+            }
+            return true;
+        }
+        
+        @Override
+        public boolean endArray() {
+            depth--;
+            return true;
+        }
+        
+        @Override
+        public boolean startObject() throws ParseException {
+            if(depth++ != 1) {
+                throw new ParseException(ParseException.ERROR_UNEXPECTED_TOKEN, "Vault is not in an array");
+            }
+            item.clear();
+            return true;
+        }
+        
+        @Override
+        public boolean endObject() {
+            depth--;
+            vaults.accept(toVault(item));
+            item.clear();
+            return true;
+        }
+        
+        @Override
+        public boolean startObjectEntry(String key) {
+            this.key = key;
+            return true;
+        }
+        
+        @Override
+        public boolean endObjectEntry() {
+            return true;
+        }
+        
+        @Override
+        public boolean primitive(Object value) throws ParseException {
+            if(depth != 2 || !(value instanceof String)) {
+                throw new ParseException(ParseException.ERROR_UNEXPECTED_TOKEN, "Vault value is not a string");
+            }
+            item.put(key, (String) value);
+            return true;
+        }
+    }
+    
+    /**
+     * <p>
+     * Decompress a payload that was compressed before encryption.
+     * </p>
+     * 
+     * @param compressed
+     * @return
+     * @throws IOException
+     */
+    private static byte[] inflate(byte[] compressed) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 4);
+        try (InflaterInputStream in = new InflaterInputStream(new ByteArrayInputStream(compressed))) {
+            byte[] buffer = new byte[8192];
+            int length;
+            while((length = in.read(buffer)) > 0) {
+                out.write(buffer, 0, length);
+            }
+        }
+        return out.toByteArray();
     }
     
     /**
      * <p>
      * The secret key is stored encrypted by the user's public key; this is a 
-     * helper method to obtain the decrypted secret key.
+     * helper method to obtain the decrypted secret key. Each call decrypts a
+     * new copy, which the caller overwrites with zeros once done.
      * </p>
      * 
      * @return
@@ -168,43 +386,45 @@ public class VaultCrypto {
      * {
      *    "payload":(encrypted),
      *    "signature":(signature),
-     *    "secretKey":(encrypted symmetric key that was used during encryption)
+     *    "secretKey":(encrypted symmetric key that was used during encryption),
+     *    "compression":(optional, "deflate" if the payload is compressed)
      * }
      * </pre>
-     * The payload and secret key values are in encoded format.
+     * The payload and secret key values are in encoded format. Serialize, 
+     * (optionally) compress, encrypt, and write run as overlapping stages, 
+     * see {@link EncryptPipeline}.
      * </p>
      * 
      * @param models
      */
-    @SuppressWarnings("unchecked")
     public void encrypt(List<Kee> models) {
-        JSONArray json = new JSONArray();
-        models.forEach(d -> {
-            json.add(d);
-        });
-        String jsonpayload = json.toJSONString();
-        String signature = crypto.sign(jsonpayload);
-        
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put(KeeItem.ITEMNAME_KEY, "encrypted");
+        fields.put(KeeItem.ITEMNAME_ID, KeeId.random().toString());
+        fields.put("secretKey", Crypto.encode(crypto.getSecretKey()).get());
+        if(compress) {
+            fields.put("compression", compression);
+        }
         byte[] secretKey = getInternalSecretKey();
-        byte[] payload = cryptoEngine.encrypt(secretKey, jsonpayload.getBytes());
-        
-        KeeItem output = new KeeItem("encrypted");
-        output.put("signature", signature);
-        output.put("payload", Crypto.encode(payload).get());
-        output.put("secretKey", Crypto.encode(crypto.getSecretKey()).get());
-        FileWriter writer = null;
+        Cipher cipher;
         try {
-            writer = new FileWriter(getVault());
-            output.writeJSONString(writer);
-        } catch (IOException e) {
-            throw new CryptoException("Cannot encrypt file: " + e.getMessage(), e);
+            cipher = cryptoEngine.encryptCipher(secretKey);
         } finally {
-            if(writer != null) {
-                try {
-                    writer.close();
-                } catch (IOException e) {}
-            }
+            Arrays.fill(secretKey, (byte) 0);
         }
+        new EncryptPipeline(crypto, cipher, compress).encrypt(models, fields, getVault());
+    }
+    
+    /**
+     * <p>
+     * Whether or not to compress the payload before encryption (default false).
+     * Compressed datastores can be loaded regardless of this setting.
+     * </p>
+     * 
+     * @param compress
+     */
+    public void setCompress(boolean compress) {
+        this.compress = compress;
     }
     
     /**
@@ -265,7 +485,12 @@ public class VaultCrypto {
      * @return
      */
     public String getSecretKey() {
-        return Crypto.encode(getInternalSecretKey()).get();
+        byte[] secretKey = getInternalSecretKey();
+        try {
+            return Crypto.encode(secretKey).get();
+        } finally {
+            Arrays.fill(secretKey, (byte) 0);
+        }
     }
     
     /**
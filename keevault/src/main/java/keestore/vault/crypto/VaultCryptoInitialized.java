@@ -5,13 +5,19 @@
  */
 package keestore.vault.crypto;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.event.ApplicationContextEvent;
 
+import keestore.vault.model.Vault;
+
 /**
  * <p>
  * Once the {@code VaultCrypto} is initialized, an event will be published via
- * Spring to notify to display.
+ * Spring to notify to display. The vaults may still be loading in the
+ * background at that point.
  * </p>
  * 
  * @author thinh ho
@@ -21,13 +27,29 @@ public class VaultCryptoInitialized extends ApplicationContextEvent {
     private static final long serialVersionUID = 4973397719767017403L;
     
     private final VaultCrypto crypto;
+    private final CompletableFuture<List<Vault>> vaults;
     
     public VaultCryptoInitialized(ApplicationContext source, VaultCrypto crypto) {
+        this(source, crypto, null);
+    }
+    
+    public VaultCryptoInitialized(ApplicationContext source, VaultCrypto crypto, CompletableFuture<List<Vault>> vaults) {
         super(source);
         this.crypto = crypto;
+        this.vaults = vaults;
     }
 
     public VaultCrypto getCrypto() {
         return crypto;
     }
+
+    /**
+     * The vaults loaded from the datastore, or null if they should be loaded
+     * through the crypto.
+     * 
+     * @return
+     */
+    public CompletableFuture<List<Vault>> getVaults() {
+        return vaults;
+    }
 }
@@ -7,37 +7,82 @@ package keestore.vault.crypto;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import org.apache.log4j.Logger;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
 
 import keestore.access.KeeItem;
 import keestore.crypto.Crypto;
 import keestore.crypto.CryptoEngine;
+import keestore.crypto.KeyPairPool;
+import keestore.vault.VaultStartup;
+import keestore.vault.model.Vault;
 
 /**
  * <p>
  * Initializes the crypto service used in Keevault.
  * </p>
+ * <p>
+ * Startup work is split into phases that run in the background while the rest
+ * of the application context (i.e. the UI) is being constructed: the keys are
+ * rebuilt from the registration while the datastore is read from file, and the
+ * datastore is decrypted once both are available. The crypto and the (future)
+ * vaults are published once the application context is refreshed.
+ * </p>
+ * <p>
+ * On first run, the keys are generated in the background and the registration
+ * is written once they are ready. The application context is not held up; see
+ * {@code VaultCryptoPreparing}.
+ * </p>
  * 
  * @author thinh ho
  *
  */
-public class VaultCryptoInitializer implements ApplicationContextAware, InitializingBean {
+public class VaultCryptoInitializer 
+    implements ApplicationContextAware, InitializingBean, ApplicationListener<ContextRefreshedEvent> 
+{
     private static final Logger logger = Logger.getLogger(VaultCryptoInitializer.class);
     
     private ApplicationContext applicationContext;
     private String registration;
     private CryptoEngine cryptoEngine;
     private int publicKeySizeBits = 1024;
+    private boolean compress = false;
+    private VaultStartup startup = new VaultStartup();
+    private KeyPairPool keyPairPool;
+    private CompletableFuture<VaultCrypto> crypto;
+    private CompletableFuture<List<Vault>> vaults;
+    private boolean generating = false;
+    
+    /**
+     * Optional, pre-generated key pairs for new registrations.
+     * 
+     * @param keyPairPool
+     */
+    public void setKeyPairPool(KeyPairPool keyPairPool) {
+        this.keyPairPool = keyPairPool;
+    }
+    
+    public void setStartup(VaultStartup startup) {
+        this.startup = startup;
+    }
+    
+    public void setCompress(boolean compress) {
+        this.compress = compress;
+    }
     
     public void setPublicKeySizeBits(int publicKeySizeBits) {
         this.publicKeySizeBits = publicKeySizeBits;
@@ -59,34 +104,108 @@ public class VaultCryptoInitializer implements ApplicationContextAware, Initiali
     @Override
     public void afterPropertiesSet() throws Exception {
         File regfile = new File(registration);
-        VaultCrypto crypto = null;
         
-        try {
-            if(regfile.exists()) {
-                crypto = new VaultCrypto(cryptoEngine, regfile);
-            } else {
-                crypto = createVaultCrypto();
-                KeeItem registration = crypto.getRegistration();
-                crypto.setId(registration.getId());
-                outputRegistration(registration, regfile);
-                crypto.setSource(regfile);
-            }
-        } catch (Exception e) {
-            logger.error("Cannot initialized Vault Crypto", e);
-            throw new IllegalStateException(e);
+        if(regfile.exists()) {
+            CompletableFuture<KeeItem> reg = startup.phase("registration", () -> {
+                try {
+                    return VaultCrypto.readRegistration(regfile);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            // keys and the datastore only depend on the registration
+            crypto = startup.phase(reg, "keys", r -> {
+                VaultCrypto c = new VaultCrypto(cryptoEngine, r, regfile);
+                c.setCompress(compress);
+                return c;
+            });
+            CompletableFuture<String> data = startup.phase(reg, "vault read", r -> {
+                try {
+                    return VaultCrypto.readVault(VaultCrypto.getVault(r, regfile));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            vaults = startup.phase(crypto, data, "vault decrypt", (c, json) -> {
+                try {
+                    return c.loadVault(json);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } else {
+            // first run: generating the keys can take a while, do not hold up
+            // the rest of the application context
+            generating = true;
+            crypto = startup.phase("keys", () -> {
+                try {
+                    VaultCrypto c = createVaultCrypto();
+                    KeeItem registration = c.getRegistration();
+                    c.setId(registration.getId());
+                    outputRegistration(registration, regfile);
+                    c.setSource(regfile);
+                    c.setCompress(compress);
+                    return c;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            vaults = CompletableFuture.completedFuture(new ArrayList<>());
+        }
+    }
+    
+    /**
+     * <p>
+     * Once the application context is ready (i.e. the UI is constructed), wait
+     * for the keys and publish the crypto. The vaults are published as they are,
+     * they may still be loading.
+     * </p>
+     * <p>
+     * If the keys are being generated (first run), publish that the crypto is 
+     * being prepared and publish the crypto once the keys are ready.
+     * </p>
+     */
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        if(crypto == null || event.getApplicationContext() != applicationContext) {
+            return;
         }
         
-        if(applicationContext != null) {
-            logger.debug("Vault Crypto initialized, publishing to application context");
-            applicationContext.publishEvent(new VaultCryptoInitialized(applicationContext,crypto));
+        if(generating && !crypto.isDone()) {
+            logger.debug("Vault Crypto keys being prepared, publishing to application context");
+            applicationContext.publishEvent(new VaultCryptoPreparing(applicationContext, crypto, vaults));
+            crypto.whenComplete((c, e) -> {
+                if(e != null) {
+                    logger.error("Cannot initialized Vault Crypto", e);
+                } else {
+                    publish(c);
+                }
+            });
+            return;
         }
+        
+        VaultCrypto c = null;
+        try {
+            c = crypto.join();
+        } catch (CompletionException e) {
+            logger.error("Cannot initialized Vault Crypto", e.getCause());
+            throw new IllegalStateException(e.getCause());
+        }
+        publish(c);
+    }
+    
+    private void publish(VaultCrypto c) {
+        logger.debug("Vault Crypto initialized, publishing to application context");
+        applicationContext.publishEvent(new VaultCryptoInitialized(applicationContext, c, vaults));
     }
     
     private VaultCrypto createVaultCrypto() {
         VaultCrypto crypto = null;
         try {
            String secret = Crypto.encode(cryptoEngine.generateKey()).get();
-           Crypto c = cryptoEngine.createCrypto(secret, "RSA", publicKeySizeBits);
+           Crypto c = keyPairPool != null 
+               ? keyPairPool.createCrypto(cryptoEngine, secret) 
+               : cryptoEngine.createCrypto(secret, "RSA", publicKeySizeBits);
            crypto = new VaultCrypto(cryptoEngine, c.getSecretKey(), c.getKeyPair().getPublic(), c.getKeyPair().getPrivate());
         } catch (Exception e) {
            logger.error("Cannot generate registration: " + e.getMessage(), e);
@@ -0,0 +1,53 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.vault.crypto;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.ApplicationContextEvent;
+
+import keestore.vault.model.Vault;
+
+/**
+ * <p>
+ * On first run, the keys are generated in the background. This event is
+ * published via Spring so that the display can be shown while the keys are
+ * being prepared; {@code VaultCryptoInitialized} is published once they are
+ * ready.
+ * </p>
+ * 
+ * @author thinh ho
+ *
+ */
+public class VaultCryptoPreparing extends ApplicationContextEvent {
+    private static final long serialVersionUID = -2386023645719371720L;
+    
+    private final CompletableFuture<VaultCrypto> crypto;
+    private final CompletableFuture<List<Vault>> vaults;
+    
+    public VaultCryptoPreparing(ApplicationContext source, CompletableFuture<VaultCrypto> crypto, 
+        CompletableFuture<List<Vault>> vaults) 
+    {
+        super(source);
+        this.crypto = crypto;
+        this.vaults = vaults;
+    }
+
+    /**
+     * The crypto, once the keys are ready.
+     * 
+     * @return
+     */
+    public CompletableFuture<VaultCrypto> getCrypto() {
+        return crypto;
+    }
+
+    public CompletableFuture<List<Vault>> getVaults() {
+        return vaults;
+    }
+}
@@ -7,18 +7,32 @@ package keestore.vault.model;
 
 import org.springframework.util.Assert;
 
-import keestore.access.KeeItem;
+import keestore.access.ArenaKeeItem;
+import keestore.access.ValueArena;
 
 /**
  * <p>
- * The main UI model that enforces a vault name upon instantiation.
+ * The main UI model that enforces a vault name upon instantiation. The vault
+ * values are kept off-heap in an arena shared by all vaults, which is
+ * overwritten with zeros on {@link #closeAll()}. Snapshots (i.e. to save)
+ * must be closed once done.
+ * </p>
+ * <p>
+ * Like {@code PersistentKeeItem}, snapshots share structure: a snapshot holds
+ * the same blocks of the arena as the vault, and only a value that is changed
+ * afterwards gets a block of its own. A snapshot costs its keys and handles,
+ * not a copy of the values. A value is wiped once the last copy holding it is
+ * closed (i.e. the versions of an {@code MvccKeeAccess} once no snapshot sees
+ * them); the arena lets go of a copy that was never closed only after it was
+ * garbage collected.
  * </p>
  * 
  * @author thinh ho
  *
  */
-public class Vault extends KeeItem {
+public class Vault extends ArenaKeeItem {
     private static final long serialVersionUID = -6017392994844748913L;
+    private static final ValueArena values = new ValueArena(64 * 1024);
     
     /**
      * Must instantiate with a vault name.
@@ -26,8 +40,18 @@ public class Vault extends KeeItem {
      * @param name
      */
     public Vault(String name) {
-        super(name);
+        super(values, name);
         Assert.notNull(name, "Vault name must exist and be non-null");
     }
+    
+    /**
+     * <p>
+     * Overwrite the values of all vaults with zeros and release them (i.e. on
+     * exit). No vault can be used afterwards.
+     * </p>
+     */
+    public static void closeAll() {
+        values.close();
+    }
 
 }
@@ -35,6 +35,7 @@ class HeaderPanel extends JPanel {
 
     private SimpleDateFormat dateformat;
     private JLabel timeFld;
+    private JLabel statusLbl;
     private JLabel vaultLbl;
     private JLabel secretKeyLbl;
     private JLabel soureLbl;
@@ -58,6 +59,12 @@ class HeaderPanel extends JPanel {
         });
     }
 
+    public void setStatus(String status) {
+        Util.withEventQueue(() -> {
+            statusLbl.setText(status);
+        });
+    }
+
     public void setTime(Date date) {
         Util.withEventQueue(() -> {
             timeFld.setText(formatDateTime(date));
@@ -213,12 +220,21 @@ class HeaderPanel extends JPanel {
             c.fill = GridBagConstraints.BOTH;
             add(controls, c);
         }
+        {
+            c.anchor = GridBagConstraints.LINE_START;
+            c.fill = GridBagConstraints.HORIZONTAL;
+            c.gridx = 0;
+            c.gridy = 2;
+            c.gridwidth = 2;
+            add(statusLbl, c);
+        }
     }
 
     private void initComponents() {
         dateformat = new SimpleDateFormat(defaultDateTimeFormat);
         timeFld = new JLabel("");
         timeFld.setText(formatDateTime(new Date()));
+        statusLbl = new JLabel(" ");
         secretKeyLbl = new JLabel("");
         soureLbl = new JLabel("");
         saltLbl = new JLabel("");
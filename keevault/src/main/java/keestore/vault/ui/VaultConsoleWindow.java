@@ -7,7 +7,14 @@ package keestore.vault.ui;
 
 import java.awt.FlowLayout;
 import java.awt.event.KeyEvent;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URL;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.swing.ImageIcon;
 import javax.swing.JFrame;
@@ -18,20 +25,27 @@ import javax.swing.SwingUtilities;
 
 import org.apache.log4j.Logger;
 import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ApplicationContextEvent;
 
 import keestore.vault.Util;
+import keestore.vault.VaultStartup;
 import keestore.vault.crypto.VaultCrypto;
 import keestore.vault.crypto.VaultCryptoInitialized;
+import keestore.vault.crypto.VaultCryptoPreparing;
+import keestore.vault.model.Vault;
 
 /**
  * The main application window that can be initialized within a Spring
  * Application Context and be notified of an {@code VaultCryptoInitialized}
- * event which will then, fully initialize the window.
+ * event which will then, fully initialize the window. The window is shown as
+ * soon as the crypto is ready and the table is filled in once the vaults are
+ * loaded. On first run, the window is shown on {@code VaultCryptoPreparing}
+ * while the keys are generated.
  * 
  * @author thinh ho
  *
  */
-public class VaultConsoleWindow extends JFrame implements ApplicationListener<VaultCryptoInitialized> {
+public class VaultConsoleWindow extends JFrame implements ApplicationListener<ApplicationContextEvent> {
     private static final long serialVersionUID = 6173573611734161069L;
     private static final Logger logger = Logger.getLogger(VaultConsoleWindow.class);
     private static final String title = "keestore: Vault";
@@ -39,12 +53,21 @@ public class VaultConsoleWindow extends JFrame implements ApplicationListener<Va
     private VaultCrypto crypto;
     private Vaults vaults;
     private JMenuBar menubar;
+    private VaultStartup startup = new VaultStartup();
+    private final long uiNanos;
+    private final AtomicBoolean shown = new AtomicBoolean(false);
 
     public VaultConsoleWindow() {
         super(title);
+        long start = System.nanoTime();
         initComponents();
         layoutComponents();
         setLocationRelativeTo(null);
+        uiNanos = System.nanoTime() - start;
+    }
+    
+    public void setStartup(VaultStartup startup) {
+        this.startup = startup;
     }
 
     private JMenuBar createMenuBar() {
@@ -55,7 +78,8 @@ public class VaultConsoleWindow extends JFrame implements ApplicationListener<Va
         exit.setMnemonic(KeyEvent.VK_E);
         exit.setToolTipText("Exit application");
         exit.addActionListener(e -> {
-            System.exit(0);
+            // close through the window so that the vaults are saved on exit
+            dispatchEvent(new WindowEvent(this, WindowEvent.WINDOW_CLOSING));
         });
         file.add(exit);
         JMenu help = Util.createHelpMenu(VaultConsoleWindow.class, "vault");
@@ -94,23 +118,90 @@ public class VaultConsoleWindow extends JFrame implements ApplicationListener<Va
      * Expose for programmatic initialization.
      */
     public void init() {
+        init(null);
+    }
+    
+    /**
+     * <p>
+     * Set the crypto and show the window, if not already shown.
+     * </p>
+     * 
+     * @param vaultData
+     */
+    void init(CompletableFuture<List<Vault>> vaultData) {
+        VaultCrypto c = this.crypto;
+        Util.withEventQueue(() -> vaults.setVaultCrypto(c));
+        show(vaultData);
+    }
+    
+    /**
+     * <p>
+     * Show the window, once, and fill in the table once the specified vaults are 
+     * loaded. If there are no vaults specified, they are loaded through the
+     * crypto.
+     * </p>
+     * 
+     * @param vaultData
+     */
+    private void show(CompletableFuture<List<Vault>> vaultData) {
+        if(!shown.compareAndSet(false, true)) {
+            return;
+        }
         Thread.setDefaultUncaughtExceptionHandler(new DefaultExceptionHandler(VaultConsoleWindow.this));
+        startup.record("ui", uiNanos);
         Util.withEventQueue(() -> {
             logger.debug("Initializing main view");
-            vaults.setVaultCrypto(this.crypto);
             vaults.init();
             pack();
             
             setResizable(false);
             setVisible(true);
         });
+        
+        CompletableFuture<List<Vault>> data = vaultData;
+        if(data == null) {
+            data = CompletableFuture.supplyAsync(() -> startup.timed("vault load", () -> {
+                try {
+                    return crypto.loadVault();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+        data.whenComplete((values, error) -> {
+            Util.withEventQueue(() -> {
+                if(error != null) {
+                    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                    throw new IllegalStateException("Cannot load vaults: " + cause.getMessage(), cause);
+                }
+                startup.timed("table", () -> vaults.load(values));
+                startup.complete();
+            });
+        });
     }
 
     @Override
-    public void onApplicationEvent(VaultCryptoInitialized event) {
-        logger.debug("Initializing display with vault conext: " 
-            + event.getCrypto() + ", source: " + event.getSource());
-        this.crypto = event.getCrypto();
-        init();
+    public void onApplicationEvent(ApplicationContextEvent event) {
+        if(event instanceof VaultCryptoPreparing) {
+            VaultCryptoPreparing preparing = (VaultCryptoPreparing) event;
+            logger.debug("Initializing display while preparing keys, source: " + event.getSource());
+            Util.withEventQueue(() -> vaults.preparing());
+            show(preparing.getVaults());
+            preparing.getCrypto().whenComplete((c, error) -> {
+                if(error != null) {
+                    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                    Util.withEventQueue(() -> {
+                        vaults.keysFailed(cause);
+                        throw new IllegalStateException("Cannot prepare keys: " + cause.getMessage(), cause);
+                    });
+                }
+            });
+        } else if(event instanceof VaultCryptoInitialized) {
+            VaultCryptoInitialized initialized = (VaultCryptoInitialized) event;
+            logger.debug("Initializing display with vault conext: " 
+                + initialized.getCrypto() + ", source: " + event.getSource());
+            this.crypto = initialized.getCrypto();
+            init(initialized.getVaults());
+        }
     }
 }
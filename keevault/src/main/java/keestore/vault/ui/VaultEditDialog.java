@@ -11,6 +11,7 @@ import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
 import java.awt.Window;
+import java.util.function.Predicate;
 
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
@@ -50,6 +51,7 @@ public class VaultEditDialog extends JDialog implements VaultEditor {
     private final VaultController vaultController;
     private final VaultItemController itemController;
     private final Kee item;
+    private Predicate<Kee> saver = k -> false;
     private JTextField nameFld;
     private VaultItemTable table;
     private JButton addBtn;
@@ -280,4 +282,20 @@ public class VaultEditDialog extends JDialog implements VaultEditor {
         return nameFld.getText();
     }
 
+    @Override
+    public boolean save(Kee edited) {
+        return saver.test(edited);
+    }
+
+    /**
+     * Where the edited copy of the vault is saved, see {@link #save(Kee)}.
+     * 
+     * @param saver
+     * @return
+     */
+    public VaultEditDialog withSaver(Predicate<Kee> saver) {
+        this.saver = saver;
+        return this;
+    }
+
 }
@@ -19,7 +19,6 @@ import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JTextField;
 
-import keestore.crypto.Crypto;
 import keestore.vault.Util;
 import keestore.vault.VaultItemEditor;
 import keestore.vault.model.VaultItem;
@@ -62,18 +61,16 @@ public class VaultItemEditorDialog extends JDialog implements VaultItemEditor {
     @Override
     public VaultItem getVaultItem() {
         VaultItem item = new VaultItem();
-        item.setKey(Crypto.encode(key.getText().getBytes()).get());
-        item.setValue(Crypto.encode(value.getText().getBytes()).get());
+        item.setKey(key.getText());
+        item.setValue(value.getText());
         return item;
     }
     
     public VaultItemEditorDialog withItem(VaultItem item) {
         this.originalItem = item;
         Util.withEventQueue(() -> {
-            String _key = item.getKey();
-            String _value = item.getValue();
-            key.setText(item.getKey() != null ? new String(Crypto.decode(_key).get()) : "");
-            value.setText(item.getValue() != null ? new String(Crypto.decode(_value).get()) : "");
+            key.setText(item.getKey() != null ? item.getKey() : "");
+            value.setText(item.getValue() != null ? item.getValue() : "");
         });
         return this;
     }
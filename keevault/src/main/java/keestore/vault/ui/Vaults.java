@@ -11,23 +11,34 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
-import java.io.IOException;
 import java.util.Date;
+import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 
 import javax.swing.JButton;
 import javax.swing.JFrame;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
+import javax.swing.JTextField;
 
 import org.apache.log4j.Logger;
 
+import keestore.access.Kee;
+import keestore.access.SearchIndex;
 import keestore.vault.Util;
 import keestore.vault.controller.VaultController;
+import keestore.vault.controller.VaultSaveService;
 import keestore.vault.controller.VaultTableController;
 import keestore.vault.crypto.VaultCrypto;
+import keestore.vault.model.Vault;
 import keestore.vault.model.VaultAccess;
 import keestore.vault.ui.table.KeeTable;
 
@@ -42,17 +53,26 @@ import keestore.vault.ui.table.KeeTable;
 public class Vaults extends JPanel {
     private static final long serialVersionUID = -5581444246366196211L;
     private static final Logger logger = Logger.getLogger(Vaults.class);
+    private static final int autosaveDelayMillis = 2000;
+    private static final long finalSaveWaitMillis = 10000;
+    private static final Object[] finalSaveOptions = { "Wait", "Discard and exit" };
 
     private final JFrame parent;
     private VaultCrypto crypto;
     private VaultController vaultController;
     private VaultTableController tableController;
+    private VaultSaveService saveService;
+    private final CompletableFuture<VaultCrypto> keys = new CompletableFuture<>();
+    private boolean preparing = false;
     private HeaderPanel header;
     private KeeTable table;
     private Timer timer = new Timer("currentTime");
     private JButton createBtn;
     private JButton deleteBtn;
     private JButton openBtn;
+    private JTextField searchField;
+    private final SearchIndex search = new SearchIndex();
+    private boolean searchStale = true;
 
     public Vaults(JFrame parent) {
         this.parent = parent;
@@ -60,29 +80,90 @@ public class Vaults extends JPanel {
         layoutComponents();
     }
     
+    /**
+     * <p>
+     * The keys are ready, any queued saves will proceed.
+     * </p>
+     * 
+     * @param crypto
+     */
     void setVaultCrypto(VaultCrypto crypto) {
         this.crypto = crypto;
         this.tableController.setVaultCrypto(crypto);
+        if(crypto != null) {
+            header.setVaultCrypto(crypto);
+            if(preparing) {
+                header.setStatus("Keys ready");
+                preparing = false;
+            }
+            keys.complete(crypto);
+        }
+    }
+    
+    /**
+     * <p>
+     * The keys could not be generated; queued saves fail rather than wait.
+     * </p>
+     * 
+     * @param cause
+     */
+    void keysFailed(Throwable cause) {
+        header.setStatus("Keys failed: " + cause.getMessage());
+        keys.completeExceptionally(cause);
+    }
+
+    /**
+     * <p>
+     * The keys are being generated; vaults can be edited but saves are queued
+     * until {@link #setVaultCrypto(VaultCrypto)}.
+     * </p>
+     */
+    void preparing() {
+        preparing = true;
+        header.setStatus("Preparing keys...");
     }
 
     public void init() {
         scheduleTimer();
         initListeners();
-        header.setVaultCrypto(crypto);
         logger.debug("Vaults initialized");
     }
 
+    /**
+     * <p>
+     * Fill in the table with the specified vaults (i.e. loaded during startup)
+     * and start saving edits. Must be called within the Event Queue thread,
+     * after {@link #init()}.
+     * </p>
+     * 
+     * @param values
+     */
+    public void load(List<Vault> values) {
+        tableController.loadTable(table, values);
+        
+        // autosave once edits settle down
+        table.getModel().addTableModelListener(e -> {
+            saveService.scheduleSave();
+        });
+        saveService.ready();
+        logger.debug("Vaults loaded: " + values.size());
+    }
+
     private void initComponents() {
         header = new HeaderPanel();
         table = new KeeTable(null, "Vault");
         this.vaultController = new VaultController(new VaultAccess());
         this.tableController  = new VaultTableController(table);
+        this.saveService = new VaultSaveService(tableController, autosaveDelayMillis);
+        this.saveService.waitFor(keys);
         table.getColumnModel().removeColumn(table.getColumnModel().getColumn(0));
         createBtn = new JButton("Create");
         deleteBtn = new JButton("Delete");
         deleteBtn.setEnabled(false);
         openBtn = new JButton("Open");
         openBtn.setEnabled(false);
+        searchField = new JTextField(15);
+        searchField.setToolTipText("Find a vault by name or key");
     }
 
     private void layoutComponents() {
@@ -100,6 +181,7 @@ public class Vaults extends JPanel {
 
         // controls
         JPanel panel2 = new JPanel();
+        panel2.add(searchField);
         panel2.add(createBtn);
         panel2.add(openBtn);
         panel2.add(deleteBtn);
@@ -114,8 +196,9 @@ public class Vaults extends JPanel {
      */
     private void initListeners() {
         header.withAction("Encrypt", event -> {
-            tableController.handleEncrypt(table);
+            saveService.saveNow();
         });
+        saveService.withStatus(header::setStatus);
         
         Consumer<KeeTable> enableButtons = t -> {
             openBtn.setEnabled(t.getRowCount() > 0 && t.getSelectedRowCount() == 1);
@@ -131,6 +214,24 @@ public class Vaults extends JPanel {
             });
         });
 
+        // the search index catches up with the table on the next search, only
+        // vaults that changed are reindexed
+        table.getModel().addTableModelListener(e -> {
+            searchStale = true;
+        });
+        searchField.addActionListener(e -> {
+            if(searchStale) {
+                search.sync(table.getAll());
+                searchStale = false;
+            }
+            String query = searchField.getText();
+            List<Kee> found = search.search(query, 1);
+            if(found.isEmpty() || !table.select(found.get(0))) {
+                header.setStatus("No vault matches '" + query + "'");
+            }
+            enableButtons.accept(table);
+        });
+
         // enable controls when the user selects an item from the table
         table.addMouseListener(new MouseAdapter() {
             @Override
@@ -143,25 +244,58 @@ public class Vaults extends JPanel {
             }
         });
         
-        table.getModel().addTableModelListener(tableController.tableModelListener(vaultController));
+        table.addKeeListener(tableController.keeListener(vaultController));
         table.addMouseListener(VaultTableController.mouseListener(parent, vaultController));
         createBtn.addActionListener(tableController.actionListener(parent, vaultController));
         deleteBtn.addActionListener(tableController.actionListener(parent, vaultController));
         openBtn.addActionListener(tableController.actionListener(parent, vaultController));
         
-        try {
-            tableController.loadTable(table);
-        } catch (IOException e) {
-            throw new IllegalStateException("Cannot load vaults: " + e.getMessage(), e);
-        }
-        
         parent.addWindowListener(new WindowAdapter() {
             @Override
             public void windowClosing(WindowEvent e) {
-                tableController.handleEncrypt(table);
+                awaitFinalSave(saveService.shutdown());
+                search.clear();
+                Vault.closeAll();
             }
         });
     }
+    
+    /**
+     * <p>
+     * Wait for the final save before the vaults are released. Whenever it takes
+     * longer than a while, the user chooses to keep waiting or to exit without
+     * it; the datastore is only replaced once a save is complete, so it is then
+     * kept as it was last saved.
+     * </p>
+     * 
+     * @param save
+     */
+    private void awaitFinalSave(Future<Boolean> save) {
+        while(true) {
+            try {
+                save.get(finalSaveWaitMillis, TimeUnit.MILLISECONDS);
+                return;
+            } catch (TimeoutException e) {
+                int choice = JOptionPane.showOptionDialog(parent, "The latest changes are still being saved.",
+                    "Saving", JOptionPane.DEFAULT_OPTION, JOptionPane.WARNING_MESSAGE, null, finalSaveOptions,
+                    finalSaveOptions[0]);
+                if(choice == 1) {
+                    logger.warn("Final save discarded, the datastore is kept as last saved");
+                    save.cancel(true);
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.error("Interrupted during the final save", e);
+                return;
+            } catch (ExecutionException e) {
+                logger.error("Cannot save vaults: " + e.getCause().getMessage(), e.getCause());
+                JOptionPane.showMessageDialog(parent, "The latest changes could not be saved", "Error",
+                    JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+        }
+    }
 
     private void scheduleTimer() {
         timer.scheduleAtFixedRate(new TimerTask() {
@@ -6,12 +6,16 @@
 package keestore.vault.ui.table;
 
 import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 
 import javax.swing.JTable;
 import javax.swing.ListSelectionModel;
 
 import keestore.access.Kee;
 import keestore.access.KeeAccess;
+import keestore.access.KeeEvent;
+import keestore.access.KeeId;
 
 public class KeeTable extends JTable implements KeeAccess {
     private static final long serialVersionUID = 2130271474698758233L;
@@ -63,6 +67,23 @@ public class KeeTable extends JTable implements KeeAccess {
         return selected;
     }
     
+    /**
+     * Select the specified {@code Kee} and scroll it into view.
+     * 
+     * @param kee
+     * @return false if the {@code Kee} is not in this table.
+     */
+    public boolean select(Kee kee) {
+        int modelIndex = model.indexOf(kee);
+        if (modelIndex < 0) {
+            return false;
+        }
+        int row = convertRowIndexToView(modelIndex);
+        setRowSelectionInterval(row, row);
+        scrollRectToVisible(getCellRect(row, 0, true));
+        return true;
+    }
+    
     /**
      * All {@code Kee} models from the underlying table model.
      * 
@@ -82,6 +103,11 @@ public class KeeTable extends JTable implements KeeAccess {
         return model.getKee(id);
     }
 
+    @Override
+    public Kee getKee(KeeId id) {
+        return model.getKee(id);
+    }
+
     @Override
     public void deleteKee(Kee item) {
         model.deleteKee(item);
@@ -92,8 +118,43 @@ public class KeeTable extends JTable implements KeeAccess {
         deleteKee(getKee(id));
     }
 
+    @Override
+    public void updateKee(Kee item) {
+        model.updateKee(item);
+    }
+
+    @Override
+    public void applyAll(List<KeeEvent> changes) {
+        model.applyAll(changes);
+    }
+
+    @Override
+    public long getVersion(KeeId id) {
+        return model.getVersion(id);
+    }
+
+    @Override
+    public boolean replaceIfVersion(KeeId id, long expectedVersion, Kee item) {
+        return model.replaceIfVersion(id, expectedVersion, item);
+    }
+
+    @Override
+    public Kee computeIfPresent(KeeId id, BiFunction<KeeId, ? super Kee, ? extends Kee> remapping) {
+        return model.computeIfPresent(id, remapping);
+    }
+
     @Override
     public void clear() {
         model.clear();
     }
+
+    @Override
+    public void addKeeListener(Consumer<KeeEvent> listener) {
+        model.addKeeListener(listener);
+    }
+
+    @Override
+    public void removeKeeListener(Consumer<KeeEvent> listener) {
+        model.removeKeeListener(listener);
+    }
 }
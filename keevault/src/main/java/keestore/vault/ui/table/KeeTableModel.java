@@ -6,8 +6,13 @@
 package keestore.vault.ui.table;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Vector;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 
 import javax.swing.table.AbstractTableModel;
 
@@ -15,10 +20,25 @@ import org.apache.log4j.Logger;
 
 import keestore.access.Kee;
 import keestore.access.KeeAccess;
+import keestore.access.KeeBatches;
+import keestore.access.KeeEvent;
+import keestore.access.KeeEventSupport;
+import keestore.access.KeeId;
 import keestore.vault.Util;
 
 /**
- * Table data model for {@code Kee} object models.
+ * Table data model for {@code Kee} object models. Besides the table model
+ * events, every change is published as a {@code KeeEvent} (within the Event
+ * Queue thread) so that other models can mirror it. A batch of changes, see
+ * {@link #applyAll(List)}, is one {@code KeeEvent}.
+ * <p>
+ * Rows are found by identifier through an index rather than a scan, and each
+ * change is a table model event for the rows it changed only (i.e. a row
+ * inserted), so that the row sorter and the table do not redo every row. Only
+ * clearing and large batches notify that all rows changed. Changes are only
+ * made within the Event Queue thread; callers on other threads that need the
+ * outcome (i.e. {@link #replaceIfVersion(KeeId, long, Kee)}) wait for it.
+ * </p>
  * 
  * @author thinh ho
  *
@@ -26,9 +46,47 @@ import keestore.vault.Util;
 public class KeeTableModel extends AbstractTableModel implements KeeAccess {
     private static final long serialVersionUID = -848690210505001216L;
     private static final Logger logger = Logger.getLogger(KeeTableModel.class);
+    // larger batches are one table model event for all rows
+    private static final int rowEventLimit = 64;
 
     private List<Kee> data = new Vector<>();
+    private List<Kee> all;
     private final String[] columns = new String[2];
+    private final KeeEventSupport events = new KeeEventSupport();
+    // the version of each model, see getVersion()
+    private final Map<KeeId, Long> versions = new HashMap<>();
+    private long version;
+    // the row of each model, and the same rows in order, see indexOf()
+    private final Map<KeeId, Row> rows = new HashMap<>();
+    private final List<Row> order = new ArrayList<>();
+    // rows removed by a large batch are gaps until it is done, see compact()
+    private boolean deferRenumber;
+    private int firstGap = -1;
+
+    /**
+     * A change made to the data, along with the row it changed.
+     */
+    private static class Change {
+        private final KeeEvent done;
+        private final int row;
+
+        private Change(KeeEvent done, int row) {
+            this.done = done;
+            this.row = row;
+        }
+    }
+
+    /**
+     * The row of a model; renumbered when a row above it is removed, without
+     * touching the index.
+     */
+    private static class Row {
+        private int index;
+
+        private Row(int index) {
+            this.index = index;
+        }
+    }
 
     /**
      * Default "key" and "value" will be the column model.
@@ -88,52 +146,363 @@ public class KeeTableModel extends AbstractTableModel implements KeeAccess {
 
     @Override
     public Kee getKee(String id) {
-        return data.stream().filter(k -> {
-            return k.getId().equals(id);
-        }).findFirst().orElseGet(() -> {
-            return null;
-        });
+        return getKee(KeeId.valueOf(id));
+    }
+
+    @Override
+    public Kee getKee(KeeId id) {
+        synchronized(data) {
+            int row = indexOf(id);
+            return row >= 0 ? data.get(row) : null;
+        }
     }
 
+    /**
+     * <p>
+     * Add the specified model as the last row, throwing
+     * {@code IllegalArgumentException} if a model with the same identifier
+     * is in the table.
+     * </p>
+     */
     @Override
     public void addKee(Kee item) {
-        Util.withEventQueue(() -> {
-            boolean added = data.add(item);
-            if (added) {
-                fireTableDataChanged();
-            }
-        });
+        synchronized(data) {
+            checkAbsent(item.getKeeId());
+        }
+        change(KeeEvent.added(this, item));
     }
 
     @Override
     public void deleteKee(String id) {
-        data.stream().filter(k -> {
-            return k.getId().equals(id);
-        }).findFirst().ifPresent(k -> {
-            deleteKee(k);
-        });
+        deleteKee(KeeId.valueOf(id));
     }
 
     @Override
     public void deleteKee(Kee k) {
         if (k != null) {
-            Util.withEventQueue(() -> {
-                boolean removed = data.remove(k);
-                if (removed) {
-                    logger.debug("Kee removed: " + k);
+            deleteKee(k.getKeeId());
+        }
+    }
+
+    @Override
+    public void deleteKee(KeeId id) {
+        Kee kee = getKee(id);
+        if (kee != null) {
+            change(KeeEvent.removed(this, kee));
+        }
+    }
+
+    /**
+     * <p>
+     * Replace the model with the same identifier as the specified one, keeping
+     * its row, or refresh the row if it is the same model that was changed.
+     * </p>
+     */
+    @Override
+    public void updateKee(Kee item) {
+        change(KeeEvent.updated(this, item, null));
+    }
+
+    @Override
+    public long getVersion(KeeId id) {
+        synchronized(data) {
+            Long version = versions.get(id);
+            return version != null ? version : NO_VERSION;
+        }
+    }
+
+    /**
+     * <p>
+     * The check and the change are made at once, within the Event Queue
+     * thread; other threads wait for the outcome.
+     * </p>
+     */
+    @Override
+    public boolean replaceIfVersion(KeeId id, long expectedVersion, Kee item) {
+        checkReplacement(id, item);
+        return Util.waitForEventQueue(() -> {
+            Change done;
+            synchronized(data) {
+                if (getVersion(id) != expectedVersion) {
+                    return false;
+                }
+                done = replace(id, item);
+                if (done != null) {
+                    fire(done);
+                }
+            }
+            if (done != null) {
+                events.publish(done.done);
+            }
+            return true;
+        });
+    }
+
+    /**
+     * <p>
+     * The remapping function is called, and the change made, within the Event
+     * Queue thread; other threads wait for the outcome.
+     * </p>
+     */
+    @Override
+    public Kee computeIfPresent(KeeId id, BiFunction<KeeId, ? super Kee, ? extends Kee> remapping) {
+        return Util.waitForEventQueue(() -> {
+            Kee next;
+            Change done;
+            synchronized(data) {
+                int row = indexOf(id);
+                if (row < 0) {
+                    return null;
+                }
+                next = remapping.apply(id, data.get(row));
+                checkReplacement(id, next);
+                done = replace(id, next);
+                if (done != null) {
+                    fire(done);
+                }
+            }
+            if (done != null) {
+                events.publish(done.done);
+            }
+            return next;
+        });
+    }
+    
+    /**
+     * <p>
+     * Make the specified changes within one pass of the Event Queue thread.
+     * Table model listeners are notified of each row as it changes, or once
+     * for all rows if the batch is large, in which case the rows are
+     * renumbered once rather than on each removal. Nothing is changed if a
+     * model is added with the identifier of one in the table, see
+     * {@link KeeBatches}.
+     * </p>
+     */
+    @Override
+    public void applyAll(List<KeeEvent> changes) {
+        Util.withEventQueue(() -> {
+            boolean rowEvents = changes.size() <= rowEventLimit;
+            List<KeeEvent> applied = new ArrayList<>(changes.size());
+            synchronized(data) {
+                KeeBatches.check(changes, id -> indexOf(id) >= 0, k -> {});
+                // listeners see no row until the batch is done
+                deferRenumber = !rowEvents;
+                try {
+                    for (KeeEvent c : changes) {
+                        Change done = apply(c);
+                        if (done != null) {
+                            applied.add(done.done);
+                            if (rowEvents) {
+                                fire(done);
+                            }
+                        }
+                    }
+                } finally {
+                    deferRenumber = false;
+                    compact();
+                }
+            }
+            if (!applied.isEmpty()) {
+                logger.debug("Kee batch applied: " + applied.size());
+                events.publish(KeeEvent.batch(this, applied));
+                if (!rowEvents) {
                     fireTableDataChanged();
                 }
-            });
-        }
+            }
+        });
     }
     
     @Override
     public void clear() {
+        change(KeeEvent.cleared(this));
+    }
+
+    /**
+     * Make a single change within the Event Queue thread.
+     */
+    private void change(KeeEvent change) {
         Util.withEventQueue(() -> {
-            data.clear();
-            fireTableDataChanged();
+            Change done;
+            synchronized(data) {
+                done = apply(change);
+                if (done != null) {
+                    fire(done);
+                }
+            }
+            if (done != null) {
+                events.publish(done.done);
+            }
         });
     }
+
+    /**
+     * Notify the table model listeners of the rows changed, right after the
+     * change.
+     */
+    private void fire(Change done) {
+        switch (done.done.getType()) {
+        case ADDED:
+            fireTableRowsInserted(done.row, done.row);
+            break;
+        case REMOVED:
+            fireTableRowsDeleted(done.row, done.row);
+            break;
+        case UPDATED:
+            fireTableRowsUpdated(done.row, done.row);
+            break;
+        default:
+            fireTableDataChanged();
+            break;
+        }
+    }
+
+    /**
+     * Replace or delete (if the item is null) the model, holding the lock.
+     */
+    private Change replace(KeeId id, Kee item) {
+        if (item != null) {
+            return apply(KeeEvent.updated(this, item, null));
+        }
+        int row = indexOf(id);
+        return row >= 0 ? apply(KeeEvent.removed(this, data.get(row))) : null;
+    }
+
+    /**
+     * Make a single change to the data, holding its lock. Every model that is
+     * added or replaced gets the next version.
+     */
+    private Change apply(KeeEvent change) {
+        all = null;
+        switch (change.getType()) {
+        case ADDED:
+            // a second row would hide the first from its identifier
+            checkAbsent(change.getId());
+            versions.put(change.getId(), ++version);
+            return new Change(KeeEvent.added(this, change.getKee()), append(change.getKee()));
+        case REMOVED:
+            int row = change.getId() != null ? indexOf(change.getId()) : -1;
+            if (row < 0) {
+                return null;
+            }
+            versions.remove(change.getId());
+            rows.remove(change.getId());
+            Kee removed;
+            if (deferRenumber) {
+                removed = data.set(row, null);
+                order.set(row, null);
+                firstGap = firstGap < 0 ? row : Math.min(firstGap, row);
+            } else {
+                removed = data.remove(row);
+                order.remove(row);
+                // the rows below moved up
+                for (int i = row; i < order.size(); i++) {
+                    order.get(i).index = i;
+                }
+            }
+            logger.debug("Kee removed: " + removed);
+            return new Change(KeeEvent.removed(this, removed), row);
+        case UPDATED:
+            row = indexOf(change.getId());
+            versions.put(change.getId(), ++version);
+            if (row < 0) {
+                return new Change(KeeEvent.added(this, change.getKee()), append(change.getKee()));
+            }
+            Kee previous = data.set(row, change.getKee());
+            return new Change(KeeEvent.updated(this, change.getKee(), previous != change.getKee() ? previous : null),
+                row);
+        case CLEARED:
+            data.clear();
+            versions.clear();
+            rows.clear();
+            order.clear();
+            firstGap = -1;
+            return new Change(KeeEvent.cleared(this), -1);
+        default:
+            throw new IllegalArgumentException("Batches cannot be nested");
+        }
+    }
+
+    /**
+     * Close the gaps left by the rows removed during a large batch, moving
+     * and renumbering the rows below them once; holding the lock.
+     */
+    private void compact() {
+        if (firstGap < 0) {
+            return;
+        }
+        int to = firstGap;
+        for (int from = firstGap; from < data.size(); from++) {
+            Kee kee = data.get(from);
+            if (kee != null) {
+                Row r = order.get(from);
+                r.index = to;
+                data.set(to, kee);
+                order.set(to, r);
+                to++;
+            }
+        }
+        data.subList(to, data.size()).clear();
+        order.subList(to, order.size()).clear();
+        firstGap = -1;
+    }
+
+    /**
+     * Add the model as the last row, holding the lock.
+     */
+    private int append(Kee kee) {
+        int row = data.size();
+        data.add(kee);
+        Row r = new Row(row);
+        rows.put(kee.getKeeId(), r);
+        order.add(r);
+        return row;
+    }
+
+    /**
+     * The row of the model with the specified identifier, holding the lock.
+     */
+    private int indexOf(KeeId id) {
+        Row row = rows.get(id);
+        return row != null ? row.index : -1;
+    }
+
+    /**
+     * No model with the specified identifier is in the table, holding the
+     * lock.
+     */
+    private void checkAbsent(KeeId id) {
+        if (indexOf(id) >= 0) {
+            throw new IllegalArgumentException("Item with id " + id + " already exists");
+        }
+    }
+
+    private static void checkReplacement(KeeId id, Kee item) {
+        if (item != null && !item.getKeeId().equals(id)) {
+            throw new IllegalArgumentException("Item " + item.getKeeId() + " cannot replace " + id);
+        }
+    }
+
+    @Override
+    public void addKeeListener(Consumer<KeeEvent> listener) {
+        events.addListener(listener);
+    }
+
+    @Override
+    public void removeKeeListener(Consumer<KeeEvent> listener) {
+        events.removeListener(listener);
+    }
+    
+    /**
+     * The row of the specified model, by its identifier.
+     * 
+     * @param kee
+     * @return -1 if there is no such model.
+     */
+    public int indexOf(Kee kee) {
+        synchronized(data) {
+            return indexOf(kee.getKeeId());
+        }
+    }
     
     /**
      * The the model at the specified <b>modelIndex</b>.
@@ -146,16 +515,18 @@ public class KeeTableModel extends AbstractTableModel implements KeeAccess {
     }
     
     /**
-     * A copy of the entire repository.
+     * A read-only copy of the entire repository. The same copy is returned until
+     * the repository changes.
      * 
      * @return
      */
     public List<Kee> getAll() {
-        List<Kee> copy = new ArrayList<>();
         synchronized(data) {
-            copy.addAll(data);
+            if(all == null) {
+                all = Collections.unmodifiableList(new ArrayList<>(data));
+            }
+            return all;
         }
-        return copy;
     }
 
 }
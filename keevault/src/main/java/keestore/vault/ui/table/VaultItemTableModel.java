@@ -6,6 +6,7 @@
 package keestore.vault.ui.table;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Vector;
 
@@ -15,7 +16,9 @@ import keestore.vault.Util;
 import keestore.vault.model.VaultItem;
 
 /**
- * Table model that holds a repository of {@code VaultItem}.
+ * Table model that holds a repository of {@code VaultItem}. Changes are
+ * published as row events (inserted, deleted) so that listeners can mirror
+ * them by index; a data changed event means everything may have changed.
  * 
  * @author thinh ho
  *
@@ -25,6 +28,7 @@ public class VaultItemTableModel extends AbstractTableModel {
 
     private final String[] columns = new String[2];
     private final List<VaultItem> data = new Vector<>();
+    private List<VaultItem> all;
 
     /**
      * An item is always a key/value pair, indicated by the column headings.
@@ -70,36 +74,56 @@ public class VaultItemTableModel extends AbstractTableModel {
     }
     
     /**
-     * All {@code VaultItem} in the repository in their current state.
+     * All {@code VaultItem} in the repository in their current state, read-only.
+     * The same list is returned until the repository changes.
      * 
      * @return
      */
     public List<VaultItem> getAll() {
-        List<VaultItem> all = new ArrayList<>();
         synchronized(data) {
-            all.addAll(data);
+            if(all == null) {
+                all = Collections.unmodifiableList(new ArrayList<>(data));
+            }
+            return all;
         }
-        return all;
     }
 
     void add(VaultItem item) {
         Util.withEventQueue(() -> {
-            data.add(item);
-            fireTableDataChanged();
+            int row;
+            synchronized(data) {
+                data.add(item);
+                row = data.size() - 1;
+                all = null;
+            }
+            fireTableRowsInserted(row, row);
         });
     }
     
-    VaultItem getItem(int index) {
+    /**
+     * The item at the specified model index.
+     * 
+     * @param index
+     * @return
+     */
+    public VaultItem getItem(int index) {
         return data.get(index);
     }
     
     void delete(String id) {
         Util.withEventQueue(() -> {
-            boolean removed = false;
+            int row = -1;
             synchronized(data) {
-                removed = data.removeIf(i -> id.equals(i.getKey()));
+                for(int i = 0; i < data.size(); i++) {
+                    if(id.equals(data.get(i).getKey())) {
+                        data.remove(i);
+                        row = i;
+                        all = null;
+                        break;
+                    }
+                }
             }
-            if(removed) fireTableDataChanged();
+            if(row >= 0) fireTableRowsDeleted(row, row);
         });
     }
     
@@ -112,9 +136,15 @@ public class VaultItemTableModel extends AbstractTableModel {
      */
     void updateItem(int modelIndex, VaultItem update) {
         Util.withEventQueue(() -> {
-            data.remove(modelIndex);
-            data.add(update);
-            fireTableDataChanged();
+            int row;
+            synchronized(data) {
+                data.remove(modelIndex);
+                data.add(update);
+                row = data.size() - 1;
+                all = null;
+            }
+            fireTableRowsDeleted(modelIndex, modelIndex);
+            fireTableRowsInserted(row, row);
         });
     }
 }
@@ -10,8 +10,6 @@ import java.awt.Component;
 import javax.swing.JTable;
 import javax.swing.table.DefaultTableCellRenderer;
 
-import keestore.crypto.Crypto;
-
 /**
  * Table cell render that hides the actual value.
  * 
@@ -38,9 +36,7 @@ public class VaultTableCellRenderer extends DefaultTableCellRenderer {
     {
         super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
         setValue(hideValue ? defaultValue : value);
-        String _value = (String)value;
-        setToolTipText(hideValue ? "Table must be in 'Edit' mode in order to view" 
-            : new String(Crypto.decode(_value).get()));
+        setToolTipText(hideValue ? "Table must be in 'Edit' mode in order to view" : (String)value);
         return this;
     }
 }
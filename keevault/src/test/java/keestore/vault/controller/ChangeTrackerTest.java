@@ -0,0 +1,89 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.vault.controller;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import keestore.access.Kee;
+import keestore.access.KeeItem;
+
+/**
+ * <p>
+ * {@code ChangeTracker} unit tests.
+ * </p>
+ *
+ * @author thinh ho
+ *
+ */
+public class ChangeTrackerTest {
+    private ChangeTracker tracker;
+    private List<Kee> models;
+
+    @Before
+    public void before() {
+        tracker = new ChangeTracker();
+        models = new ArrayList<>();
+        for(int i = 0; i < 3; i++) {
+            KeeItem k = new KeeItem("vault" + i);
+            k.put("password", "secret" + i);
+            models.add(k);
+        }
+        tracker.reset(models);
+    }
+
+    @Test
+    public void testUnchanged() {
+        assertTrue(tracker.changes(models).isEmpty());
+        assertTrue(tracker.changes(new ArrayList<>(models)).isEmpty());
+    }
+
+    @Test
+    public void testReplacedEqualDigest() {
+        List<Kee> replaced = new ArrayList<>(models);
+        Kee copy = models.get(1).snapshot();
+        replaced.set(1, copy);
+        assertTrue("Another instance with the same content is not a change", copy != models.get(1));
+        assertTrue(tracker.changes(replaced).isEmpty());
+
+        // the version moved but the value is back to what was persisted
+        copy.put("password", "edited");
+        copy.put("password", "secret1");
+        assertTrue(tracker.changes(replaced).isEmpty());
+    }
+
+    @Test
+    public void testChangedContent() {
+        List<Kee> replaced = new ArrayList<>(models);
+        Kee copy = models.get(1).snapshot();
+        copy.put("password", "edited");
+        replaced.set(1, copy);
+        ChangeTracker.Changes changes = tracker.changes(replaced);
+        assertTrue(!changes.isEmpty() && changes.getModels() == replaced);
+
+        tracker.saved(changes);
+        assertTrue("Saved changes are the persisted state", tracker.changes(replaced).isEmpty());
+        assertTrue("The old content is now a change", !tracker.changes(models).isEmpty());
+    }
+
+    @Test
+    public void testAddedRemoved() {
+        List<Kee> added = new ArrayList<>(models);
+        added.add(new KeeItem("vault3"));
+        assertTrue(!tracker.changes(added).isEmpty());
+        assertTrue(!tracker.changes(models.subList(0, 2)).isEmpty());
+
+        // same size, but one model is another vault
+        List<Kee> swapped = new ArrayList<>(models);
+        swapped.set(2, new KeeItem("vault3"));
+        assertTrue(!tracker.changes(swapped).isEmpty());
+    }
+}
@@ -0,0 +1,170 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.vault.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import keestore.access.KeeItem;
+import keestore.vault.ui.table.KeeTable;
+
+/**
+ * <p>
+ * {@code VaultSaveService} unit tests, with a controller that records what
+ * it would encrypt.
+ * </p>
+ *
+ * @author thinh ho
+ *
+ */
+public class VaultSaveServiceTest {
+    private static final int delayMillis = 50;
+
+    private KeeTable table;
+    private VaultSaveService service;
+    private final List<Integer> saves = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * Records the number of vaults of each encrypt.
+     */
+    private class RecordingController extends VaultTableController {
+        private RecordingController(KeeTable table) {
+            super(table);
+        }
+
+        @Override
+        public boolean encrypt(ChangeTracker.Changes changeSet) {
+            saves.add(changeSet.getModels().size());
+            return true;
+        }
+    }
+
+    @Before
+    public void before() throws Exception {
+        onEventQueue(() -> {
+            table = new KeeTable(null, "Vault");
+            VaultTableController controller = new RecordingController(table);
+            controller.loadTable(table, new ArrayList<>());
+            service = new VaultSaveService(controller, delayMillis);
+            return null;
+        });
+    }
+
+    @After
+    public void after() throws Exception {
+        Future<Boolean> last = onEventQueue(() -> service.shutdown());
+        try {
+            last.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            // the keys failed
+        }
+    }
+
+    @Test
+    public void testNoSaveBeforeLoad() throws Exception {
+        add("vault0");
+        assertTrue("Not loaded yet", !onEventQueue(() -> service.saveNow()).get());
+        onEventQueue(() -> {
+            service.scheduleSave();
+            return null;
+        });
+        Thread.sleep(delayMillis * 4);
+        assertTrue(saves.isEmpty());
+
+        service.ready();
+        assertTrue(onEventQueue(() -> service.saveNow()).get());
+        assertEquals(Arrays.asList(1), saves);
+    }
+
+    @Test
+    public void testNoSaveWithoutKeys() throws Exception {
+        CompletableFuture<Object> keys = new CompletableFuture<>();
+        service.waitFor(keys);
+        service.ready();
+        add("vault0");
+        Future<Boolean> save = onEventQueue(() -> service.saveNow());
+        keys.completeExceptionally(new IllegalStateException("No keys"));
+        try {
+            save.get();
+            assertTrue("Save must fail without keys", false);
+        } catch (ExecutionException e) {
+        }
+        assertTrue(saves.isEmpty());
+    }
+
+    @Test
+    public void testNoChanges() throws Exception {
+        service.ready();
+        assertTrue("Nothing to save", !onEventQueue(() -> service.saveNow()).get());
+        assertTrue(saves.isEmpty());
+    }
+
+    @Test
+    public void testDebounce() throws Exception {
+        service.ready();
+        for(int i = 0; i < 5; i++) {
+            add("vault" + i);
+            onEventQueue(() -> {
+                service.scheduleSave();
+                return null;
+            });
+        }
+        for(int i = 0; i < 100 && saves.isEmpty(); i++) {
+            Thread.sleep(delayMillis);
+        }
+        Thread.sleep(delayMillis * 4);
+        assertEquals("Edits should be saved once", Arrays.asList(5), saves);
+    }
+
+    @Test
+    public void testOrderAfterReady() throws Exception {
+        CompletableFuture<Object> keys = new CompletableFuture<>();
+        service.waitFor(keys);
+        service.ready();
+        List<Future<Boolean>> queued = new ArrayList<>();
+        for(int i = 0; i < 3; i++) {
+            add("vault" + i);
+            queued.add(onEventQueue(() -> service.saveNow()));
+        }
+        assertTrue("Saves wait for the keys", saves.isEmpty() && !queued.get(0).isDone());
+
+        keys.complete(null);
+        for(Future<Boolean> save : queued) {
+            assertTrue(save.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals("Saves should run in order", Arrays.asList(1, 2, 3), saves);
+    }
+
+    private void add(String name) throws Exception {
+        onEventQueue(() -> {
+            table.addKee(new KeeItem(name));
+            return null;
+        });
+    }
+
+    private static <T> T onEventQueue(Callable<T> call) throws Exception {
+        FutureTask<T> task = new FutureTask<>(call);
+        SwingUtilities.invokeLater(task);
+        return task.get(5, TimeUnit.SECONDS);
+    }
+}
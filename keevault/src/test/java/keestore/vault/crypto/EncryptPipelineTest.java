@@ -0,0 +1,143 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.vault.crypto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import keestore.access.ArenaKeeItem;
+import keestore.access.Kee;
+import keestore.access.KeeItem;
+import keestore.access.ValueArena;
+import keestore.crypto.AesCryptoEngine;
+import keestore.crypto.Crypto;
+import keestore.crypto.CryptoEngine;
+import keestore.crypto.CryptoException;
+import keestore.crypto.KeyCrypto;
+import keestore.vault.model.Vault;
+
+/**
+ * <p>
+ * {@code EncryptPipeline} unit tests; the output is read back by
+ * {@code VaultCrypto}.
+ * </p>
+ *
+ * @author thinh ho
+ *
+ */
+public class EncryptPipelineTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private CryptoEngine engine;
+    private Crypto keys;
+    private VaultCrypto crypto;
+    private File target;
+    private File tmp;
+
+    @Before
+    public void before() throws Exception {
+        engine = new KeyCrypto(new AesCryptoEngine());
+        keys = engine.createCrypto(Crypto.encode(engine.generateKey()).get(), "RSA", 1024);
+        crypto = new VaultCrypto(engine, keys.getSecretKey(), keys.getKeyPair().getPublic(),
+            keys.getKeyPair().getPrivate());
+        crypto.setId("datastore");
+        crypto.setSource(new File(folder.getRoot(), "registration"));
+        target = crypto.getVault();
+        tmp = new File(folder.getRoot(), "datastore.tmp");
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        // well over the pipeline's buffers
+        List<Kee> models = models(2000);
+        pipeline(false).encrypt(models, fields(false), target);
+        assertLoaded(models, crypto.loadVault());
+        assertTrue("Temporary file should be moved", !tmp.exists());
+    }
+
+    @Test
+    public void testRoundTripCompressed() throws Exception {
+        List<Kee> models = models(2000);
+        pipeline(true).encrypt(models, fields(true), target);
+        assertLoaded(models, crypto.loadVault());
+        assertTrue(!tmp.exists());
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        pipeline(false).encrypt(new ArrayList<>(), fields(false), target);
+        assertTrue(crypto.loadVault().isEmpty());
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        List<Kee> saved = models(10);
+        pipeline(false).encrypt(saved, fields(false), target);
+        byte[] before = Files.readAllBytes(target.toPath());
+
+        // a model that cannot be read, once the others are well on their way
+        List<Kee> models = models(2000);
+        ValueArena arena = new ValueArena(1024);
+        ArenaKeeItem closed = new ArenaKeeItem(arena, "closed");
+        closed.put("password", "secret");
+        arena.close();
+        models.add(closed);
+        try {
+            pipeline(false).encrypt(models, fields(false), target);
+            assertTrue("Unreadable model must fail the save", false);
+        } catch (CryptoException e) {
+        }
+        assertTrue("Temporary file should be deleted", !tmp.exists());
+        assertTrue("Datastore should be untouched", Arrays.equals(before, Files.readAllBytes(target.toPath())));
+        assertLoaded(saved, crypto.loadVault());
+    }
+
+    private EncryptPipeline pipeline(boolean compress) {
+        return new EncryptPipeline(keys, engine.encryptCipher(keys.getSecretKey()), compress);
+    }
+
+    private static Map<String, String> fields(boolean compress) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put(KeeItem.ITEMNAME_KEY, "encrypted");
+        if(compress) {
+            fields.put("compression", "deflate");
+        }
+        return fields;
+    }
+
+    private static List<Kee> models(int count) {
+        List<Kee> models = new ArrayList<>();
+        for(int i = 0; i < count; i++) {
+            KeeItem k = new KeeItem("vault" + i);
+            k.put("username", "user" + i);
+            k.put("password", "pass\"word/" + i);
+            models.add(k);
+        }
+        return models;
+    }
+
+    private static void assertLoaded(List<Kee> models, List<Vault> loaded) {
+        assertEquals(models.size(), loaded.size());
+        for(int i = 0; i < models.size(); i++) {
+            assertEquals(models.get(i).getId(), loaded.get(i).getId());
+            assertEquals(models.get(i).toMap().get("password"), loaded.get(i).get("password"));
+        }
+    }
+}
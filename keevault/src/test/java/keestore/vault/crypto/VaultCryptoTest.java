@@ -0,0 +1,119 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.vault.crypto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import keestore.access.Kee;
+import keestore.access.KeeItem;
+import keestore.crypto.AesCryptoEngine;
+import keestore.crypto.Crypto;
+import keestore.crypto.CryptoEngine;
+import keestore.crypto.KeyCrypto;
+import keestore.vault.model.Vault;
+
+/**
+ * <p>
+ * {@code VaultCrypto} unit tests.
+ * </p>
+ *
+ * @author thinh ho
+ *
+ */
+public class VaultCryptoTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private VaultCrypto crypto;
+    private List<Kee> models;
+
+    @Before
+    public void before() throws Exception {
+        CryptoEngine engine = new KeyCrypto(new AesCryptoEngine());
+        Crypto keys = engine.createCrypto(Crypto.encode(engine.generateKey()).get(), "RSA", 1024);
+        crypto = new VaultCrypto(engine, keys.getSecretKey(), keys.getKeyPair().getPublic(),
+            keys.getKeyPair().getPrivate());
+        crypto.setId("datastore");
+        crypto.setSource(new File(folder.getRoot(), "registration"));
+
+        models = new ArrayList<>();
+        for(int i = 0; i < 100; i++) {
+            KeeItem k = new KeeItem("vault" + i);
+            k.put("username", "user" + i);
+            k.put("password", "pass\"word/" + i);
+            models.add(k);
+        }
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        crypto.encrypt(models);
+        assertLoaded(crypto.loadVault());
+    }
+
+    @Test
+    public void testLoadCompressed() throws Exception {
+        crypto.setCompress(true);
+        crypto.encrypt(models);
+        crypto.setCompress(false);
+        assertLoaded(crypto.loadVault());
+    }
+
+    @Test
+    public void testLoadMissing() throws Exception {
+        assertTrue(crypto.loadVault().isEmpty());
+    }
+
+    @Test
+    public void testTampered() throws Exception {
+        crypto.encrypt(models);
+        JSONObject obj = (JSONObject)new JSONParser().parse(VaultCrypto.readVault(crypto.getVault()));
+        obj.put("signature", crypto.sign("tampered"));
+        try {
+            crypto.loadVault(obj.toJSONString());
+            assertTrue("Tampered datastore must not load", false);
+        } catch (IOException e) {
+        }
+    }
+
+    @Test
+    public void testMissingField() {
+        Map<String, String> item = new HashMap<>();
+        item.put(KeeItem.ITEMNAME_KEY, "vault");
+        try {
+            VaultCrypto.toVault(item);
+            assertTrue("A vault requires an id", false);
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    private void assertLoaded(List<Vault> loaded) {
+        assertEquals(models.size(), loaded.size());
+        for(int i = 0; i < models.size(); i++) {
+            Kee expected = models.get(i);
+            Vault actual = loaded.get(i);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals("user" + i, actual.get("username"));
+            assertEquals("pass\"word/" + i, actual.get("password"));
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/** 
+ * Copyright (C) 2017 thinh ho
+ * This file is part of 'keestore' which is released under the MIT license.
+ * See LICENSE at the project root directory.
+ */
+package keestore.vault.ui.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import keestore.access.Kee;
+import keestore.access.KeeEvent;
+import keestore.access.KeeItem;
+
+/**
+ * <p>
+ * {@code KeeTableModel} unit tests.
+ * </p>
+ *
+ * @author thinh ho
+ *
+ */
+public class KeeTableModelTest {
+    private KeeTableModel model;
+    private List<Kee> items;
+
+    @Before
+    public void before() throws Exception {
+        model = new KeeTableModel();
+        items = new ArrayList<>();
+        for(int i = 0; i < 200; i++) {
+            items.add(new KeeItem("vault" + i));
+        }
+        onEventQueue(() -> model.addAll(items));
+    }
+
+    @Test
+    public void testBatchRemove() throws Exception {
+        List<KeeEvent> changes = new ArrayList<>();
+        for(int i = 0; i < items.size(); i += 2) {
+            changes.add(KeeEvent.removed(this, items.get(i)));
+        }
+        Kee added = new KeeItem("added");
+        changes.add(KeeEvent.added(this, added));
+        // a row below the first removal, while the rows are not renumbered yet
+        Kee updated = items.get(101).snapshot();
+        changes.add(KeeEvent.updated(this, updated, null));
+        onEventQueue(() -> model.applyAll(changes));
+
+        assertEquals(101, model.getRowCount());
+        assertTrue(model.getAt(50) == updated && model.getAt(100) == added);
+        for(int row = 0; row < model.getRowCount(); row++) {
+            assertEquals("Rows should be renumbered", row, model.indexOf(model.getAt(row)));
+        }
+        assertTrue(model.getKee(items.get(0).getKeeId()) == null && model.indexOf(items.get(0)) < 0);
+    }
+
+    @Test
+    public void testSmallBatchRemove() throws Exception {
+        List<KeeEvent> changes = new ArrayList<>();
+        for(int i = 0; i < 10; i++) {
+            changes.add(KeeEvent.removed(this, items.get(i * 3)));
+        }
+        List<Integer> deleted = new ArrayList<>();
+        model.addTableModelListener(e -> deleted.add(e.getFirstRow()));
+        onEventQueue(() -> model.applyAll(changes));
+
+        assertEquals(190, model.getRowCount());
+        assertEquals("Each row is gone by the time it is reported", 10, deleted.size());
+        for(int row = 0; row < model.getRowCount(); row++) {
+            assertEquals(row, model.indexOf(model.getAt(row)));
+        }
+    }
+
+    @Test
+    public void testReplaceOffEventQueue() throws Exception {
+        Kee item = items.get(5);
+        long version = model.getVersion(item.getKeeId());
+        boolean[] onEventQueue = { true, true };
+        model.addTableModelListener(e -> onEventQueue[0] &= SwingUtilities.isEventDispatchThread());
+        model.addKeeListener(e -> onEventQueue[1] &= SwingUtilities.isEventDispatchThread());
+
+        Kee edited = item.snapshot();
+        edited.put("password", "secret");
+        assertTrue(!SwingUtilities.isEventDispatchThread());
+        assertTrue(model.replaceIfVersion(item.getKeeId(), version, edited));
+        assertTrue("Changed before returning", model.getAt(5) == edited);
+        assertTrue("Stale version", !model.replaceIfVersion(item.getKeeId(), version, item.snapshot()));
+
+        Kee computed = model.computeIfPresent(item.getKeeId(), (id, k) -> null);
+        assertTrue(computed == null && model.getKee(item.getKeeId()) == null && model.getRowCount() == 199);
+        assertTrue("Listeners notified within the Event Queue thread", onEventQueue[0] && onEventQueue[1]);
+    }
+
+    private static void onEventQueue(Runnable r) throws Exception {
+        FutureTask<Void> task = new FutureTask<>(r, null);
+        SwingUtilities.invokeLater(task);
+        task.get(5, TimeUnit.SECONDS);
+    }
+}